@@ -0,0 +1,100 @@
+package org.example.bench;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.example.database.MigrationRunner;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+
+/**
+ * База данных для бенчмарков репозитория.
+ * <p>
+ * Если задано системное свойство {@code db.url}, используется указанная локальная база
+ * (с {@code db.user} и {@code db.password}). Иначе запускается встроенный PostgreSQL,
+ * и его параметры подключения записываются в системные свойства до первого обращения к пулу соединений.
+ */
+public final class BenchmarkDatabase {
+    private static final String[] CATEGORIES = {"water", "exercise", "sleep", "read"};
+
+    private static EmbeddedPostgres embedded;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Подготавливает базу данных и заполняет ее тестовыми пользователями.
+     *
+     * @param users    Число пользователей.
+     * @param baseTgId Телеграм ID первого пользователя.
+     * @throws IOException  Если не удалось запустить встроенный PostgreSQL.
+     * @throws SQLException Если не удалось подготовить схему.
+     */
+    public static synchronized void start(int users, long baseTgId) throws IOException, SQLException {
+        if (System.getProperty("db.url") == null) {
+            embedded = EmbeddedPostgres.builder().start();
+            System.setProperty("db.url", embedded.getJdbcUrl("postgres", "postgres"));
+            System.setProperty("db.user", "postgres");
+            System.setProperty("db.password", "postgres");
+        }
+        try (Connection connection = DriverManager.getConnection(
+                System.getProperty("db.url"), System.getProperty("db.user"), System.getProperty("db.password"))) {
+            MigrationRunner.migrate(connection);
+            seed(connection, users, baseTgId);
+        }
+    }
+
+    /**
+     * Останавливает встроенный PostgreSQL, если он был запущен.
+     *
+     * @throws IOException Если не удалось остановить процесс.
+     */
+    public static synchronized void stop() throws IOException {
+        if (embedded != null) {
+            embedded.close();
+            embedded = null;
+        }
+    }
+
+    private static void seed(Connection connection, int users, long baseTgId) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement user = connection.prepareStatement(
+                "INSERT INTO Users (tg_id, user_name) VALUES (?, ?) ON CONFLICT (tg_id) DO NOTHING");
+             PreparedStatement activity = connection.prepareStatement(
+                     "INSERT INTO activities (user_id, category, activity_time) "
+                             + "SELECT id, ?, ? FROM Users WHERE tg_id = ? ON CONFLICT DO NOTHING")) {
+            for (int i = 0; i < users; i++) {
+                long tgId = baseTgId + i;
+                user.setLong(1, tgId);
+                user.setString(2, "user" + i);
+                user.addBatch();
+            }
+            user.executeBatch();
+            for (int i = 0; i < users; i++) {
+                long tgId = baseTgId + i;
+                String category = CATEGORIES[i % CATEGORIES.length];
+                activity.setString(1, category);
+                activity.setTime(2, Time.valueOf(String.format("%02d:%02d:00", (i / 60) % 24, i % 60)));
+                activity.setLong(3, tgId);
+                activity.addBatch();
+            }
+            activity.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Возвращает категорию, назначенную пользователю при заполнении базы.
+     *
+     * @param index Порядковый номер пользователя.
+     * @return Категория напоминания.
+     */
+    static String categoryOf(int index) {
+        return CATEGORIES[index % CATEGORIES.length];
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.bench;
+
+import org.example.Main;
+import org.example.callback.CallbackCodec;
+import org.example.time.TimeParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Time;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки разбора входящих данных: ввод времени и маршрутизация callback-данных.
+ * <p>
+ * Методы-обработчики в {@code MessageHandler} и {@code CallbackQueryHandler} приватны и отправляют сообщения,
+ * поэтому здесь воспроизводится только их вычислительная часть в том виде, в каком она написана в обработчиках.
+ * <p>
+ * Входные данные разнесены по отдельным состояниям, чтобы каждый бенчмарк перебирал только свои параметры:
+ * корректное и некорректное время, а для callback-данных - категорию, самый глубокий старый префикс
+ * и компактный код нового формата.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    /**
+     * Ввод времени пользователем.
+     */
+    @State(Scope.Benchmark)
+    public static class TimeInput {
+        @Param({"17:30", "hello"})
+        private String value;
+    }
+
+    /**
+     * Данные нажатой кнопки.
+     */
+    @State(Scope.Benchmark)
+    public static class CallbackInput {
+        @Param({"water", "miss_exercise", "c0"})
+        private String value;
+    }
+
+    /**
+     * Путь {@code handleDefaultCommand}: проверка регулярным выражением, {@link Time#valueOf(String)}
+     * и форматирование через новый {@link SimpleDateFormat}.
+     */
+    @Benchmark
+    public String timeInputParseAndFormat(TimeInput input) {
+        String timeInput = input.value;
+        if (timeInput.matches("^(?:[01]\\d|2[0-3]):[0-5]\\d$")) {
+            Time activityTime = Time.valueOf(timeInput + ":00");
+            return new SimpleDateFormat("HH:mm").format(activityTime);
+        }
+        return null;
+    }
+
+    /**
+     * Путь {@code CallbackQueryHandler.handleCallbackQuery} и {@code MessageHandler.handleCallbackQuery}:
+     * поиск категории, цепочка {@code startsWith} и извлечение категории через {@code replace}.
+     */
+    @Benchmark
+    public String callbackPrefixDispatch(CallbackInput input) {
+        String data = input.value;
+        if (Main.categoryTranslations.containsKey(data)) {
+            return data;
+        } else if (data.equals("no_change")) {
+            return "no_change";
+        } else if (data.startsWith("fact_")) {
+            return data.replace("fact_", "");
+        } else if (data.startsWith("delete_")) {
+            return data.replace("delete_", "");
+        } else if (data.startsWith("complete_")) {
+            return data.replace("complete_", "");
+        } else if (data.startsWith("miss_")) {
+            return data.replace("miss_", "");
+        } else if (data.equals("yes_name")) {
+            return "yes_name";
+        }
+        return null;
+    }
+
+    /**
+     * Новый путь {@code handleDefaultCommand}: ручной разбор {@link TimeParser} и готовые строки {@code HH:MM}.
+     */
+    @Benchmark
+    public String timeInputParseAndFormatCompiled(TimeInput input) {
+        int minuteOfDay = TimeParser.parseMinuteOfDay(input.value);
+        return minuteOfDay != TimeParser.INVALID ? TimeParser.format(minuteOfDay) : null;
+    }
+
+    /**
+     * Новый путь маршрутизации: разбор {@link CallbackCodec} без создания объектов,
+     * включая старый текстовый формат.
+     */
+    @Benchmark
+    public int callbackCodecDispatch(CallbackInput input) {
+        return CallbackCodec.decode(input.value);
+    }
+}
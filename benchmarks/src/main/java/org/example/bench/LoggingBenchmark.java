@@ -0,0 +1,79 @@
+package org.example.bench;
+
+import org.example.logging.EventCategory;
+import org.example.logging.EventLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * Бенчмарки пути логирования: синхронный {@link java.util.logging} с форматированием через {@code Object[]}
+ * против {@link EventLog} без выборки и с выборкой 1 из 100.
+ * <p>
+ * Оба пути пишут в один {@link StreamHandler} с {@link SimpleFormatter} поверх пустого потока, поэтому
+ * разница отражает стоимость для потока бота, а не скорость консоли. Для оценки конкуренции запускать
+ * с {@code -t 4}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private static final Logger julLogger = Logger.getLogger("bench.jul");
+
+    private EventCategory events;
+    private EventCategory sampledEvents;
+    private long tgId = 7_000_000_000L;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("log.bench-sampled.sampleEvery", "100");
+        LogManager.getLogManager().reset();
+        Handler handler = new StreamHandler(OutputStream.nullOutputStream(), new SimpleFormatter());
+        Logger.getLogger("").addHandler(handler);
+        events = EventLog.category("bench-events");
+        sampledEvents = EventLog.category("bench-sampled");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        EventLog.flush(5_000);
+        System.out.printf("%nEventLog: записано %d, отброшено %d, не прошло выборку %d%n",
+                EventLog.getWrittenCount(), EventLog.getDroppedCount(), sampledEvents.getSampledOutCount());
+    }
+
+    @Benchmark
+    public void julFormatted() {
+        julLogger.log(java.util.logging.Level.INFO, "Количество выполнений увеличено для пользователя: tgId={0}, category={1}, streakNum={2}",
+                new Object[]{tgId++, "water", 12});
+    }
+
+    @Benchmark
+    public void eventLog() {
+        events.info("Количество выполнений увеличено", "tgId", tgId++, "category", "water", "streakNum", 12);
+    }
+
+    @Benchmark
+    public void eventLogSampled() {
+        sampledEvents.info("Количество выполнений увеличено", "tgId", tgId++, "category", "water", "streakNum", 12);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.bench;
+
+import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
+import org.example.templates.facts.Facts;
+import org.example.templates.menu.Menu;
+import org.example.templates.messages.MessagesTemplates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки шаблонов сообщений, фактов и клавиатур меню.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplatesBenchmark {
+
+    @Param({"water", "read"})
+    private String category;
+
+    @Benchmark
+    public String randomMessage() {
+        return MessagesTemplates.getRandomMessage(category, "Маша");
+    }
+
+    @Benchmark
+    public String randomFact() {
+        return Facts.getRandomFact(category);
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup categoryMenu() {
+        return Menu.getCategoryMenu();
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup factsMenu() {
+        return Menu.getFactsMenu();
+    }
+}
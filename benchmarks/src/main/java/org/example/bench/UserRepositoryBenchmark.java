@@ -0,0 +1,120 @@
+package org.example.bench;
+
+import org.example.reminder.Reminder;
+import org.example.repository.UpsertResult;
+import org.example.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Time;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки {@link UserRepository} на встроенном или локальном PostgreSQL.
+ * Локальная база задается через {@code -jvmArgs "-Ddb.url=... -Ddb.user=... -Ddb.password=..."}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRepositoryBenchmark {
+    private static final long BASE_TG_ID = 9_000_000_000L;
+
+    @Param({"10000"})
+    private int users;
+
+    private UserRepository userRepository;
+
+    /**
+     * Текущая позиция потока в наборе тестовых пользователей.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+        private int pass;
+
+        int advance(int bound) {
+            if (next + 1 == bound) {
+                next = 0;
+                pass++;
+            } else {
+                next++;
+            }
+            return next;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.start(users, BASE_TG_ID);
+        userRepository = new UserRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    public Optional<String> getUserNameByTgId(Cursor cursor) {
+        return userRepository.getUserNameByTgId(BASE_TG_ID + cursor.advance(users));
+    }
+
+    @Benchmark
+    public Optional<Time> getActivityTime(Cursor cursor) {
+        int i = cursor.advance(users);
+        return userRepository.getActivityTime(BASE_TG_ID + i, BenchmarkDatabase.categoryOf(i));
+    }
+
+    @Benchmark
+    public List<Reminder> getAllRemindersForUser(Cursor cursor) {
+        return userRepository.getAllRemindersForUser(BASE_TG_ID + cursor.advance(users));
+    }
+
+    @Benchmark
+    public OptionalInt incrementStreakNum(Cursor cursor) {
+        int i = cursor.advance(users);
+        return userRepository.incrementStreakNum(BASE_TG_ID + i, BenchmarkDatabase.categoryOf(i));
+    }
+
+    @Benchmark
+    public void updateActivityTime(Cursor cursor) {
+        int i = cursor.advance(users);
+        userRepository.updateActivityTime(BASE_TG_ID + i, BenchmarkDatabase.categoryOf(i), Time.valueOf("08:00:00"));
+    }
+
+    @Benchmark
+    public UpsertResult upsertActivity(Cursor cursor) {
+        int i = cursor.advance(users);
+        // время чередуется между проходами, чтобы каждая итерация действительно изменяла строку
+        Time time = (cursor.pass & 1) == 0 ? Time.valueOf("08:00:00") : Time.valueOf("09:00:00");
+        return userRepository.upsertActivity(BASE_TG_ID + i, BenchmarkDatabase.categoryOf(i), time);
+    }
+
+    @Benchmark
+    public Optional<Time> readAndUpdateInUnitOfWork(Cursor cursor) {
+        int i = cursor.advance(users);
+        String category = BenchmarkDatabase.categoryOf(i);
+        return userRepository.inTransaction(() -> {
+            Optional<Time> time = userRepository.getActivityTime(BASE_TG_ID + i, category);
+            userRepository.updateActivityTime(BASE_TG_ID + i, category, Time.valueOf("08:00:00"));
+            return time.orElse(null);
+        });
+    }
+}
@@ -0,0 +1,275 @@
+package org.example.bench.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Фейковый Telegram Bot API для нагрузочных тестов.
+ * <p>
+ * Реализует {@code getUpdates} (long polling), {@code sendMessage}, {@code deleteMessage},
+ * {@code answerCallbackQuery}, а также {@code deleteWebhook}/{@code setWebhook}, которые бот вызывает при старте.
+ * Каждый ответ задерживается на {@code latencyMs} (±50%), а {@code sendMessage} с вероятностью
+ * {@code rate429} отвечает 429 с {@code retry_after = 1}. Бот направляется сюда свойством
+ * {@code -Dbot.apiUrl=http://localhost:<port>/bot}.
+ */
+public class FakeBotApi implements AutoCloseable {
+    private static final int MAX_POLL_SECONDS = 10;
+
+    /**
+     * Получатель сообщений, отправленных ботом.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Вызывается для каждого успешного {@code sendMessage}.
+         *
+         * @param chatId      ID чата.
+         * @param text        Текст сообщения.
+         * @param replyMarkup JSON клавиатуры или {@code null}.
+         */
+        void onSendMessage(long chatId, String text, String replyMarkup);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final double rate429;
+    private final Listener listener;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition updatesAvailable = lock.newCondition();
+    private final ArrayDeque<JsonObject> pending = new ArrayDeque<>();
+    private int nextUpdateId = 1;
+
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+    private final ConcurrentHashMap<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder injected429 = new LongAdder();
+
+    /**
+     * Запускает сервер.
+     *
+     * @param port          Порт.
+     * @param latencyMillis Средняя задержка ответа в миллисекундах.
+     * @param rate429       Доля ответов 429 на {@code sendMessage}, от 0 до 1.
+     * @param listener      Получатель отправленных ботом сообщений.
+     * @throws IOException Если не удалось открыть порт.
+     */
+    public FakeBotApi(int port, long latencyMillis, double rate429, Listener listener) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.rate429 = rate429;
+        this.listener = listener;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Ставит обновление в очередь {@code getUpdates}, присваивая ему {@code update_id}.
+     *
+     * @param update Обновление без {@code update_id}.
+     * @return Присвоенный {@code update_id}.
+     */
+    public int push(JsonObject update) {
+        lock.lock();
+        try {
+            int updateId = nextUpdateId++;
+            update.addProperty("update_id", updateId);
+            pending.add(update);
+            updatesAvailable.signalAll();
+            return updateId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает число вызовов каждого метода API.
+     *
+     * @return Число вызовов по имени метода.
+     */
+    public Map<String, Long> getCallCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        calls.forEach((method, count) -> counts.put(method, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Возвращает число искусственных ответов 429.
+     *
+     * @return Число ответов 429.
+     */
+    public long getInjected429Count() {
+        return injected429.sum();
+    }
+
+    /**
+     * Возвращает число обновлений, еще не подтвержденных ботом.
+     *
+     * @return Глубина очереди обновлений.
+     */
+    public int getPendingUpdateCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1);
+            calls.computeIfAbsent(method, key -> new LongAdder()).increment();
+            Map<String, String> params = parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            if (exchange.getRequestURI().getRawQuery() != null) {
+                params.putAll(parseForm(exchange.getRequestURI().getRawQuery()));
+            }
+            JsonObject response = switch (method) {
+                case "getUpdates" -> getUpdates(params);
+                case "sendMessage" -> sendMessage(params);
+                case "deleteMessage", "answerCallbackQuery", "deleteWebhook", "setWebhook" -> ok(true);
+                default -> error(404, "Not Found: method " + method);
+            };
+            if (!"getUpdates".equals(method)) {
+                simulateLatency();
+            }
+            byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private JsonObject getUpdates(Map<String, String> params) {
+        int offset = Integer.parseInt(params.getOrDefault("offset", "0"));
+        int limit = Integer.parseInt(params.getOrDefault("limit", "100"));
+        int timeout = Math.min(Integer.parseInt(params.getOrDefault("timeout", "0")), MAX_POLL_SECONDS);
+        JsonArray result = new JsonArray();
+        lock.lock();
+        try {
+            while (!pending.isEmpty() && pending.peekFirst().get("update_id").getAsInt() < offset) {
+                pending.pollFirst();
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+            while (pending.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                updatesAvailable.awaitNanos(remaining);
+            }
+            for (JsonObject update : pending) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(update);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("ok", true);
+        response.add("result", result);
+        return response;
+    }
+
+    private JsonObject sendMessage(Map<String, String> params) {
+        if (rate429 > 0 && ThreadLocalRandom.current().nextDouble() < rate429) {
+            injected429.increment();
+            JsonObject response = error(429, "Too Many Requests: retry after 1");
+            JsonObject parameters = new JsonObject();
+            parameters.addProperty("retry_after", 1);
+            response.add("parameters", parameters);
+            return response;
+        }
+        long chatId = Long.parseLong(params.get("chat_id"));
+        String text = params.getOrDefault("text", "");
+        JsonObject chat = new JsonObject();
+        chat.addProperty("id", chatId);
+        chat.addProperty("type", "private");
+        JsonObject message = new JsonObject();
+        message.addProperty("message_id", nextMessageId.getAndIncrement());
+        message.addProperty("date", System.currentTimeMillis() / 1000);
+        message.add("chat", chat);
+        message.addProperty("text", text);
+        listener.onSendMessage(chatId, text, params.get("reply_markup"));
+        JsonObject response = new JsonObject();
+        response.addProperty("ok", true);
+        response.add("result", message);
+        return response;
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis <= 0) {
+            return;
+        }
+        long delay = latencyMillis / 2 + ThreadLocalRandom.current().nextLong(latencyMillis + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static JsonObject ok(boolean result) {
+        JsonObject response = new JsonObject();
+        response.addProperty("ok", true);
+        response.addProperty("result", result);
+        return response;
+    }
+
+    private static JsonObject error(int code, String description) {
+        JsonObject response = new JsonObject();
+        response.addProperty("ok", false);
+        response.addProperty("error_code", code);
+        response.addProperty("description", description);
+        return response;
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> params = new HashMap<>();
+        if (body.isEmpty()) {
+            return params;
+        }
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
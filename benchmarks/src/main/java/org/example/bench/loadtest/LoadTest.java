@@ -0,0 +1,286 @@
+package org.example.bench.loadtest;
+
+import com.google.gson.JsonObject;
+import org.example.Main;
+import org.example.bench.BenchmarkDatabase;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный тест бота против {@link FakeBotApi}.
+ * <p>
+ * N виртуальных пользователей по кругу проходят сценарий: {@code /start}, ввод имени, {@code /menu},
+ * выбор категории, ввод времени, отметки "выполнено" и "пропущено". Задержка шага - время от появления
+ * обновления до последнего ожидаемого ответа бота этому пользователю. В конце печатаются пропускная
+ * способность, p50/p99 по шагам и число ошибок.
+ * <p>
+ * Параметры ({@code --ключ=значение}): {@code users} (100), {@code duration} в секундах (60),
+ * {@code port} фейкового API (8081), {@code latencyMs} (30), {@code rate429} (0), {@code stepTimeoutMs} (10000),
+ * {@code inProcess} (true - запустить бота в этой же JVM на встроенном PostgreSQL или на {@code -Ddb.url}),
+ * {@code webhook} (URL webhook бота; если задан, обновления отправляются туда вместо getUpdates),
+ * {@code secret} (секрет webhook, {@code loadtest}; бот в режиме webhook без секрета не запускается).
+ * <p>
+ * Для бота в отдельном процессе: {@code -Dbot.apiUrl=http://localhost:<port>/bot -Dbot.token=loadtest}.
+ */
+public final class LoadTest {
+    private static final String TOKEN = "loadtest";
+    private static final long BASE_CHAT_ID = 7_000_000_000L;
+
+    private final Map<Long, LinkedBlockingQueue<Long>> inboxes = new ConcurrentHashMap<>();
+    private final Map<Step, LatencyRecorder> latencies = new ConcurrentHashMap<>();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder webhookErrors = new LongAdder();
+    private final AtomicInteger messageIds = new AtomicInteger(1);
+    private final HttpClient http = HttpClient.newHttpClient();
+    private FakeBotApi api;
+    private String webhookUrl;
+    private String webhookSecret;
+
+    private LoadTest() {
+    }
+
+    /**
+     * Шаг сценария и число ответов бота, которых он ждет.
+     */
+    private enum Step {
+        START("/start", 2),
+        NAME(null, 1),
+        MENU("/menu", 1),
+        SELECT_CATEGORY("c0", 1),
+        TIME_INPUT("08:00", 1),
+        COMPLETE("v0", 1),
+        MISS("x0", 1);
+
+        private final String payload;
+        private final int expectedReplies;
+
+        Step(String payload, int expectedReplies) {
+            this.payload = payload;
+            this.expectedReplies = expectedReplies;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "100"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "60"));
+        int port = Integer.parseInt(options.getOrDefault("port", "8081"));
+        long latencyMs = Long.parseLong(options.getOrDefault("latencyMs", "30"));
+        double rate429 = Double.parseDouble(options.getOrDefault("rate429", "0"));
+        long stepTimeoutMs = Long.parseLong(options.getOrDefault("stepTimeoutMs", "10000"));
+        boolean inProcess = Boolean.parseBoolean(options.getOrDefault("inProcess", "true"));
+
+        LoadTest test = new LoadTest();
+        test.webhookUrl = options.get("webhook");
+        test.webhookSecret = options.getOrDefault("secret", TOKEN);
+        test.api = new FakeBotApi(port, latencyMs, rate429, test::onSendMessage);
+        System.out.printf("Фейковый Bot API: http://localhost:%d/bot (токен %s)%n", port, TOKEN);
+
+        if (inProcess) {
+            startBot(port, test.webhookUrl, test.webhookSecret);
+        }
+        test.run(users, TimeUnit.SECONDS.toNanos(durationSeconds), stepTimeoutMs);
+        test.api.close();
+        System.exit(0);
+    }
+
+    private static void startBot(int port, String webhookUrl, String secret) throws Exception {
+        BenchmarkDatabase.start(0, BASE_CHAT_ID);
+        System.setProperty("bot.token", TOKEN);
+        System.setProperty("bot.admin", "1");
+        System.setProperty("bot.apiUrl", "http://localhost:" + port + "/bot");
+        if (webhookUrl != null) {
+            URI uri = URI.create(webhookUrl);
+            System.setProperty("bot.mode", "webhook");
+            System.setProperty("webhook.port", String.valueOf(uri.getPort()));
+            System.setProperty("webhook.path", uri.getPath());
+            System.setProperty("webhook.secretToken", secret);
+        }
+        Main.main(new String[0]);
+    }
+
+    private void run(int users, long durationNanos, long stepTimeoutMs) throws InterruptedException {
+        for (Step step : Step.values()) {
+            latencies.put(step, new LatencyRecorder());
+        }
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                long chatId = BASE_CHAT_ID + i;
+                inboxes.put(chatId, new LinkedBlockingQueue<>());
+                executor.execute(() -> runUser(chatId, deadline, stepTimeoutMs));
+            }
+        }
+        report(users, System.nanoTime() - start);
+    }
+
+    private void runUser(long chatId, long deadline, long stepTimeoutMs) {
+        LinkedBlockingQueue<Long> inbox = inboxes.get(chatId);
+        while (System.nanoTime() < deadline) {
+            for (Step step : Step.values()) {
+                inbox.clear();
+                long sentAt = System.nanoTime();
+                deliver(step, chatId);
+                long lastReply = 0;
+                for (int reply = 0; reply < step.expectedReplies; reply++) {
+                    Long arrivedAt;
+                    try {
+                        arrivedAt = inbox.poll(stepTimeoutMs, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (arrivedAt == null) {
+                        timeouts.increment();
+                        lastReply = 0;
+                        break;
+                    }
+                    lastReply = arrivedAt;
+                }
+                if (lastReply != 0) {
+                    latencies.get(step).record(lastReply - sentAt);
+                }
+            }
+        }
+    }
+
+    private void deliver(Step step, long chatId) {
+        JsonObject update = switch (step) {
+            case START, MENU, TIME_INPUT -> message(chatId, step.payload);
+            case NAME -> message(chatId, "User" + chatId);
+            case SELECT_CATEGORY, COMPLETE, MISS -> callback(chatId, step.payload);
+        };
+        if (webhookUrl == null) {
+            api.push(update);
+            return;
+        }
+        update.addProperty("update_id", messageIds.getAndIncrement());
+        HttpRequest request = HttpRequest.newBuilder(URI.create(webhookUrl))
+                .header("Content-Type", "application/json")
+                .header("X-Telegram-Bot-Api-Secret-Token", webhookSecret)
+                .POST(HttpRequest.BodyPublishers.ofString(update.toString()))
+                .build();
+        try {
+            if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                webhookErrors.increment();
+            }
+        } catch (Exception e) {
+            webhookErrors.increment();
+        }
+    }
+
+    private void onSendMessage(long chatId, String text, String replyMarkup) {
+        LinkedBlockingQueue<Long> inbox = inboxes.get(chatId);
+        if (inbox != null) {
+            inbox.add(System.nanoTime());
+        }
+    }
+
+    private JsonObject message(long chatId, String text) {
+        JsonObject update = new JsonObject();
+        update.add("message", messageBody(chatId, text));
+        return update;
+    }
+
+    private JsonObject callback(long chatId, String data) {
+        JsonObject from = new JsonObject();
+        from.addProperty("id", chatId);
+        from.addProperty("is_bot", false);
+        from.addProperty("first_name", "User");
+        JsonObject query = new JsonObject();
+        query.addProperty("id", String.valueOf(messageIds.getAndIncrement()));
+        query.add("from", from);
+        query.add("message", messageBody(chatId, "reminder"));
+        query.addProperty("chat_instance", String.valueOf(chatId));
+        query.addProperty("data", data);
+        JsonObject update = new JsonObject();
+        update.add("callback_query", query);
+        return update;
+    }
+
+    private JsonObject messageBody(long chatId, String text) {
+        JsonObject chat = new JsonObject();
+        chat.addProperty("id", chatId);
+        chat.addProperty("type", "private");
+        chat.addProperty("username", "user" + chatId);
+        JsonObject message = new JsonObject();
+        message.addProperty("message_id", messageIds.getAndIncrement());
+        message.addProperty("date", System.currentTimeMillis() / 1000);
+        message.add("chat", chat);
+        message.addProperty("text", text);
+        return message;
+    }
+
+    private void report(int users, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long steps = 0;
+        System.out.printf("%nПользователей: %d, длительность: %.1f с%n", users, seconds);
+        System.out.printf("%-16s %10s %10s %10s %10s%n", "Шаг", "Число", "p50, мс", "p99, мс", "max, мс");
+        for (Step step : Step.values()) {
+            long[] sorted = latencies.get(step).sorted();
+            steps += sorted.length;
+            System.out.printf("%-16s %10d %10.1f %10.1f %10.1f%n", step, sorted.length,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        }
+        Map<String, Long> calls = api.getCallCounts();
+        System.out.printf("Шагов в секунду: %.1f%n", steps / seconds);
+        System.out.printf("sendMessage в секунду: %.1f%n", calls.getOrDefault("sendMessage", 0L) / seconds);
+        System.out.printf("Ошибки: таймауты шагов %d, ответы 429 %d, ошибки webhook %d, неподтвержденных обновлений %d%n",
+                timeouts.sum(), api.getInjected429Count(), webhookErrors.sum(), api.getPendingUpdateCount());
+        System.out.println("Вызовы API: " + calls);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Накопитель задержек одного шага.
+     */
+    private static final class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void record(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -1,17 +1,35 @@
 package org.example;
 
 import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.DeleteWebhook;
+import com.pengrad.telegrambot.request.GetUpdates;
+import com.pengrad.telegrambot.request.SetWebhook;
+import com.pengrad.telegrambot.response.BaseResponse;
 import org.example.config.ConfigLoader;
-import com.pengrad.telegrambot.UpdatesListener;
-import com.pengrad.telegrambot.model.Update;
+import org.example.database.DatabaseConnection;
+import org.example.database.MigrationRunner;
+import org.example.broadcast.BroadcastService;
+import org.example.dispatcher.UpdateDispatcher;
+import org.example.dispatcher.UpdateOffsetStore;
+import org.example.repository.AsyncUserRepository;
 import org.example.repository.UserRepository;
+import org.example.sender.MessageSender;
 import org.example.callback.CallbackQueryHandler;
 import org.example.handler.MessageHandler;
 import org.example.job.ReminderJob;
+import org.example.logging.EventLog;
+import org.example.metrics.Metrics;
+import org.example.metrics.MetricsRegistry;
+import org.example.metrics.MetricsServer;
 import org.example.sceduler.ReminderScheduler;
-import org.quartz.*;
-import org.quartz.impl.StdSchedulerFactory;
+import org.example.session.SessionStore;
+import org.example.shard.ShardManager;
+import org.example.webhook.WebhookServer;
+import org.quartz.SchedulerException;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -45,33 +63,215 @@ public class Main {
         String botToken = ConfigLoader.getProperty("bot.token");
         int adminId = ConfigLoader.getIntProperty("bot.admin");
 
-        bot = new TelegramBot(botToken);
+        try {
+            MigrationRunner.migrate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось обновить схему базы данных, бот не запущен", e);
+            DatabaseConnection.shutdown();
+            return;
+        }
+
+        // bot.apiUrl позволяет направить бота на локальный фейковый Bot API для нагрузочных тестов
+        String apiUrl = ConfigLoader.getProperty("bot.apiUrl", "");
+        bot = apiUrl.isEmpty() ? new TelegramBot(botToken) : new TelegramBot.Builder(botToken).apiUrl(apiUrl).build();
         userRepository = new UserRepository();
+        userRepository.ensureEventPartitions(LocalDate.now());
+        MessageSender sender = new MessageSender(
+                bot,
+                ConfigLoader.getIntProperty("sender.globalRatePerSecond", 30),
+                ConfigLoader.getIntProperty("sender.chatRatePerSecond", 1),
+                ConfigLoader.getIntProperty("sender.chatBurst", 3),
+                ConfigLoader.getIntProperty("sender.maxQueued", 50_000),
+                ConfigLoader.getIntProperty("sender.maxRetries", 3));
 
+        ReminderJob.setMessageSender(sender);
+        ReminderJob.setUserRepository(userRepository);
         try {
-            Scheduler scheduler = StdSchedulerFactory.getDefaultScheduler();
-            scheduler.start();
-            ReminderJob.setBot(bot);
-            ReminderJob.setUserRepository(userRepository);
+            ReminderScheduler.start();
         } catch (SchedulerException e) {
             logger.log(Level.SEVERE, "Failed to start scheduler", e);
         }
 
-        MessageHandler.setBot(bot);
+        ShardManager shardManager = new ShardManager(
+                ConfigLoader.getProperty("shard.nodeId"),
+                ConfigLoader.getIntProperty("shard.count", 16),
+                ConfigLoader.getLongProperty("shard.leaseTtlMs", 30_000L),
+                ConfigLoader.getLongProperty("shard.heartbeatMs", 10_000L),
+                userRepository);
+        BroadcastService broadcastService = new BroadcastService(
+                sender,
+                shardManager.getNodeId(),
+                ConfigLoader.getIntProperty("broadcast.pageSize", 200),
+                ConfigLoader.getIntProperty("broadcast.ratePerSecond", 20),
+                ConfigLoader.getIntProperty("broadcast.maxInFlight", 100),
+                ConfigLoader.getLongProperty("broadcast.leaseTtlMs", 60_000L),
+                ConfigLoader.getLongProperty("broadcast.heartbeatMs", 20_000L),
+                ConfigLoader.getLongProperty("broadcast.reportEveryMs", 30_000L));
+
+        MessageHandler.setMessageSender(sender);
         MessageHandler.setUserRepository(userRepository);
+        AsyncUserRepository asyncRepository = new AsyncUserRepository(
+                userRepository,
+                ConfigLoader.getIntProperty("db.async.concurrency", DatabaseConnection.getPoolSize()),
+                ConfigLoader.getIntProperty("db.async.maxPending", 1_000),
+                ConfigLoader.getLongProperty("db.async.timeoutMs", 5_000L));
+        MessageHandler.setAsyncUserRepository(asyncRepository);
+        MessageHandler.setBroadcastService(broadcastService);
         MessageHandler.setAdminId(adminId);
+        SessionStore sessionStore = new SessionStore(
+                ConfigLoader.getLongProperty("session.ttlMs", 86_400_000L),
+                ConfigLoader.getLongProperty("session.sweepIntervalMs", 60_000L));
+        sessionStore.start();
+        MessageHandler.setSessionStore(sessionStore);
 
-        bot.setUpdatesListener(updates -> {
-            for (Update update : updates) {
-                if (update.message() != null && update.message().text() != null) {
-                    MessageHandler.handleIncomingMessage(update);
-                } else if (update.callbackQuery() != null) {
-                    CallbackQueryHandler.handleCallbackQuery(bot, update, userRepository, categoryTranslations);
-                }
-            }
-            return UpdatesListener.CONFIRMED_UPDATES_ALL;
-        });
+        UpdateDispatcher dispatcher = new UpdateDispatcher(
+                // все запросы к базе при обработке одного обновления идут через одно соединение
+                update -> userRepository.inUnitOfWork(() -> {
+                    if (update.message() != null && update.message().text() != null) {
+                        MessageHandler.handleIncomingMessage(update);
+                    } else if (update.callbackQuery() != null) {
+                        CallbackQueryHandler.handleCallbackQuery(sender, update, userRepository, categoryTranslations);
+                    }
+                }),
+                ConfigLoader.getIntProperty("dispatcher.maxPending", 10_000),
+                ConfigLoader.getLongProperty("dispatcher.acceptTimeoutMs", 1_000L),
+                ConfigLoader.getIntProperty("dispatcher.dedup.capacity", 65_536));
+        UpdateOffsetStore offsetStore = new UpdateOffsetStore("polling.offset");
+        WebhookServer webhookServer = startIngestion(bot, dispatcher, offsetStore);
+
+        MetricsServer metricsServer = startMetrics(dispatcher, sender, sessionStore, userRepository, asyncRepository);
 
+        ReminderScheduler.setShardManager(shardManager);
         ReminderScheduler.scheduleExistingReminders(userRepository);
+        broadcastService.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (webhookServer != null) {
+                webhookServer.close();
+            } else {
+                bot.removeGetUpdatesListener();
+            }
+            if (metricsServer != null) {
+                metricsServer.close();
+            }
+            dispatcher.close();
+            offsetStore.close();
+            ReminderScheduler.shutdown();
+            broadcastService.close();
+            asyncRepository.close();
+            ReminderScheduler.saveSnapshot(5_000);
+            shardManager.close();
+            sender.close();
+            sessionStore.close();
+            DatabaseConnection.shutdown();
+            EventLog.flush(1_000);
+        }, "bot-shutdown"));
+    }
+
+    /**
+     * Запускает прием обновлений в режиме, заданном свойством {@code bot.mode}:
+     * {@code polling} (по умолчанию) или {@code webhook}.
+     *
+     * В режиме long polling получение продолжается сразу за последним обработанным до перезапуска обновлением.
+     *
+     * @param bot         Экземпляр TelegramBot.
+     * @param dispatcher  Диспетчер обновлений.
+     * @param offsetStore Хранилище последнего обработанного {@code update_id}.
+     * @return Webhook-сервер или {@code null} в режиме long polling.
+     */
+    private static WebhookServer startIngestion(TelegramBot bot, UpdateDispatcher dispatcher, UpdateOffsetStore offsetStore) {
+        if (!"webhook".equalsIgnoreCase(ConfigLoader.getProperty("bot.mode", "polling"))) {
+            // пока установлен webhook, Telegram не отдает обновления через getUpdates
+            bot.execute(new DeleteWebhook());
+            long processed = offsetStore.load();
+            GetUpdates request = new GetUpdates();
+            if (processed >= 0) {
+                dispatcher.resumeAfter(processed);
+                // запрос со смещением подтверждает Telegram все обновления до него
+                request.offset((int) processed + 1);
+            }
+            bot.setUpdatesListener(dispatcher::dispatch, request);
+            offsetStore.start(dispatcher::getProcessedOffset, ConfigLoader.getLongProperty("dispatcher.offsetFlushMs", 1_000L));
+            return null;
+        }
+        String path = ConfigLoader.getProperty("webhook.path", "/telegram/webhook");
+        String secretToken = ConfigLoader.getProperty("webhook.secretToken", "");
+        if (secretToken.isEmpty()) {
+            logger.log(Level.SEVERE, "В режиме webhook необходимо задать webhook.secretToken");
+            System.exit(1);
+            return null;
+        }
+        WebhookServer server;
+        try {
+            server = new WebhookServer(ConfigLoader.getIntProperty("webhook.port", 8080), path, secretToken,
+                    ConfigLoader.getIntProperty("webhook.maxBodyBytes", 1 << 20), dispatcher);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось запустить webhook-сервер", e);
+            System.exit(1);
+            return null;
+        }
+        String publicUrl = ConfigLoader.getProperty("webhook.publicUrl", "");
+        if (!publicUrl.isEmpty()) {
+            SetWebhook request = new SetWebhook()
+                    .url(publicUrl + path)
+                    .maxConnections(ConfigLoader.getIntProperty("webhook.maxConnections", 40))
+                    .secretToken(secretToken);
+            BaseResponse response = bot.execute(request);
+            if (response.isOk()) {
+                logger.log(Level.INFO, "Webhook зарегистрирован: {0}", publicUrl + path);
+            } else {
+                logger.log(Level.SEVERE, "Не удалось зарегистрировать webhook: {0} {1}",
+                        new Object[]{response.errorCode(), response.description()});
+            }
+        }
+        return server;
+    }
+
+    /**
+     * Регистрирует метрики очередей и запускает HTTP-сервер метрик на порту {@code metrics.port}.
+     *
+     * @param dispatcher      Диспетчер обновлений.
+     * @param sender          Конвейер отправки сообщений.
+     * @param sessionStore    Хранилище состояний диалогов.
+     * @param userRepository  Репозиторий пользователей.
+     * @param asyncRepository Асинхронный репозиторий пользователей.
+     * @return Сервер метрик или {@code null}, если он отключен или не запустился.
+     */
+    private static MetricsServer startMetrics(UpdateDispatcher dispatcher, MessageSender sender, SessionStore sessionStore,
+                                              UserRepository userRepository, AsyncUserRepository asyncRepository) {
+        MetricsRegistry registry = Metrics.REGISTRY;
+        registry.gauge("bot_dispatcher_pending", "Обновления, ожидающие обработки.", dispatcher::getPendingCount);
+        registry.gauge("bot_dispatcher_active_lanes", "Чаты с необработанными обновлениями.", dispatcher::getActiveLaneCount);
+        registry.counterFunction("bot_dispatcher_duplicates_total", "Повторно доставленные обновления, отброшенные без обработки.", dispatcher::getDuplicateCount);
+        registry.gauge("bot_sender_queued", "Запросы к Telegram в очереди отправки.", sender::getQueuedCount);
+        registry.gauge("bot_sender_in_flight", "Отправленные запросы без ответа.", sender::getInFlightCount);
+        registry.gauge("bot_sender_active_chats", "Чаты с состоянием очереди отправки.", sender::getActiveChatCount);
+        registry.counterFunction("bot_sender_dropped_total", "Запросы, отброшенные из-за переполнения очереди.", sender::getDroppedCount);
+        registry.counterFunction("bot_sender_rate_limited_total", "Ответы 429 Too Many Requests.", sender::getRateLimitedCount);
+        registry.gauge("bot_db_pool_active", "Выданные соединения пула.", () -> DatabaseConnection.getPoolStats().active());
+        registry.gauge("bot_db_pool_idle", "Свободные соединения пула.", () -> DatabaseConnection.getPoolStats().idle());
+        registry.gauge("bot_db_pool_waiters", "Потоки, ожидающие соединение.", () -> DatabaseConnection.getPoolStats().waiters());
+        registry.counterFunction("bot_db_pool_timeouts_total", "Таймауты ожидания соединения.", () -> DatabaseConnection.getPoolStats().timeouts());
+        registry.gauge("bot_db_async_pending", "Асинхронные запросы к базе, принятые и не завершенные.", asyncRepository::getPendingCount);
+        registry.counterFunction("bot_db_async_rejected_total", "Асинхронные запросы, отклоненные из-за переполнения.", asyncRepository::getRejectedCount);
+        registry.counterFunction("bot_db_async_abandoned_total", "Асинхронные запросы, отмененные или завершенные по таймауту.", asyncRepository::getAbandonedCount);
+        registry.gauge("bot_sessions", "Хранимые состояния диалогов.", sessionStore::size);
+        registry.gauge("bot_name_cache_size", "Имена пользователей в кеше.", userRepository::getNameCacheSize);
+        registry.counterFunction("bot_name_cache_hits_total", "Попадания в кеш имен.", userRepository::getNameCacheHits);
+        registry.counterFunction("bot_name_cache_misses_total", "Промахи кеша имен.", userRepository::getNameCacheMisses);
+        registry.gauge("bot_event_log_queued", "События журнала, ожидающие записи.", EventLog::getQueuedCount);
+        registry.counterFunction("bot_event_log_dropped_total", "События журнала, отброшенные из-за заполненного буфера.", EventLog::getDroppedCount);
+        registry.gauge("bot_reminders_scheduled", "Напоминания, запланированные на экземпляре.", ReminderScheduler::getScheduledCount);
+
+        int port = ConfigLoader.getIntProperty("metrics.port", 9400);
+        if (port <= 0) {
+            return null;
+        }
+        try {
+            return new MetricsServer(port, registry);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось запустить сервер метрик", e);
+            return null;
+        }
     }
 }
@@ -0,0 +1,419 @@
+package org.example.broadcast;
+
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.example.database.DatabaseConnection;
+import org.example.sender.MessageSender;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Рассылка сообщения администратора всем пользователям.
+ * <p>
+ * Получатели читаются из таблицы {@code Users} страницами по возрастанию {@code id}, поэтому в памяти
+ * одновременно находится не больше одной страницы, а соединение с базой не удерживается на время отправки.
+ * Сообщения идут через {@link MessageSender} с собственным ограничением темпа {@code ratePerSecond},
+ * чтобы рассылка оставляла запас для ответов пользователям, и не больше {@code maxInFlight} одновременно,
+ * чтобы не переполнить очередь отправки.
+ * <p>
+ * Если очередь отправки переполнена, сообщение отправляется повторно с растущей паузой и не считается ошибкой.
+ * <p>
+ * После того как Telegram ответил на все сообщения страницы, последний обработанный {@code id} и счетчики
+ * записываются в таблицу {@code broadcasts}. Аренда рассылки продлевается каждые {@code heartbeatMs} независимо
+ * от контрольных точек, поэтому медленная страница не отдает рассылку другому обработчику. Каждый захват
+ * рассылки получает собственный маркер в {@code claimed_by}: обработчик, чей захват перехвачен, не сможет
+ * записать контрольную точку и остановится, а рассылки, которые уже выполняются на экземпляре, повторно
+ * им не захватываются. Если экземпляр упал, рассылку с истекшей арендой продолжает любой экземпляр
+ * с контрольной точки; получатели последней неподтвержденной страницы могут получить сообщение повторно.
+ */
+public class BroadcastService implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(BroadcastService.class.getName());
+    private static final long RETRY_MIN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long RETRY_MAX_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final MessageSender sender;
+    private final String nodeId;
+    private final int pageSize;
+    private final long minIntervalNanos;
+    private final Semaphore inFlight;
+    private final long leaseTtlMs;
+    private final long heartbeatMs;
+    private final long reportEveryNanos;
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("broadcast-", 0).factory());
+    private final ScheduledExecutorService resumer;
+    // рассылки, выполняющиеся на экземпляре: id -> маркер захвата
+    private final ConcurrentHashMap<Long, String> running = new ConcurrentHashMap<>();
+
+    /**
+     * Создает сервис рассылок.
+     *
+     * @param sender        Конвейер отправки сообщений.
+     * @param nodeId        Идентификатор экземпляра, под которым захватываются рассылки.
+     * @param pageSize      Число получателей, читаемых из базы за один запрос.
+     * @param ratePerSecond Максимальное число сообщений рассылки в секунду.
+     * @param maxInFlight   Максимальное число сообщений рассылки, ожидающих ответа Telegram.
+     * @param leaseTtlMs    Время, через которое рассылку упавшего экземпляра продолжает другой.
+     * @param heartbeatMs   Период продления аренд выполняющихся рассылок, должен быть меньше {@code leaseTtlMs}.
+     * @param reportEveryMs Интервал отчетов администратору о ходе рассылки.
+     */
+    public BroadcastService(MessageSender sender, String nodeId, int pageSize, int ratePerSecond, int maxInFlight,
+                            long leaseTtlMs, long heartbeatMs, long reportEveryMs) {
+        this.sender = sender;
+        this.nodeId = nodeId;
+        this.pageSize = Math.max(1, pageSize);
+        this.minIntervalNanos = ratePerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / ratePerSecond : 0;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.leaseTtlMs = leaseTtlMs;
+        this.heartbeatMs = heartbeatMs;
+        this.reportEveryNanos = TimeUnit.MILLISECONDS.toNanos(reportEveryMs);
+        this.resumer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "broadcast-resumer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Состояние рассылки.
+     */
+    private static final class Broadcast {
+        private final long id;
+        private final String claim;
+        private final long adminChatId;
+        private final String text;
+        private final int total;
+        private int lastUserId;
+        private int sent;
+        private int failed;
+
+        Broadcast(long id, String claim, long adminChatId, String text, int total, int lastUserId, int sent, int failed) {
+            this.id = id;
+            this.claim = claim;
+            this.adminChatId = adminChatId;
+            this.text = text;
+            this.total = total;
+            this.lastUserId = lastUserId;
+            this.sent = sent;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * Продолжает прерванные рассылки и запускает периодическую проверку аренд:
+     * рассылка упавшего экземпляра будет продолжена, как только истечет ее аренда.
+     * Запускает и продление аренд рассылок, выполняющихся на экземпляре.
+     */
+    public void start() {
+        resumer.scheduleWithFixedDelay(this::resumeExpired, 0, leaseTtlMs, TimeUnit.MILLISECONDS);
+        resumer.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Создает рассылку и запускает ее в фоне.
+     *
+     * @param adminChatId Чат администратора для отчетов.
+     * @param text        Текст рассылки.
+     * @return ID рассылки или пустое значение, если ее не удалось создать.
+     */
+    public OptionalLong broadcast(long adminChatId, String text) {
+        String query = "INSERT INTO broadcasts (admin_chat_id, message_text, total, claimed_by, claimed_until) "
+                + "SELECT ?, ?, count(*), ?, now() + ? * interval '1 millisecond' FROM Users RETURNING id, total";
+        String claim = newClaim();
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, adminChatId);
+            statement.setString(2, text);
+            statement.setString(3, claim);
+            statement.setLong(4, leaseTtlMs);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                Broadcast broadcast = new Broadcast(resultSet.getLong("id"), claim, adminChatId, text,
+                        resultSet.getInt("total"), 0, 0, 0);
+                logger.log(Level.INFO, "Создана рассылка {0}, получателей: {1}",
+                        new Object[]{String.valueOf(broadcast.id), broadcast.total});
+                launch(broadcast, false);
+                return OptionalLong.of(broadcast.id);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось создать рассылку", e);
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Возвращает число рассылок, выполняющихся на экземпляре.
+     *
+     * @return Число рассылок.
+     */
+    public int getActiveCount() {
+        return running.size();
+    }
+
+    /**
+     * Останавливает рассылки, не отмечая их завершенными: после истечения аренды они будут продолжены
+     * с последней контрольной точки.
+     */
+    @Override
+    public void close() {
+        resumer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private String newClaim() {
+        return nodeId + "/" + UUID.randomUUID();
+    }
+
+    private void launch(Broadcast broadcast, boolean resumed) {
+        running.put(broadcast.id, broadcast.claim);
+        try {
+            workers.execute(() -> run(broadcast, resumed));
+        } catch (RejectedExecutionException e) {
+            // сервис остановлен: рассылка будет продолжена после истечения аренды
+            running.remove(broadcast.id, broadcast.claim);
+        }
+    }
+
+    private void resumeExpired() {
+        // рассылки этого экземпляра не захватываются повторно, даже если их аренда успела истечь
+        String query = "UPDATE broadcasts SET claimed_by = ?, claimed_until = now() + ? * interval '1 millisecond' "
+                + "WHERE status = 'running' AND claimed_until < now() AND NOT (id = ANY (?)) "
+                + "RETURNING id, admin_chat_id, message_text, total, last_user_id, sent, failed";
+        String claim = newClaim();
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            Array local = connection.createArrayOf("bigint", running.keySet().toArray());
+            statement.setString(1, claim);
+            statement.setLong(2, leaseTtlMs);
+            statement.setArray(3, local);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Broadcast broadcast = new Broadcast(resultSet.getLong("id"), claim, resultSet.getLong("admin_chat_id"),
+                            resultSet.getString("message_text"), resultSet.getInt("total"),
+                            resultSet.getInt("last_user_id"), resultSet.getInt("sent"), resultSet.getInt("failed"));
+                    logger.log(Level.INFO, "Рассылка {0} продолжается с пользователя {1}",
+                            new Object[]{String.valueOf(broadcast.id), String.valueOf(broadcast.lastUserId)});
+                    launch(broadcast, true);
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось проверить прерванные рассылки", e);
+        }
+    }
+
+    /**
+     * Продлевает аренды рассылок, выполняющихся на экземпляре. Аренда, захваченная другим обработчиком,
+     * не продлевается: ее прежний обработчик остановится на следующей контрольной точке.
+     */
+    private void heartbeat() {
+        if (running.isEmpty()) {
+            return;
+        }
+        String query = "UPDATE broadcasts SET claimed_until = now() + ? * interval '1 millisecond' "
+                + "WHERE status = 'running' AND claimed_by = ANY (?)";
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, leaseTtlMs);
+            statement.setArray(2, connection.createArrayOf("text", running.values().toArray()));
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось продлить аренды рассылок", e);
+        }
+    }
+
+    private void run(Broadcast broadcast, boolean resumed) {
+        try {
+            if (resumed) {
+                report(broadcast, "Рассылка #" + broadcast.id + " продолжена после перезапуска: "
+                        + progress(broadcast));
+            }
+            long started = System.nanoTime();
+            int processedAtStart = broadcast.sent + broadcast.failed;
+            long nextReport = started + reportEveryNanos;
+            long nextSend = System.nanoTime();
+            long[] page = new long[pageSize];
+            int[] ids = new int[pageSize];
+            while (true) {
+                int count = loadPage(broadcast.lastUserId, page, ids);
+                if (count < 0) {
+                    // база недоступна: аренда истечет, и рассылку продолжит проверка аренд
+                    return;
+                }
+                if (count == 0) {
+                    break;
+                }
+                AtomicInteger pageSent = new AtomicInteger();
+                AtomicInteger pageFailed = new AtomicInteger();
+                CountDownLatch acknowledged = new CountDownLatch(count);
+                for (int i = 0; i < count; i++) {
+                    long wait;
+                    while ((wait = nextSend - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    nextSend = Math.max(nextSend + minIntervalNanos, System.nanoTime());
+                    inFlight.acquire();
+                    long chatId = page[i];
+                    CompletableFuture<SendResponse> result = sendWithBackoff(chatId, broadcast.text);
+                    if (result == null) {
+                        // конвейер отправки остановлен: рассылка будет продолжена с контрольной точки
+                        inFlight.release();
+                        return;
+                    }
+                    result.whenComplete((response, error) -> {
+                        if (error == null && response.isOk()) {
+                            pageSent.incrementAndGet();
+                        } else {
+                            pageFailed.incrementAndGet();
+                        }
+                        inFlight.release();
+                        acknowledged.countDown();
+                    });
+                }
+                acknowledged.await();
+                broadcast.lastUserId = ids[count - 1];
+                broadcast.sent += pageSent.get();
+                broadcast.failed += pageFailed.get();
+                if (!checkpoint(broadcast, false)) {
+                    logger.log(Level.WARNING, "Рассылка {0} остановлена: аренда потеряна", String.valueOf(broadcast.id));
+                    return;
+                }
+                if (System.nanoTime() - nextReport >= 0) {
+                    nextReport = System.nanoTime() + reportEveryNanos;
+                    report(broadcast, "Рассылка #" + broadcast.id + ": " + progress(broadcast) + ", "
+                            + throughput(broadcast.sent + broadcast.failed - processedAtStart, started));
+                }
+            }
+            if (checkpoint(broadcast, true)) {
+                logger.log(Level.INFO, "Рассылка {0} завершена: отправлено {1}, ошибок {2}",
+                        new Object[]{String.valueOf(broadcast.id), broadcast.sent, broadcast.failed});
+                report(broadcast, "Рассылка #" + broadcast.id + " завершена: " + progress(broadcast) + ", "
+                        + throughput(broadcast.sent + broadcast.failed - processedAtStart, started));
+            }
+        } catch (InterruptedException e) {
+            // остановка экземпляра: рассылка остается в статусе running и будет продолжена с контрольной точки
+            Thread.currentThread().interrupt();
+        } finally {
+            running.remove(broadcast.id, broadcast.claim);
+        }
+    }
+
+    /**
+     * Ставит сообщение в очередь отправки. Пока очередь переполнена, повторяет попытку
+     * с удваивающейся паузой от {@link #RETRY_MIN_NANOS} до {@link #RETRY_MAX_NANOS}.
+     *
+     * @param chatId ID чата получателя.
+     * @param text   Текст рассылки.
+     * @return Future с ответом Telegram или {@code null}, если конвейер отправки остановлен.
+     * @throws InterruptedException Если поток прерван во время паузы.
+     */
+    private CompletableFuture<SendResponse> sendWithBackoff(long chatId, String text) throws InterruptedException {
+        long backoff = RETRY_MIN_NANOS;
+        while (true) {
+            CompletableFuture<SendResponse> result = sender.send(chatId, new SendMessage(chatId, text));
+            if (!result.isCompletedExceptionally() || !(result.exceptionNow() instanceof RejectedExecutionException)) {
+                return result;
+            }
+            if (!sender.isRunning()) {
+                return null;
+            }
+            LockSupport.parkNanos(backoff);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            backoff = Math.min(backoff * 2, RETRY_MAX_NANOS);
+        }
+    }
+
+    /**
+     * Читает следующую страницу получателей после указанного {@code id}.
+     *
+     * @param afterUserId Последний обработанный {@code id}.
+     * @param tgIds       Массив для Телеграм ID получателей.
+     * @param ids         Массив для {@code id} получателей.
+     * @return Число прочитанных получателей или -1 при ошибке.
+     */
+    private int loadPage(int afterUserId, long[] tgIds, int[] ids) {
+        String query = "SELECT id, tg_id FROM Users WHERE id > ? ORDER BY id LIMIT ?";
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, afterUserId);
+            statement.setInt(2, tgIds.length);
+            int count = 0;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids[count] = resultSet.getInt("id");
+                    tgIds[count] = resultSet.getLong("tg_id");
+                    count++;
+                }
+            }
+            return count;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, e, () -> "Не удалось прочитать получателей рассылки после id " + afterUserId);
+            return -1;
+        }
+    }
+
+    /**
+     * Записывает контрольную точку и продлевает аренду.
+     *
+     * @param broadcast Рассылка.
+     * @param done      Рассылка завершена.
+     * @return {@code true}, если рассылка все еще принадлежит экземпляру.
+     */
+    private boolean checkpoint(Broadcast broadcast, boolean done) {
+        String query = "UPDATE broadcasts SET last_user_id = ?, sent = ?, failed = ?, "
+                + "claimed_until = now() + ? * interval '1 millisecond', "
+                + "status = CASE WHEN ? THEN 'done' ELSE status END, "
+                + "finished_at = CASE WHEN ? THEN now() END "
+                + "WHERE id = ? AND claimed_by = ? AND status = 'running'";
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, broadcast.lastUserId);
+            statement.setInt(2, broadcast.sent);
+            statement.setInt(3, broadcast.failed);
+            statement.setLong(4, leaseTtlMs);
+            statement.setBoolean(5, done);
+            statement.setBoolean(6, done);
+            statement.setLong(7, broadcast.id);
+            statement.setString(8, broadcast.claim);
+            return statement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, e, () -> "Не удалось сохранить контрольную точку рассылки " + broadcast.id);
+            return false;
+        }
+    }
+
+    private void report(Broadcast broadcast, String text) {
+        sender.send(broadcast.adminChatId, new SendMessage(broadcast.adminChatId, text));
+    }
+
+    private static String progress(Broadcast broadcast) {
+        return "обработано " + (broadcast.sent + broadcast.failed) + " из " + broadcast.total
+                + ", доставлено " + broadcast.sent + ", ошибок " + broadcast.failed;
+    }
+
+    private static String throughput(int processed, long startedNanos) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - startedNanos) / 1e9);
+        return String.format(Locale.ROOT, "%.1f сообщ./с", processed / seconds);
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.callback;
+
+/**
+ * Действие, закодированное в callback-данных кнопки.
+ */
+public enum CallbackAction {
+    /**
+     * Выбор категории привычки для настройки напоминания.
+     */
+    SELECT_CATEGORY('c', "", true, false),
+    /**
+     * Оставить существующее напоминание без изменений.
+     */
+    KEEP('k', "no_change", false, false),
+    /**
+     * Удалить напоминание категории.
+     */
+    DELETE('d', "delete_", true, true),
+    /**
+     * Отметить привычку выполненной.
+     */
+    COMPLETE('v', "complete_", true, true),
+    /**
+     * Отметить привычку пропущенной.
+     */
+    MISS('x', "miss_", true, true),
+    /**
+     * Показать факт о категории.
+     */
+    FACT('f', "fact_", true, false),
+    /**
+     * Запросить новое имя пользователя.
+     */
+    ASK_NAME('n', "yes_name", false, false);
+
+    private final char code;
+    private final String legacyPrefix;
+    private final boolean hasCategory;
+    private final boolean oneShot;
+
+    CallbackAction(char code, String legacyPrefix, boolean hasCategory, boolean oneShot) {
+        this.code = code;
+        this.legacyPrefix = legacyPrefix;
+        this.hasCategory = hasCategory;
+        this.oneShot = oneShot;
+    }
+
+    /**
+     * Возвращает символ действия в компактной кодировке.
+     *
+     * @return Код действия.
+     */
+    public char code() {
+        return code;
+    }
+
+    /**
+     * Возвращает префикс (или полное значение для действий без категории) в старом текстовом формате.
+     *
+     * @return Старый префикс.
+     */
+    String legacyPrefix() {
+        return legacyPrefix;
+    }
+
+    /**
+     * Проверяет, относится ли действие к категории.
+     *
+     * @return {@code true}, если за кодом действия следует код категории.
+     */
+    public boolean hasCategory() {
+        return hasCategory;
+    }
+
+    /**
+     * Проверяет, выполняется ли действие над сообщением не больше одного раза. Повторное нажатие такой кнопки
+     * (двойной тап, повторная доставка обновления) изменило бы данные второй раз, поэтому игнорируется.
+     *
+     * @return {@code true} для неидемпотентных действий.
+     */
+    public boolean oneShot() {
+        return oneShot;
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.callback;
+
+/**
+ * Компактная кодировка callback-данных кнопок.
+ * <p>
+ * Данные кнопки - один символ действия ({@link CallbackAction#code()}) и, для действий с категорией,
+ * один символ кода категории из таблицы {@link #CATEGORIES}. Коды категорий попадают в уже отправленные
+ * сообщения, поэтому новые категории добавляются только в конец таблицы.
+ * <p>
+ * Разбор не создает объектов: результат упаковывается в {@code int}. Кнопки старых сообщений
+ * ({@code complete_water}, {@code no_change} и т.п.) продолжают распознаваться.
+ */
+public final class CallbackCodec {
+    /**
+     * Результат разбора нераспознанных данных.
+     */
+    public static final int INVALID = -1;
+
+    /**
+     * Ключи категорий в порядке их кодов. Порядок менять нельзя.
+     */
+    private static final String[] CATEGORIES = {"water", "exercise", "sleep", "read"};
+    private static final char CATEGORY_BASE = '0';
+    private static final int NO_CATEGORY = 0xFF;
+
+    private static final CallbackAction[] ACTIONS = CallbackAction.values();
+    private static final CallbackAction[] BY_CODE = new CallbackAction[128];
+    private static final String[][] ENCODED = new String[ACTIONS.length][CATEGORIES.length];
+
+    static {
+        for (CallbackAction action : ACTIONS) {
+            BY_CODE[action.code()] = action;
+            for (int category = 0; category < CATEGORIES.length; category++) {
+                ENCODED[action.ordinal()][category] = action.hasCategory()
+                        ? String.valueOf(new char[]{action.code(), (char) (CATEGORY_BASE + category)})
+                        : String.valueOf(action.code());
+            }
+        }
+    }
+
+    private CallbackCodec() {
+    }
+
+    /**
+     * Кодирует действие без категории.
+     *
+     * @param action Действие.
+     * @return Callback-данные кнопки.
+     */
+    public static String encode(CallbackAction action) {
+        if (action.hasCategory()) {
+            throw new IllegalArgumentException("Action requires a category: " + action);
+        }
+        return ENCODED[action.ordinal()][0];
+    }
+
+    /**
+     * Кодирует действие над категорией.
+     *
+     * @param action   Действие.
+     * @param category Ключ категории.
+     * @return Callback-данные кнопки.
+     */
+    public static String encode(CallbackAction action, String category) {
+        int id = categoryId(category);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown category: " + category);
+        }
+        return ENCODED[action.ordinal()][id];
+    }
+
+    /**
+     * Разбирает callback-данные.
+     *
+     * @param data Callback-данные кнопки.
+     * @return Упакованные действие и категория или {@link #INVALID}.
+     */
+    public static int decode(String data) {
+        if (data == null || data.isEmpty()) {
+            return INVALID;
+        }
+        int length = data.length();
+        if (length <= 2) {
+            char code = data.charAt(0);
+            CallbackAction action = code < BY_CODE.length ? BY_CODE[code] : null;
+            if (action == null || action.hasCategory() != (length == 2)) {
+                return INVALID;
+            }
+            if (length == 1) {
+                return pack(action, NO_CATEGORY);
+            }
+            int category = data.charAt(1) - CATEGORY_BASE;
+            return category >= 0 && category < CATEGORIES.length ? pack(action, category) : INVALID;
+        }
+        return decodeLegacy(data);
+    }
+
+    /**
+     * Возвращает действие из результата {@link #decode(String)}.
+     *
+     * @param decoded Упакованный результат разбора.
+     * @return Действие.
+     */
+    public static CallbackAction action(int decoded) {
+        return ACTIONS[decoded >>> 8];
+    }
+
+    /**
+     * Возвращает ключ категории из результата {@link #decode(String)}.
+     *
+     * @param decoded Упакованный результат разбора.
+     * @return Ключ категории или {@code null} для действий без категории.
+     */
+    public static String category(int decoded) {
+        int id = decoded & 0xFF;
+        return id == NO_CATEGORY ? null : CATEGORIES[id];
+    }
+
+    /**
+     * Возвращает число категорий в таблице кодов.
+     *
+     * @return Число категорий.
+     */
+    public static int categoryCount() {
+        return CATEGORIES.length;
+    }
+
+    /**
+     * Возвращает ключ категории по ее коду.
+     *
+     * @param id Код категории.
+     * @return Ключ категории.
+     */
+    public static String categoryKey(int id) {
+        return CATEGORIES[id];
+    }
+
+    /**
+     * Возвращает код категории.
+     *
+     * @param category Ключ категории.
+     * @return Код категории или -1, если категория неизвестна.
+     */
+    public static int categoryId(String category) {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            if (CATEGORIES[i].equals(category)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int decodeLegacy(String data) {
+        for (CallbackAction action : ACTIONS) {
+            String prefix = action.legacyPrefix();
+            if (!action.hasCategory()) {
+                if (prefix.equals(data)) {
+                    return pack(action, NO_CATEGORY);
+                }
+                continue;
+            }
+            if (data.startsWith(prefix)) {
+                int category = legacyCategory(data, prefix.length());
+                if (category >= 0) {
+                    return pack(action, category);
+                }
+            }
+        }
+        return INVALID;
+    }
+
+    private static int legacyCategory(String data, int offset) {
+        int length = data.length() - offset;
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            String category = CATEGORIES[i];
+            if (category.length() == length && data.regionMatches(offset, category, 0, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int pack(CallbackAction action, int category) {
+        return action.ordinal() << 8 | category;
+    }
+}
@@ -1,101 +1,128 @@
 package org.example.callback;
 
-import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.request.DeleteMessage;
 import com.pengrad.telegrambot.request.SendMessage;
 import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.request.ForceReply;
-import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
-import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
+import org.example.config.ConfigLoader;
+import org.example.dispatcher.RecentKeys;
 import org.example.repository.UserRepository;
 import org.example.handler.MessageHandler;
+import org.example.metrics.Metrics;
+import org.example.sender.MessageSender;
+import org.example.templates.menu.Menu;
+import org.example.time.TimeParser;
 
 import java.sql.Time;
-import java.text.SimpleDateFormat;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Класс для обработки Callback Query в Telegram боте.
+ * <p>
+ * Callback-данные разбираются один раз через {@link CallbackCodec}, после чего обработчик
+ * выбирается по действию. Повторные нажатия кнопок однократных действий ({@link CallbackAction#oneShot()})
+ * того же сообщения отбрасываются по ключу (чат, сообщение, действие).
  */
 public class CallbackQueryHandler {
+    private static final Logger logger = Logger.getLogger(CallbackQueryHandler.class.getName());
+    private static final RecentKeys recentActions = new RecentKeys(
+            ConfigLoader.getIntProperty("callbacks.dedup.capacity", 65_536), false);
 
     private CallbackQueryHandler() {}
 
     /**
      * Обрабатывает входящий Callback Query.
      *
-     * @param bot                  TelegramBot.
+     * @param sender               Конвейер отправки сообщений.
      * @param update               Объект обновления, полученный от Telegram.
      * @param userRepository       Репозиторий пользователей для доступа к данным.
      * @param categoryTranslations Категории.
      */
-    public static void handleCallbackQuery(TelegramBot bot, Update update, UserRepository userRepository, Map<String, String> categoryTranslations) {
+    public static void handleCallbackQuery(MessageSender sender, Update update, UserRepository userRepository, Map<String, String> categoryTranslations) {
         String callbackData = update.callbackQuery().data();
         if (update.callbackQuery().message() != null && update.callbackQuery().message().chat() != null) {
             long chatId = update.callbackQuery().message().chat().id();
             int messageId = update.callbackQuery().message().messageId();
 
-            if (categoryTranslations.containsKey(callbackData)) {
-                handleCategoryCallback(bot, userRepository, categoryTranslations, callbackData, chatId);
-            } else if (callbackData.equals("no_change")) {
-                bot.execute(new DeleteMessage(chatId, messageId));
-            } else {
-                MessageHandler.handleCallbackQuery(update);
+            int decoded = CallbackCodec.decode(callbackData);
+            if (decoded == CallbackCodec.INVALID) {
+                logger.log(Level.WARNING, "Неизвестные callback-данные: {0}", callbackData);
+                return;
+            }
+            CallbackAction action = CallbackCodec.action(decoded);
+            long actionKey = RecentKeys.actionKey(chatId, messageId, action.code());
+            if (action.oneShot() && !recentActions.add(actionKey)) {
+                Metrics.DUPLICATE_CALLBACKS.inc();
+                logger.log(Level.FINE, "Повторное нажатие {0} в сообщении {1} отброшено", new Object[]{action, messageId});
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                switch (action) {
+                    case SELECT_CATEGORY -> handleCategoryCallback(sender, userRepository, categoryTranslations, CallbackCodec.category(decoded), chatId);
+                    case KEEP -> sender.send(chatId, new DeleteMessage(chatId, messageId));
+                    default -> {
+                        // изменение не сохранено: повторное нажатие не должно считаться дублем
+                        if (!MessageHandler.handleCallbackQuery(chatId, messageId, decoded) && action.oneShot()) {
+                            recentActions.remove(actionKey);
+                        }
+                    }
+                }
+            } finally {
+                Metrics.CALLBACKS.labels(action.name()).observeSince(start);
             }
         } else {
-            System.out.println("CallbackQuery does not contain a valid message or chat.");
+            logger.log(Level.WARNING, "CallbackQuery does not contain a valid message or chat.");
         }
     }
 
     /**
      * Обрабатывает Callback Query для выбранной категории.
      *
-     * @param bot                  TelegramBot.
+     * @param sender               Конвейер отправки сообщений.
      * @param userRepository       Репозиторий пользователей для доступа к данным.
      * @param categoryTranslations Категории.
-     * @param callbackData         Данные из Callback Query.
+     * @param category             Выбранная категория.
      * @param chatId               Идентификатор чата.
      */
-    private static void handleCategoryCallback(TelegramBot bot, UserRepository userRepository, Map<String, String> categoryTranslations, String callbackData, long chatId) {
-        MessageHandler.setCurrentCategory(callbackData);
-        Time existingTime = userRepository.getActivityTime(chatId, callbackData).orElse(null);
+    private static void handleCategoryCallback(MessageSender sender, UserRepository userRepository, Map<String, String> categoryTranslations, String category, long chatId) {
+        MessageHandler.setCurrentCategory(chatId, category);
+        Time existingTime = userRepository.getActivityTime(chatId, category).orElse(null);
         if (existingTime != null) {
-            sendExistingReminderMessage(bot, categoryTranslations, callbackData, chatId, existingTime);
+            sendExistingReminderMessage(sender, categoryTranslations, category, chatId, existingTime);
         } else {
-            sendTimeRequestMessage(bot, chatId);
+            sendTimeRequestMessage(sender, chatId);
         }
     }
 
     /**
      * Отправляет сообщение с существующим напоминанием.
      *
-     * @param bot                  TelegramBot.
+     * @param sender               Конвейер отправки сообщений.
      * @param categoryTranslations Категории.
-     * @param callbackData         Данные из Callback Query.
+     * @param category             Выбранная категория.
      * @param chatId               Идентификатор чата.
      * @param existingTime         Существующее время напоминания.
      */
-    private static void sendExistingReminderMessage(TelegramBot bot, Map<String, String> categoryTranslations, String callbackData, long chatId, Time existingTime) {
-        String translatedCategory = categoryTranslations.get(callbackData);
-        String formattedTime = new SimpleDateFormat("HH:mm").format(existingTime);
-        InlineKeyboardMarkup inlineKeyboard = new InlineKeyboardMarkup(
-                new InlineKeyboardButton("Оставить").callbackData("no_change"),
-                new InlineKeyboardButton("Удалить").callbackData("delete_" + callbackData)
-        );
+    private static void sendExistingReminderMessage(MessageSender sender, Map<String, String> categoryTranslations, String category, long chatId, Time existingTime) {
+        String translatedCategory = categoryTranslations.get(category);
+        String formattedTime = TimeParser.format(existingTime);
         SendMessage message = new SendMessage(chatId, "У тебя уже установлено напоминание для \"" + translatedCategory + "\" на " + formattedTime + ".\nХотите изменить его время? Пожалуйста, введите новое время в формате HH:MM.")
-                .replyMarkup(inlineKeyboard);
-        bot.execute(message);
+                .replyMarkup(Menu.getExistingReminderKeyboard(category));
+        sender.send(chatId, message);
     }
 
     /**
      * Отправляет сообщение с запросом времени.
      *
-     * @param bot    TelegramBot.
+     * @param sender Конвейер отправки сообщений.
      * @param chatId Идентификатор чата.
      */
-    private static void sendTimeRequestMessage(TelegramBot bot, long chatId) {
+    private static void sendTimeRequestMessage(MessageSender sender, long chatId) {
         SendMessage requestTimeMessage = new SendMessage(chatId, "Выбери время в формате HH:MM (например, 17:30)")
                 .replyMarkup(new ForceReply());
-        bot.execute(requestTimeMessage);
+        sender.send(chatId, requestTimeMessage);
     }
 }
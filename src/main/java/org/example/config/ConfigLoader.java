@@ -8,6 +8,8 @@ import java.util.logging.Logger;
 
 /**
  * Класс для загрузки конфигурационных свойств из файла application.properties.
+ * Системные свойства JVM ({@code -Dkey=value}) имеют приоритет над значениями из файла,
+ * что позволяет запускать несколько экземпляров бота с одним файлом настроек.
  */
 public class ConfigLoader {
     private static final Logger logger = Logger.getLogger(ConfigLoader.class.getName());
@@ -35,7 +37,7 @@ public class ConfigLoader {
      * @return Значение свойства.
      */
     public static String getProperty(String key) {
-        return properties.getProperty(key);
+        return lookup(key);
     }
 
     /**
@@ -45,7 +47,7 @@ public class ConfigLoader {
      * @return Значение свойства как целое число.
      */
     public static int getIntProperty(String key) {
-        String value = properties.getProperty(key);
+        String value = lookup(key);
         if (value != null) {
             try {
                 return Integer.parseInt(value);
@@ -55,4 +57,59 @@ public class ConfigLoader {
         }
         return 0;
     }
+
+    /**
+     * Получает значение свойства по ключу или значение по умолчанию, если свойство не задано.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение по умолчанию.
+     * @return Значение свойства.
+     */
+    public static String getProperty(String key, String defaultValue) {
+        String value = lookup(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Получает целочисленное значение свойства или значение по умолчанию.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение по умолчанию, если свойство не задано или некорректно.
+     * @return Значение свойства как целое число.
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = lookup(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.log(Level.SEVERE, "Невозможно обработать: " + key + ". Причина: " + e);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Получает значение свойства типа long или значение по умолчанию.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение по умолчанию, если свойство не задано или некорректно.
+     * @return Значение свойства как long.
+     */
+    public static long getLongProperty(String key, long defaultValue) {
+        String value = lookup(key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logger.log(Level.SEVERE, "Невозможно обработать: " + key + ". Причина: " + e);
+            }
+        }
+        return defaultValue;
+    }
+
+    private static String lookup(String key) {
+        String value = System.getProperty(key);
+        return value != null ? value : properties.getProperty(key);
+    }
 }
@@ -0,0 +1,381 @@
+package org.example.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ограниченный пул JDBC-соединений.
+ * <p>
+ * Размер пула ограничен семафором: {@link #borrow()} ждет свободное место не дольше
+ * {@code connectionTimeoutMs}. Через {@link Connection#isValid(int)} проверяются только соединения,
+ * простоявшие дольше {@code validationIdleMs}: недавно использованное соединение выдается без лишнего
+ * обращения к серверу, а разорванное обнаруживается по ошибке запроса и при возврате закрывается.
+ * Простаивающие соединения закрываются фоновой задачей, а соединения, удерживаемые дольше
+ * {@code leakDetectionThresholdMs}, попадают в лог вместе со стеком места получения.
+ */
+public final class ConnectionPool implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long connectionTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long leakDetectionThresholdMs;
+    private final int validationTimeoutSec;
+    private final long validationIdleNanos;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowNanos = new LongAdder();
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+
+    /**
+     * Создает пул соединений.
+     *
+     * @param url                      JDBC URL базы данных.
+     * @param user                     Пользователь базы данных.
+     * @param password                 Пароль пользователя.
+     * @param maxSize                  Максимальное число одновременно открытых соединений.
+     * @param connectionTimeoutMs      Максимальное время ожидания свободного соединения.
+     * @param idleTimeoutMs            Время простоя, после которого соединение закрывается.
+     * @param leakDetectionThresholdMs Время удержания, после которого соединение считается утекшим (0 - выключено).
+     * @param validationTimeoutSec     Таймаут проверки соединения перед выдачей.
+     * @param validationIdleMs         Время простоя, после которого соединение проверяется перед выдачей.
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long connectionTimeoutMs,
+                          long idleTimeoutMs, long leakDetectionThresholdMs, int validationTimeoutSec,
+                          long validationIdleMs) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+        this.validationTimeoutSec = validationTimeoutSec;
+        this.validationIdleNanos = TimeUnit.MILLISECONDS.toNanos(validationIdleMs);
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMs, leakDetectionThresholdMs > 0 ? leakDetectionThresholdMs : idleTimeoutMs) / 2);
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдает соединение из пула. Вызов {@link Connection#close()} возвращает его обратно в пул.
+     *
+     * @return Соединение с базой данных.
+     * @throws SQLException Если пул закрыт, время ожидания истекло или соединение не удалось открыть.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        waiters.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+        if (!acquired) {
+            timeoutCount.increment();
+            throw new SQLTimeoutException("Timed out after " + connectionTimeoutMs + " ms waiting for a connection, "
+                    + borrowed.size() + " in use");
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(url, user, password));
+                createdCount.increment();
+            }
+            pooled.borrowedAt = System.nanoTime();
+            pooled.borrowSite = leakDetectionThresholdMs > 0 ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            pooled.broken = false;
+            borrowed.add(pooled);
+            recordBorrow(System.nanoTime() - start);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает текущую статистику пула.
+     *
+     * @return Снимок статистики.
+     */
+    public PoolStats getStats() {
+        long borrows = borrowCount.sum();
+        long totalNanos = borrowNanos.sum();
+        return new PoolStats(
+                maxSize,
+                borrowed.size(),
+                idle.size(),
+                waiters.get(),
+                borrows,
+                borrows == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / borrows),
+                TimeUnit.NANOSECONDS.toMicros(maxBorrowNanos.get()),
+                timeoutCount.sum(),
+                createdCount.sum(),
+                evictedCount.sum(),
+                leakCount.sum()
+        );
+    }
+
+    /**
+     * Возвращает максимальный размер пула.
+     *
+     * @return Максимальное число соединений.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Закрывает пул и все простаивающие соединения. Выданные соединения закрываются при возврате.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+
+    private PooledConnection takeValidIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.nanoTime() - pooled.lastUsedAt < validationIdleNanos || isValid(pooled)) {
+                return pooled;
+            }
+            evictedCount.increment();
+            closeQuietly(pooled);
+        }
+        return null;
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.delegate.isValid(validationTimeoutSec);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordBorrow(long nanos) {
+        borrowCount.increment();
+        borrowNanos.add(nanos);
+        long max = maxBorrowNanos.get();
+        while (nanos > max && !maxBorrowNanos.compareAndSet(max, nanos)) {
+            max = maxBorrowNanos.get();
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return;
+        }
+        try {
+            pooled.borrowSite = null;
+            if (closed || pooled.broken || pooled.delegate.isClosed() || !reset(pooled.delegate)) {
+                closeQuietly(pooled);
+            } else {
+                pooled.lastUsedAt = System.nanoTime();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static boolean reset(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Не удалось сбросить состояние соединения, оно будет закрыто", e);
+            return false;
+        }
+    }
+
+    private void houseKeep() {
+        try {
+            evictIdle();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Ошибка обслуживания пула соединений", e);
+        }
+    }
+
+    private void evictIdle() {
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledConnection pooled = it.next();
+            if (pooled.lastUsedAt - deadline < 0 && idle.remove(pooled)) {
+                evictedCount.increment();
+                closeQuietly(pooled);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionThresholdMs <= 0) {
+            return;
+        }
+        long threshold = TimeUnit.MILLISECONDS.toNanos(leakDetectionThresholdMs);
+        long now = System.nanoTime();
+        for (PooledConnection pooled : borrowed) {
+            Throwable site = pooled.borrowSite;
+            if (!pooled.leakReported && site != null && now - pooled.borrowedAt > threshold) {
+                pooled.leakReported = true;
+                leakCount.increment();
+                logger.log(Level.WARNING, site, () -> "Возможная утечка соединения: удерживается дольше "
+                        + leakDetectionThresholdMs + " мс");
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что ошибка означает потерю соединения (класс SQLSTATE 08), а не ошибку запроса.
+     * Ошибки операторов, созданных на соединении, проверяет сам драйвер: после разрыва
+     * {@link Connection#isClosed()} возвращает {@code true}.
+     */
+    private static boolean isConnectionError(Throwable error) {
+        return error instanceof SQLException e && e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    private static void closeQuietly(PooledConnection pooled) {
+        try {
+            pooled.delegate.close();
+        } catch (SQLException e) {
+            logger.log(Level.FINE, "Ошибка при закрытии соединения", e);
+        }
+    }
+
+    /**
+     * Физическое соединение, принадлежащее пулу.
+     */
+    private final class PooledConnection {
+        private final Connection delegate;
+        private volatile long borrowedAt;
+        private volatile long lastUsedAt = System.nanoTime();
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+
+        private PooledConnection(Connection delegate) {
+            this.delegate = delegate;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * Логическое соединение, выданное клиенту: закрытие возвращает физическое соединение в пул.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean handleClosed;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!handleClosed) {
+                        handleClosed = true;
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return handleClosed || pooled.delegate.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + pooled.delegate + "]";
+                }
+                default -> {
+                    if (handleClosed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(pooled.delegate, args);
+                    } catch (InvocationTargetException e) {
+                        if (isConnectionError(e.getCause())) {
+                            pooled.broken = true;
+                        }
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
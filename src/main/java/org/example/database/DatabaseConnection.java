@@ -8,22 +8,73 @@ import java.sql.SQLException;
 
 /**
  * Утилита для управления подключениями к базе данных.
+ * <p>
+ * Соединения выдаются из общего {@link ConnectionPool}, параметры которого задаются свойствами {@code db.pool.*}.
  */
 public class DatabaseConnection {
     private static final String URL = ConfigLoader.getProperty("db.url");
     private static final String USER = ConfigLoader.getProperty("db.user");
     private static final String PASSWORD = ConfigLoader.getProperty("db.password");
 
+    private static final ConnectionPool POOL = new ConnectionPool(
+            URL,
+            USER,
+            PASSWORD,
+            ConfigLoader.getIntProperty("db.pool.maxSize", 10),
+            ConfigLoader.getLongProperty("db.pool.connectionTimeoutMs", 5_000L),
+            ConfigLoader.getLongProperty("db.pool.idleTimeoutMs", 600_000L),
+            ConfigLoader.getLongProperty("db.pool.leakDetectionThresholdMs", 30_000L),
+            ConfigLoader.getIntProperty("db.pool.validationTimeoutSec", 2),
+            ConfigLoader.getLongProperty("db.pool.validationIdleMs", 5_000L)
+    );
+
     private DatabaseConnection() {
     }
 
     /**
-     * Получает соединение с базой данных.
+     * Получает соединение с базой данных из пула.
+     * Закрытие соединения возвращает его в пул.
      *
      * @return Соединение с базой данных.
-     * @throws SQLException Если происходит ошибка доступа к базе данных.
+     * @throws SQLException Если происходит ошибка доступа к базе данных или истекло время ожидания.
      */
     public static Connection getConnection() throws SQLException {
+        return POOL.borrow();
+    }
+
+    /**
+     * Открывает отдельное соединение в обход пула для долгоживущих задач, например LISTEN.
+     * Вызывающий код отвечает за его закрытие.
+     *
+     * @return Новое соединение с базой данных.
+     * @throws SQLException Если происходит ошибка доступа к базе данных.
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
         return DriverManager.getConnection(URL, USER, PASSWORD);
     }
+
+    /**
+     * Возвращает статистику пула соединений.
+     *
+     * @return Снимок статистики пула.
+     */
+    public static PoolStats getPoolStats() {
+        return POOL.getStats();
+    }
+
+    /**
+     * Возвращает максимальный размер пула соединений.
+     *
+     * @return Максимальное число соединений.
+     */
+    public static int getPoolSize() {
+        return POOL.getMaxSize();
+    }
+
+    /**
+     * Закрывает пул соединений.
+     */
+    public static void shutdown() {
+        POOL.close();
+    }
 }
@@ -0,0 +1,214 @@
+package org.example.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Версионные миграции схемы базы данных.
+ * <p>
+ * Миграции лежат в ресурсах {@code db/migration} и называются {@code V<версия>__<описание>.sql}.
+ * Каждая выполняется в своей транзакции, примененные версии и контрольные суммы записываются в таблицу
+ * {@code schema_version}. На время миграции берется advisory-блокировка, поэтому несколько экземпляров бота,
+ * запущенных одновременно, применяют миграции по очереди, а не параллельно.
+ */
+public final class MigrationRunner {
+    private static final Logger logger = Logger.getLogger(MigrationRunner.class.getName());
+    private static final String LOCATION = "db/migration";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final long LOCK_KEY = 0x68685F626F74L; // "hh_bot"
+
+    private MigrationRunner() {
+    }
+
+    /**
+     * Миграция из ресурсов.
+     *
+     * @param version     Номер версии.
+     * @param description Описание из имени файла.
+     * @param sql         Текст миграции.
+     */
+    record Migration(int version, String description, String sql) {
+    }
+
+    /**
+     * Применяет все еще не примененные миграции через соединение из пула.
+     *
+     * @return Число примененных миграций.
+     * @throws SQLException Если миграция не выполнилась или примененная миграция была изменена.
+     */
+    public static int migrate() throws SQLException {
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            return migrate(connection);
+        }
+    }
+
+    /**
+     * Применяет все еще не примененные миграции через указанное соединение.
+     *
+     * @param connection Соединение с базой данных.
+     * @return Число примененных миграций.
+     * @throws SQLException Если миграция не выполнилась или примененная миграция была изменена.
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        List<Migration> migrations = loadMigrations();
+        boolean autoCommit = connection.getAutoCommit();
+        lock(connection, true);
+        try {
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT PRIMARY KEY, description TEXT NOT NULL, checksum TEXT NOT NULL, "
+                        + "installed_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+            }
+            Map<Integer, String> applied = appliedVersions(connection);
+            int count = 0;
+            for (Migration migration : migrations) {
+                String checksum = checksum(migration.sql());
+                String existing = applied.get(migration.version());
+                if (existing != null) {
+                    if (!existing.equals(checksum)) {
+                        throw new SQLException("Миграция V" + migration.version() + " изменена после применения");
+                    }
+                    continue;
+                }
+                apply(connection, migration, checksum);
+                count++;
+            }
+            logger.log(Level.INFO, "Схема базы данных актуальна, применено миграций: {0}, всего: {1}",
+                    new Object[]{count, migrations.size()});
+            return count;
+        } finally {
+            lock(connection, false);
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void apply(Connection connection, Migration migration, String checksum) throws SQLException {
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+             PreparedStatement record = connection.prepareStatement(
+                     "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)")) {
+            // драйвер PostgreSQL сам разбивает текст на операторы с учетом $$-строк
+            statement.execute(migration.sql());
+            record.setInt(1, migration.version());
+            record.setString(2, migration.description());
+            record.setString(3, checksum);
+            record.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Не удалось применить миграцию V" + migration.version() + "__" + migration.description(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        logger.log(Level.INFO, "Применена миграция V{0}__{1} за {2} мс",
+                new Object[]{String.valueOf(migration.version()), migration.description(), (System.nanoTime() - start) / 1_000_000});
+    }
+
+    private static void lock(Connection connection, boolean acquire) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                acquire ? "SELECT pg_advisory_lock(?)" : "SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            statement.execute();
+        }
+    }
+
+    private static Map<Integer, String> appliedVersions(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt("version"), resultSet.getString("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Находит миграции в ресурсах, как в каталоге, так и внутри jar, и сортирует их по версии.
+     *
+     * @return Миграции по возрастанию версии.
+     * @throws SQLException Если ресурсы не читаются или две миграции имеют одну версию.
+     */
+    static List<Migration> loadMigrations() throws SQLException {
+        URL url = MigrationRunner.class.getClassLoader().getResource(LOCATION);
+        if (url == null) {
+            throw new SQLException("Не найдены миграции в ресурсах " + LOCATION);
+        }
+        List<Migration> migrations = new ArrayList<>();
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                FileSystem fileSystem;
+                try {
+                    fileSystem = FileSystems.newFileSystem(uri, Map.of());
+                } catch (FileSystemAlreadyExistsException e) {
+                    fileSystem = FileSystems.getFileSystem(uri);
+                }
+                collect(fileSystem.getPath(LOCATION), migrations);
+            } else {
+                collect(Paths.get(uri), migrations);
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new SQLException("Не удалось прочитать миграции", e);
+        }
+        migrations.sort((a, b) -> Integer.compare(a.version(), b.version()));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+                throw new SQLException("Две миграции с версией V" + migrations.get(i).version());
+            }
+        }
+        return migrations;
+    }
+
+    private static void collect(Path directory, List<Migration> migrations) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    try (InputStream input = Files.newInputStream(file)) {
+                        migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2),
+                                new String(input.readAllBytes(), StandardCharsets.UTF_8)));
+                    }
+                }
+            }
+        }
+    }
+
+    private static String checksum(String sql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sql.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.database;
+
+/**
+ * Снимок статистики пула соединений.
+ *
+ * @param maxSize          Максимальный размер пула.
+ * @param active           Число выданных соединений.
+ * @param idle             Число простаивающих соединений.
+ * @param waiters          Число потоков, ожидающих соединение.
+ * @param borrows          Общее число выдач.
+ * @param avgBorrowMicros  Среднее время получения соединения, мкс.
+ * @param maxBorrowMicros  Максимальное время получения соединения, мкс.
+ * @param timeouts         Число неудачных ожиданий соединения.
+ * @param created          Число открытых физических соединений.
+ * @param evicted          Число закрытых простаивающих или невалидных соединений.
+ * @param leaks            Число обнаруженных утечек.
+ */
+public record PoolStats(int maxSize, int active, int idle, int waiters, long borrows, long avgBorrowMicros,
+                        long maxBorrowMicros, long timeouts, long created, long evicted, long leaks) {
+}
@@ -0,0 +1,87 @@
+package org.example.dispatcher;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Множество недавно встреченных ключей без блокировок.
+ * <p>
+ * Таблица прямого отображения фиксированного размера: каждый ключ может лежать только в одном слоте,
+ * и новый ключ вытесняет старый с тем же слотом. Поэтому проверка никогда не дает ложного совпадения -
+ * сравнивается сам ключ, - но давно встреченный ключ может быть забыт. Последовательные ключи, например
+ * {@code update_id}, при {@link #sequential} попадают в соседние слоты и не вытесняют друг друга,
+ * пока их не больше емкости таблицы.
+ */
+public final class RecentKeys {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final boolean sequential;
+
+    /**
+     * Создает множество.
+     *
+     * @param capacity   Число слотов, округляется вверх до степени двойки.
+     * @param sequential Ключи идут подряд, и слот выбирается по младшим битам без перемешивания.
+     */
+    public RecentKeys(int capacity, boolean sequential) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.sequential = sequential;
+        for (int i = 0; i < size; i++) {
+            slots.setPlain(i, EMPTY);
+        }
+    }
+
+    /**
+     * Запоминает ключ.
+     *
+     * @param key Ключ.
+     * @return {@code true}, если ключ встретился впервые (или был забыт), и {@code false}, если это повтор.
+     */
+    public boolean add(long key) {
+        // значение пустого слота не может быть ключом
+        long stored = key == EMPTY ? EMPTY + 1 : key;
+        int slot = (int) (sequential ? stored : mix(stored)) & mask;
+        long current;
+        do {
+            current = slots.get(slot);
+            if (current == stored) {
+                return false;
+            }
+        } while (!slots.compareAndSet(slot, current, stored));
+        return true;
+    }
+
+    /**
+     * Забывает ключ, если он еще хранится в своем слоте.
+     *
+     * @param key Ключ.
+     * @return {@code true}, если ключ был забыт.
+     */
+    public boolean remove(long key) {
+        long stored = key == EMPTY ? EMPTY + 1 : key;
+        int slot = (int) (sequential ? stored : mix(stored)) & mask;
+        return slots.compareAndSet(slot, stored, EMPTY);
+    }
+
+    /**
+     * Собирает ключ действия из чата, сообщения и кода действия.
+     *
+     * @param chatId    ID чата.
+     * @param messageId ID сообщения.
+     * @param action    Код действия.
+     * @return Ключ действия.
+     */
+    public static long actionKey(long chatId, int messageId, int action) {
+        return mix(chatId) ^ ((long) messageId << 8 | (action & 0xFF));
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,298 @@
+package org.example.dispatcher;
+
+import com.pengrad.telegrambot.UpdatesListener;
+import com.pengrad.telegrambot.model.Update;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Параллельный диспетчер обновлений Telegram.
+ * <p>
+ * Обновления разных чатов обрабатываются параллельно на виртуальных потоках, а обновления одного чата -
+ * строго последовательно в порядке поступления (последовательная "полоса" на каждый ID чата).
+ * Число принятых, но еще не обработанных обновлений ограничено: если место не освобождается за
+ * {@code acceptTimeoutMs}, пачка подтверждается только до последнего принятого обновления,
+ * и остальные Telegram доставит повторно.
+ * <p>
+ * Повторно доставленные обновления (повтор webhook-запроса, пачка long polling после перезапуска)
+ * отсекаются по {@code update_id} в {@link RecentKeys} и по сохраненному последнему обработанному
+ * {@code update_id}, см. {@link #resumeAfter(long)}.
+ */
+public class UpdateDispatcher implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(UpdateDispatcher.class.getName());
+
+    private final Consumer<Update> handler;
+    private final long acceptTimeoutMs;
+    private final Semaphore capacity;
+    private final int maxPending;
+    private final ConcurrentHashMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final RecentKeys recentUpdates;
+    private final ConcurrentSkipListSet<Integer> inFlight = new ConcurrentSkipListSet<>();
+    private final AtomicLong lastAccepted = new AtomicLong(-1);
+    private final LongAdder duplicates = new LongAdder();
+    private volatile long resumeAfter = -1;
+    private volatile boolean closed;
+
+    /**
+     * Создает диспетчер.
+     *
+     * @param handler         Обработчик одного обновления.
+     * @param maxPending      Максимальное число принятых, но не обработанных обновлений.
+     * @param acceptTimeoutMs Максимальное время ожидания свободного места при приеме обновления.
+     * @param dedupCapacity   Число последних {@code update_id}, по которым отсекаются повторы.
+     */
+    public UpdateDispatcher(Consumer<Update> handler, int maxPending, long acceptTimeoutMs, int dedupCapacity) {
+        this.handler = handler;
+        this.maxPending = maxPending;
+        this.acceptTimeoutMs = acceptTimeoutMs;
+        this.capacity = new Semaphore(maxPending);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("update-", 0).factory());
+        this.recentUpdates = new RecentKeys(dedupCapacity, true);
+    }
+
+    /**
+     * Задает последний обработанный до перезапуска {@code update_id}: обновления не новее него пропускаются.
+     *
+     * @param updateId Последний обработанный {@code update_id} или -1.
+     */
+    public void resumeAfter(long updateId) {
+        resumeAfter = updateId;
+        lastAccepted.accumulateAndGet(updateId, Math::max);
+    }
+
+    /**
+     * Принимает пачку обновлений. Предназначен для использования в качестве {@link UpdatesListener}.
+     *
+     * @param updates Пачка обновлений от Telegram.
+     * @return {@link UpdatesListener#CONFIRMED_UPDATES_ALL}, если приняты все обновления, иначе ID последнего
+     * принятого обновления или {@link UpdatesListener#CONFIRMED_UPDATES_NONE}.
+     */
+    public int dispatch(List<Update> updates) {
+        int lastAccepted = UpdatesListener.CONFIRMED_UPDATES_NONE;
+        for (Update update : updates) {
+            if (!submit(update)) {
+                logger.log(Level.WARNING, "Диспетчер перегружен, обновления начиная с updateId={0} будут получены повторно",
+                        update.updateId());
+                return lastAccepted;
+            }
+            lastAccepted = update.updateId();
+        }
+        return UpdatesListener.CONFIRMED_UPDATES_ALL;
+    }
+
+    /**
+     * Ставит обновление в очередь его чата.
+     *
+     * @param update Обновление Telegram.
+     * @return {@code true}, если обновление принято к обработке.
+     */
+    public boolean submit(Update update) {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!capacity.tryAcquire(acceptTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        // ключ запоминается только для принятого обновления, иначе повторная доставка после отказа была бы отброшена
+        int updateId = update.updateId();
+        if (updateId <= resumeAfter || !recentUpdates.add(updateId)) {
+            capacity.release();
+            duplicates.increment();
+            return true;
+        }
+        inFlight.add(updateId);
+        lastAccepted.accumulateAndGet(updateId, Math::max);
+        boolean[] start = new boolean[1];
+        Lane lane = lanes.compute(chatKey(update), (key, existing) -> {
+            Lane target = existing != null ? existing : new Lane(key);
+            target.queue.add(update);
+            if (!target.running) {
+                target.running = true;
+                start[0] = true;
+            }
+            return target;
+        });
+        if (start[0]) {
+            try {
+                executor.execute(lane);
+            } catch (RejectedExecutionException e) {
+                // close() успел остановить исполнитель: полосу никто не обработает
+                abandon(lane);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Снимает полосу, которую не удалось запустить, и возвращает места всех ее обновлений.
+     * Обработанная точка откатывается до первого из них, чтобы после перезапуска они были получены повторно.
+     *
+     * @param lane Полоса, помеченная как выполняющаяся.
+     */
+    private void abandon(Lane lane) {
+        List<Update> dropped = new ArrayList<>();
+        lanes.compute(lane.key, (key, existing) -> {
+            dropped.addAll(lane.queue);
+            lane.queue.clear();
+            lane.running = false;
+            return null;
+        });
+        for (Update update : dropped) {
+            lastAccepted.accumulateAndGet(update.updateId() - 1L, Math::min);
+            inFlight.remove(update.updateId());
+            capacity.release();
+        }
+    }
+
+    /**
+     * Возвращает число принятых, но еще не обработанных обновлений.
+     *
+     * @return Глубина очереди диспетчера.
+     */
+    public int getPendingCount() {
+        return maxPending - capacity.availablePermits();
+    }
+
+    /**
+     * Возвращает последний полностью обработанный {@code update_id}: все принятые обновления не новее него
+     * обработаны. Для long polling, где обновления принимаются по порядку, это точка продолжения после перезапуска.
+     *
+     * @return {@code update_id} или -1, если ни одно обновление еще не обработано.
+     */
+    public long getProcessedOffset() {
+        long accepted = lastAccepted.get();
+        try {
+            return Math.min(accepted, inFlight.first() - 1L);
+        } catch (NoSuchElementException e) {
+            return accepted;
+        }
+    }
+
+    /**
+     * Возвращает число отброшенных повторных обновлений.
+     *
+     * @return Число повторов.
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Возвращает число чатов, для которых есть необработанные обновления.
+     *
+     * @return Число активных полос.
+     */
+    public int getActiveLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Прекращает прием обновлений и дожидается обработки уже принятых.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.log(Level.WARNING, "Не все обновления обработаны до остановки: {0}", getPendingCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Определяет ключ последовательной полосы для обновления.
+     *
+     * @param update Обновление Telegram.
+     * @return ID чата, к которому относится обновление.
+     */
+    static long chatKey(Update update) {
+        if (update.message() != null && update.message().chat() != null) {
+            return update.message().chat().id();
+        }
+        if (update.callbackQuery() != null) {
+            if (update.callbackQuery().message() != null && update.callbackQuery().message().chat() != null) {
+                return update.callbackQuery().message().chat().id();
+            }
+            if (update.callbackQuery().from() != null) {
+                return update.callbackQuery().from().id();
+            }
+        }
+        if (update.editedMessage() != null && update.editedMessage().chat() != null) {
+            return update.editedMessage().chat().id();
+        }
+        return 0L;
+    }
+
+    private void handle(Update update) {
+        try {
+            handler.accept(update);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, e, () -> "Ошибка обработки обновления updateId=" + update.updateId());
+        } finally {
+            inFlight.remove(update.updateId());
+            capacity.release();
+        }
+    }
+
+    /**
+     * Последовательная очередь обновлений одного чата. Все изменения полей выполняются внутри
+     * {@link ConcurrentHashMap#compute}, поэтому для одного ключа они упорядочены.
+     */
+    private final class Lane implements Runnable {
+        private final long key;
+        private final ArrayDeque<Update> queue = new ArrayDeque<>();
+        private boolean running;
+        private Update polled;
+
+        private Lane(long key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            Update next;
+            while ((next = pollOrRetire()) != null) {
+                handle(next);
+            }
+        }
+
+        private Update pollOrRetire() {
+            lanes.compute(key, (k, lane) -> {
+                polled = queue.poll();
+                if (polled == null) {
+                    running = false;
+                    return null;
+                }
+                return lane;
+            });
+            Update next = polled;
+            polled = null;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.dispatcher;
+
+import org.example.database.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Хранит в таблице {@code bot_state} последний полностью обработанный {@code update_id}, чтобы после
+ * перезапуска long polling продолжился сразу за ним, а уже обработанные обновления не выполнялись повторно.
+ * <p>
+ * Значение записывается периодически и при остановке, и только если оно выросло. После сбоя Telegram повторно
+ * отдает обновления, получение которых бот еще не подтвердил; те из них, что не новее сохраненного значения,
+ * диспетчер пропускает. Обработанные после последней записи выполнятся повторно, поэтому интервал записи
+ * {@code flushIntervalMs} ограничивает окно повторной обработки.
+ */
+public class UpdateOffsetStore implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(UpdateOffsetStore.class.getName());
+
+    private final String key;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "update-offset-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private LongSupplier offset;
+    private long saved = -1;
+
+    /**
+     * Создает хранилище.
+     *
+     * @param key Ключ значения в таблице {@code bot_state}.
+     */
+    public UpdateOffsetStore(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Читает сохраненное значение.
+     *
+     * @return Последний обработанный {@code update_id} или -1, если значения нет или база недоступна.
+     */
+    public long load() {
+        String query = "SELECT value FROM bot_state WHERE key = ?";
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, key);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                saved = resultSet.next() ? resultSet.getLong("value") : -1;
+            }
+            logger.log(Level.INFO, "Последний обработанный updateId: {0}", String.valueOf(saved));
+            return saved;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось прочитать последний обработанный updateId", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Запускает периодическую запись значения.
+     *
+     * @param offset          Источник последнего полностью обработанного {@code update_id}.
+     * @param flushIntervalMs Интервал записи.
+     */
+    public void start(LongSupplier offset, long flushIntervalMs) {
+        this.offset = offset;
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает периодическую запись и записывает текущее значение.
+     */
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        if (offset != null) {
+            flush();
+        }
+    }
+
+    private synchronized void flush() {
+        long current = offset.getAsLong();
+        if (current <= saved) {
+            return;
+        }
+        String query = "INSERT INTO bot_state (key, value) VALUES (?, ?) "
+                + "ON CONFLICT (key) DO UPDATE SET value = GREATEST(bot_state.value, EXCLUDED.value), updated_at = now()";
+        try (Connection connection = DatabaseConnection.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, key);
+            statement.setLong(2, current);
+            statement.executeUpdate();
+            saved = current;
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Не удалось сохранить последний обработанный updateId", e);
+        }
+    }
+}
@@ -1,24 +1,35 @@
 package org.example.handler;
 
-import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.model.request.ChatAction;
 import com.pengrad.telegrambot.model.request.ForceReply;
 import com.pengrad.telegrambot.model.request.ParseMode;
 import com.pengrad.telegrambot.request.DeleteMessage;
+import com.pengrad.telegrambot.request.SendChatAction;
 import com.pengrad.telegrambot.request.SendMessage;
 import org.example.Main;
+import org.example.broadcast.BroadcastService;
+import org.example.callback.CallbackCodec;
+import org.example.metrics.Metrics;
+import org.example.repository.AsyncUserRepository;
+import org.example.repository.UpsertResult;
 import org.example.repository.UserRepository;
 import org.example.reminder.Reminder;
+import org.example.sender.MessageSender;
 import org.example.sceduler.ReminderScheduler;
+import org.example.session.ChatState;
+import org.example.session.SessionStore;
+import org.example.stats.UserStats;
 import org.example.templates.facts.Facts;
 import org.example.templates.menu.Menu;
+import org.example.time.TimeParser;
 
 import java.sql.Time;
-import java.text.SimpleDateFormat;
-import java.util.HashMap;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,11 +38,11 @@ import java.util.logging.Logger;
  */
 public class MessageHandler {
     private static final Logger logger = Logger.getLogger(MessageHandler.class.getName());
-    private static TelegramBot bot;
+    private static MessageSender sender;
     private static UserRepository userRepository;
-    private static String currentCategory;
-    private static final Map<Long, Boolean> awaitingFeedback = new HashMap<>();
-    private static final Map<Long, Boolean> awaitingName = new HashMap<>();
+    private static AsyncUserRepository asyncRepository;
+    private static SessionStore sessions;
+    private static BroadcastService broadcasts;
     private static int adminId;
 
     private MessageHandler() {
@@ -41,12 +52,12 @@ public class MessageHandler {
     // Геттеры и сеттеры для приватных полей
 
     /**
-     * Устанавливает объект Telegram бота.
+     * Устанавливает конвейер отправки сообщений.
      *
-     * @param telegramBot объект Telegram бота.
+     * @param messageSender конвейер отправки сообщений.
      */
-    public static void setBot(TelegramBot telegramBot) {
-        bot = telegramBot;
+    public static void setMessageSender(MessageSender messageSender) {
+        sender = messageSender;
     }
 
     /**
@@ -58,6 +69,33 @@ public class MessageHandler {
         userRepository = repository;
     }
 
+    /**
+     * Устанавливает асинхронный репозиторий пользователей для команд только для чтения.
+     *
+     * @param repository асинхронный репозиторий пользователей.
+     */
+    public static void setAsyncUserRepository(AsyncUserRepository repository) {
+        asyncRepository = repository;
+    }
+
+    /**
+     * Устанавливает хранилище состояний диалогов.
+     *
+     * @param sessionStore хранилище состояний диалогов.
+     */
+    public static void setSessionStore(SessionStore sessionStore) {
+        sessions = sessionStore;
+    }
+
+    /**
+     * Устанавливает сервис рассылок.
+     *
+     * @param broadcastService сервис рассылок.
+     */
+    public static void setBroadcastService(BroadcastService broadcastService) {
+        broadcasts = broadcastService;
+    }
+
     /**
      * Устанавливает ID администратора.
      *
@@ -77,24 +115,55 @@ public class MessageHandler {
         long chatId = update.message().chat().id();
         String userName = update.message().chat().username();
 
-        if (Boolean.TRUE.equals(awaitingFeedback.getOrDefault(chatId, Boolean.FALSE))) {
-            handleFeedback(chatId, userName, messageText);
-            return;
-        }
+        long start = System.nanoTime();
+        String command = "text";
+        try {
+            switch (sessions.resetState(chatId)) {
+                case AWAITING_FEEDBACK -> {
+                    command = "feedback";
+                    handleFeedback(chatId, userName, messageText);
+                    return;
+                }
+                case AWAITING_NAME -> {
+                    command = "name";
+                    handleNameUpdate(chatId, messageText);
+                    return;
+                }
+                case IDLE -> {
+                    // обычная команда
+                }
+            }
 
-        if (Boolean.TRUE.equals(awaitingName.getOrDefault(chatId, Boolean.FALSE))) {
-            handleNameUpdate(chatId, messageText);
-            return;
+            command = commandLabel(messageText);
+            if (chatId == adminId && command.equals("/broadcast")) {
+                handleBroadcastCommand(chatId, messageText);
+                return;
+            }
+            switch (messageText) {
+                case "/start" -> handleStartCommand(chatId, userName);
+                case "/menu" -> handleMenuCommand(chatId);
+                case "/streak" -> handleStreakCommand(chatId);
+                case "/stats" -> handleStatsCommand(chatId);
+                case "/facts" -> handleFactsCommand(chatId);
+                case "/feedback" -> handleFeedbackCommand(chatId);
+                default -> handleDefaultCommand(chatId, messageText);
+            }
+        } finally {
+            Metrics.COMMANDS.labels(command).observeSince(start);
         }
+    }
 
-        switch (messageText) {
-            case "/start" -> handleStartCommand(chatId, userName);
-            case "/menu" -> handleMenuCommand(chatId);
-            case "/streak" -> handleStreakCommand(chatId);
-            case "/facts" -> handleFactsCommand(chatId);
-            case "/feedback" -> handleFeedbackCommand(chatId);
-            default -> handleDefaultCommand(chatId, messageText);
-        }
+    /**
+     * Возвращает метку команды для метрик. Произвольный текст не должен попадать в метки.
+     *
+     * @param messageText Текст сообщения.
+     * @return Имя команды или {@code text}.
+     */
+    private static String commandLabel(String messageText) {
+        return switch (messageText) {
+            case "/start", "/menu", "/streak", "/stats", "/facts", "/feedback" -> messageText;
+            default -> messageText.startsWith("/broadcast ") || messageText.equals("/broadcast") ? "/broadcast" : "text";
+        };
     }
 
     /**
@@ -105,11 +174,31 @@ public class MessageHandler {
      * @param messageText Текст сообщения.
      */
     private static void handleFeedback(long chatId, String userName, String messageText) {
-        awaitingFeedback.put(chatId, false);
         SendMessage feedbackMessage = new SendMessage(adminId, "Отзыв от @" + userName + ":\n" + messageText);
-        bot.execute(feedbackMessage);
+        sender.send(adminId, feedbackMessage);
         SendMessage thankYouMessage = new SendMessage(chatId, "Спасибо за твой отзыв! Мне правда важно мнение человеков)");
-        bot.execute(thankYouMessage);
+        sender.send(chatId, thankYouMessage);
+    }
+
+    /**
+     * Обрабатывает команду администратора /broadcast: запускает рассылку текста после команды всем пользователям.
+     * Ход рассылки сервис сообщает администратору сам.
+     *
+     * @param chatId      ID чата администратора.
+     * @param messageText Текст сообщения с командой.
+     */
+    private static void handleBroadcastCommand(long chatId, String messageText) {
+        String text = messageText.substring("/broadcast".length()).strip();
+        String reply;
+        if (text.isEmpty()) {
+            reply = "Использование: /broadcast <текст рассылки>";
+        } else {
+            OptionalLong broadcastId = broadcasts.broadcast(chatId, text);
+            reply = broadcastId.isPresent()
+                    ? "Рассылка #" + broadcastId.getAsLong() + " запущена."
+                    : "Не удалось запустить рассылку, подробности в журнале.";
+        }
+        sender.send(chatId, new SendMessage(chatId, reply));
     }
 
     /**
@@ -126,17 +215,18 @@ public class MessageHandler {
 
         /menu - Выбрать и настроить полезные привычки.
         /streak - Все запланированные напоминания и streak.
+        /stats - Статистика выполнения привычек.
         /facts - Интересные факты о полезных привычках.
         /feedback - Оставить отзыв.
         """;
         SendMessage welcomeMessage = new SendMessage(chatId, welcomeText).parseMode(ParseMode.Markdown);
-        bot.execute(welcomeMessage);
+        sender.send(chatId, welcomeMessage);
 
         // Запрос имени пользователя
         SendMessage askNameMessage = new SendMessage(chatId, "Как мне тебя называть?")
                 .replyMarkup(new ForceReply());
-        bot.execute(askNameMessage);
-        awaitingName.put(chatId, true);
+        sender.send(chatId, askNameMessage);
+        sessions.setState(chatId, ChatState.AWAITING_NAME);
     }
 
     /**
@@ -146,33 +236,79 @@ public class MessageHandler {
      */
     private static void handleMenuCommand(long chatId) {
         SendMessage menuMessage = new SendMessage(chatId, "Выбери полезное дело:").replyMarkup(Menu.getCategoryMenu());
-        bot.execute(menuMessage);
+        sender.send(chatId, menuMessage);
     }
 
     /**
-     * Обрабатывает команду /streak.
+     * Обрабатывает команду /streak. Напоминания читаются асинхронно, пока Telegram показывает, что бот печатает.
      *
      * @param chatId ID чата.
      */
     private static void handleStreakCommand(long chatId) {
-        List<Reminder> reminders = userRepository.getAllRemindersForUser(chatId);
-        StringBuilder messageText = new StringBuilder("*Вот твои полезные привычки:*\n\n");
+        sender.send(chatId, new SendChatAction(chatId, ChatAction.typing));
+        asyncRepository.getAllRemindersForUser(chatId).whenComplete((reminders, error) -> {
+            if (error != null) {
+                replyReadFailed(chatId, "/streak", error);
+                return;
+            }
+            StringBuilder messageText = new StringBuilder("*Вот твои полезные привычки:*\n\n");
 
-        if (reminders.isEmpty()) {
-            messageText.append("У тебя нет запланированных напоминаний:(");
-        } else {
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm");
-            for (Reminder reminder : reminders) {
-                String translatedCategory = Main.categoryTranslations.getOrDefault(reminder.category(), reminder.category());
-                String formattedTime = timeFormat.format(reminder.activityTime());
-                int streakNum = userRepository.getStreakNum(chatId, reminder.category());
-                messageText.append(translatedCategory).append(" - ").append(formattedTime).append(" - ").append(streakNum).append(" дней\n");
+            if (reminders.isEmpty()) {
+                messageText.append("У тебя нет запланированных напоминаний:(");
+            } else {
+                for (Reminder reminder : reminders) {
+                    String translatedCategory = Main.categoryTranslations.getOrDefault(reminder.category(), reminder.category());
+                    String formattedTime = TimeParser.format(reminder.activityTime());
+                    messageText.append(translatedCategory).append(" - ").append(formattedTime).append(" - ").append(reminder.streakNum()).append(" дней\n");
+                }
             }
-        }
 
-        SendMessage settingsMessage = new SendMessage(chatId, messageText.toString())
-                .parseMode(ParseMode.Markdown);
-        bot.execute(settingsMessage);
+            SendMessage settingsMessage = new SendMessage(chatId, messageText.toString())
+                    .parseMode(ParseMode.Markdown);
+            sender.send(chatId, settingsMessage);
+        });
+    }
+
+    /**
+     * Обрабатывает команду /stats. Статистика читается асинхронно из накопленных итогов, а не из журнала отметок.
+     *
+     * @param chatId ID чата.
+     */
+    private static void handleStatsCommand(long chatId) {
+        sender.send(chatId, new SendChatAction(chatId, ChatAction.typing));
+        asyncRepository.getUserStats(chatId).whenComplete((stats, error) -> {
+            if (error != null) {
+                replyReadFailed(chatId, "/stats", error);
+                return;
+            }
+            LocalDate today = LocalDate.now();
+            StringBuilder messageText = new StringBuilder("*Твоя статистика:*\n");
+
+            if (stats.isEmpty()) {
+                messageText.append("\nОтметок пока нет. Отмечай напоминания кнопками ✅ и ❌.");
+            }
+            for (UserStats stat : stats) {
+                messageText.append('\n').append(Main.categoryTranslations.getOrDefault(stat.category(), stat.category())).append('\n')
+                        .append("выполнено ").append(stat.totalCompleted()).append(", пропущено ").append(stat.totalMissed()).append('\n')
+                        .append("серия сейчас ").append(stat.currentStreak()).append(", лучшая ").append(stat.longestStreak()).append('\n')
+                        .append("за 7 дней ").append(formatRate(stat.completionRate(7, today)))
+                        .append(", за 30 дней ").append(formatRate(stat.completionRate(30, today))).append('\n');
+            }
+
+            SendMessage statsMessage = new SendMessage(chatId, messageText.toString())
+                    .parseMode(ParseMode.Markdown);
+            sender.send(chatId, statsMessage);
+        });
+    }
+
+    private static void replyReadFailed(long chatId, String command, Throwable error) {
+        logger.log(Level.WARNING, "Команда {0} для chatId={1} не выполнена: {2}",
+                new Object[]{command, chatId, error.toString()});
+        sender.send(chatId, new SendMessage(chatId, "Сейчас не получается загрузить данные, попробуй чуть позже."));
+    }
+
+    private static String formatRate(double rate) {
+        return rate < 0 ? "—" : Math.round(rate * 100) + "%";
     }
 
     /**
@@ -182,7 +318,7 @@ public class MessageHandler {
      */
     private static void handleFactsCommand(long chatId) {
         SendMessage factsMenuMessage = new SendMessage(chatId, "Выбери категорию для получения факта:").replyMarkup(Menu.getFactsMenu());
-        bot.execute(factsMenuMessage);
+        sender.send(chatId, factsMenuMessage);
     }
 
     /**
@@ -191,9 +327,9 @@ public class MessageHandler {
      * @param chatId ID чата.
      */
     private static void handleFeedbackCommand(long chatId) {
-        awaitingFeedback.put(chatId, true);
+        sessions.setState(chatId, ChatState.AWAITING_FEEDBACK);
         SendMessage feedbackRequestMessage = new SendMessage(chatId, "Пожалуйста, напиши свое искреннее мнение:");
-        bot.execute(feedbackRequestMessage);
+        sender.send(chatId, feedbackRequestMessage);
     }
 
     /**
@@ -203,117 +339,192 @@ public class MessageHandler {
      * @param messageText Текст сообщения.
      */
     private static void handleDefaultCommand(long chatId, String messageText) {
-        if (messageText.matches("^(?:[01]\\d|2[0-3]):[0-5]\\d$")) {
-            Time activityTime = Time.valueOf(messageText + ":00");
-            handleTimeInput(chatId, activityTime);
+        int minuteOfDay = TimeParser.parseMinuteOfDay(messageText);
+        if (minuteOfDay != TimeParser.INVALID) {
+            handleTimeInput(chatId, minuteOfDay);
         } else {
             SendMessage errorMessage = new SendMessage(chatId, "Неверный формат. Пожалуйста, введи время в формате HH:MM.");
-            bot.execute(errorMessage);
+            sender.send(chatId, errorMessage);
         }
     }
 
     /**
      * Обрабатывает ввод времени.
      *
-     * @param chatId       ID чата.
-     * @param activityTime Время действия.
+     * @param chatId      ID чата.
+     * @param minuteOfDay Время действия в минутах от начала суток.
      */
-    private static void handleTimeInput(long chatId, Time activityTime) {
+    private static void handleTimeInput(long chatId, int minuteOfDay) {
+        String currentCategory = sessions.getPendingCategory(chatId);
         if (currentCategory != null) {
-            Optional<Time> existingTime = userRepository.getActivityTime(chatId, currentCategory);
+            Time activityTime = TimeParser.toTime(minuteOfDay);
             String translatedCategory = Main.categoryTranslations.getOrDefault(currentCategory, currentCategory);
-            String formattedTime = new SimpleDateFormat("HH:mm").format(activityTime);
-
-            if (existingTime.isPresent()) {
-                userRepository.updateActivityTime(chatId, currentCategory, activityTime);
-                ReminderScheduler.scheduleReminder(chatId, currentCategory, activityTime);
-                SendMessage confirmationMessage = new SendMessage(chatId, "Твое время для \"" + translatedCategory + "\" обновлено на " + formattedTime + ".");
-                bot.execute(confirmationMessage);
-            } else {
-                userRepository.addActivity(chatId, currentCategory, activityTime);
+            String formattedTime = TimeParser.format(minuteOfDay);
+
+            UpsertResult result = userRepository.upsertActivity(chatId, currentCategory, activityTime);
+            String reply = switch (result) {
+                case CREATED -> "Спасибо! Твое напоминание установлено на " + formattedTime + ".";
+                case UPDATED, UNCHANGED -> "Твое время для \"" + translatedCategory + "\" обновлено на " + formattedTime + ".";
+                case USER_NOT_FOUND -> "Сначала познакомимся: отправь /start.";
+                case FAILED -> "Не удалось сохранить напоминание, попробуй еще раз.";
+            };
+            if (result == UpsertResult.CREATED || result == UpsertResult.UPDATED || result == UpsertResult.UNCHANGED) {
                 ReminderScheduler.scheduleReminder(chatId, currentCategory, activityTime);
-                SendMessage confirmationMessage = new SendMessage(chatId, "Спасибо! Твое напоминание установлено на " + formattedTime + ".");
-                bot.execute(confirmationMessage);
             }
+            sender.send(chatId, new SendMessage(chatId, reply));
         } else {
             SendMessage errorMessage = new SendMessage(chatId, "Пожалуйста, выбери категорию привычки.");
-            bot.execute(errorMessage);
+            sender.send(chatId, errorMessage);
         }
     }
 
     /**
-     * Обрабатывает входящие запросы.
+     * Обрабатывает нажатие кнопки, уже разобранное {@link CallbackCodec}.
      *
-     * @param update объект обновления Telegram.
+     * @param chatId    ID чата.
+     * @param messageId ID сообщения с кнопкой.
+     * @param decoded   Результат {@link CallbackCodec#decode(String)}.
+     * @return {@code false}, если изменение не сохранено в базе и нажатие можно повторить.
      */
-    public static void handleCallbackQuery(Update update) {
-        if (update.callbackQuery() != null) {
-            String callbackData = update.callbackQuery().data();
-            if (update.callbackQuery().message() != null && update.callbackQuery().message().chat() != null) {
-                long chatId = update.callbackQuery().message().chat().id();
-                int messageId = update.callbackQuery().message().messageId();
-
-                if (callbackData.startsWith("fact_")) {
-                    handleFactCallback(chatId, callbackData);
-                } else if (callbackData.startsWith("delete_")) {
-                    handleDeleteCallback(chatId, callbackData);
-                } else if (callbackData.startsWith("complete_")) {
-                    handleCompleteCallback(chatId, callbackData, messageId);
-                } else if (callbackData.startsWith("miss_")) {
-                    handleMissCallback(chatId, callbackData, messageId);
-                } else if (callbackData.equals("yes_name")) {
-                    SendMessage message = new SendMessage(chatId, "Как мне тебя называть?").replyMarkup(new ForceReply());
-                    awaitingName.put(chatId, true);
-                    bot.execute(message);
-                }
-            } else {
-                logger.log(Level.WARNING, "CallbackQuery does not contain a valid message or chat.");
+    public static boolean handleCallbackQuery(long chatId, int messageId, int decoded) {
+        String category = CallbackCodec.category(decoded);
+        switch (CallbackCodec.action(decoded)) {
+            case FACT -> handleFactCallback(chatId, category);
+            case DELETE -> {
+                return handleDeleteCallback(chatId, category);
             }
-        } else {
-            logger.log(Level.WARNING, "Update does not contain a valid callback query.");
+            case COMPLETE -> {
+                return handleCompleteCallback(chatId, category, messageId);
+            }
+            case MISS -> {
+                return handleMissCallback(chatId, category, messageId);
+            }
+            case ASK_NAME -> {
+                SendMessage message = new SendMessage(chatId, "Как мне тебя называть?").replyMarkup(new ForceReply());
+                sessions.setState(chatId, ChatState.AWAITING_NAME);
+                sender.send(chatId, message);
+            }
+            default -> logger.log(Level.WARNING, "Необработанное действие: {0}", CallbackCodec.action(decoded));
         }
+        return true;
     }
 
-
-    private static void handleFactCallback(long chatId, String callbackData) {
-        String category = callbackData.replace("fact_", "");
+    private static void handleFactCallback(long chatId, String category) {
         String fact = Facts.getRandomFact(category);
         SendMessage factMessage = new SendMessage(chatId, fact);
-        bot.execute(factMessage);
+        sender.send(chatId, factMessage);
     }
 
-    private static void handleDeleteCallback(long chatId, String callbackData) {
-        String category = callbackData.replace("delete_", "");
-        userRepository.deleteActivity(chatId, category);
+    private static boolean handleDeleteCallback(long chatId, String category) {
+        Optional<Boolean> deleted = userRepository.inTransaction(() -> {
+            userRepository.deleteActivity(chatId, category);
+            return Boolean.TRUE;
+        });
+        if (deleted.isEmpty()) {
+            replyDatabaseUnavailable(chatId, "deleteActivity");
+            return false;
+        }
+        ReminderScheduler.cancelReminder(chatId, category);
         SendMessage deleteConfirmationMessage = new SendMessage(chatId, "Твое напоминание для \"" + Main.categoryTranslations.get(category) + "\" было удалено.");
-        bot.execute(deleteConfirmationMessage);
+        sender.send(chatId, deleteConfirmationMessage);
+        return true;
+    }
+
+    private static boolean handleCompleteCallback(long chatId, String category, int messageId) {
+        LocalDate today = LocalDate.now();
+        Optional<StreakUpdate> update = userRepository.inTransaction(() -> {
+            OptionalInt current = userRepository.getStreakNumForUpdate(chatId, category);
+            if (current.isEmpty()) {
+                return StreakUpdate.NOT_FOUND;
+            }
+            // повторное нажатие за тот же день не увеличивает серию
+            if (!userRepository.recordCompletion(chatId, category, true, today)) {
+                return new StreakUpdate(false, current);
+            }
+            return new StreakUpdate(true, userRepository.incrementStreakNum(chatId, category));
+        });
+        if (update.isEmpty()) {
+            replyDatabaseUnavailable(chatId, "complete");
+            return false;
+        }
+        // кнопка убирается только после сохранения отметки, иначе ее нельзя было бы нажать повторно
+        sender.send(chatId, new DeleteMessage(chatId, messageId));
+        StreakUpdate result = update.get();
+        String translatedCategory = Main.categoryTranslations.get(category);
+        String text;
+        if (result.streakNum().isEmpty()) {
+            text = "Напоминание для \"" + translatedCategory + "\" не найдено.";
+        } else if (!result.recorded()) {
+            text = "Отметка за сегодня уже есть.\n\nТвой streak для \"" + translatedCategory + "\": " + result.streakNum().getAsInt();
+        } else {
+            text = "Так держать!\n\nТвой streak для \"" + translatedCategory + "\": " + result.streakNum().getAsInt() + " \uD83C\uDF89";
+        }
+        sender.send(chatId, new SendMessage(chatId, text));
+        return true;
+    }
+
+    private static boolean handleMissCallback(long chatId, String category, int messageId) {
+        LocalDate today = LocalDate.now();
+        Optional<StreakUpdate> update = userRepository.inTransaction(() -> {
+            OptionalInt current = userRepository.getStreakNumForUpdate(chatId, category);
+            if (current.isEmpty()) {
+                return StreakUpdate.NOT_FOUND;
+            }
+            if (!userRepository.recordCompletion(chatId, category, false, today)) {
+                return new StreakUpdate(false, current);
+            }
+            return new StreakUpdate(true, userRepository.resetStreakNum(chatId, category));
+        });
+        if (update.isEmpty()) {
+            replyDatabaseUnavailable(chatId, "miss");
+            return false;
+        }
+        sender.send(chatId, new DeleteMessage(chatId, messageId));
+        StreakUpdate result = update.get();
+        String translatedCategory = Main.categoryTranslations.get(category);
+        String text;
+        if (result.streakNum().isEmpty()) {
+            text = "Напоминание для \"" + translatedCategory + "\" не найдено.";
+        } else if (!result.recorded()) {
+            text = "Отметка за сегодня уже есть.\n\nТвой streak для \"" + translatedCategory + "\": " + result.streakNum().getAsInt();
+        } else {
+            text = "Твой streak для \"" + translatedCategory + "\": 0.\n\nА было: " + result.streakNum().getAsInt() + " \uD83D\uDE2D";
+        }
+        sender.send(chatId, new SendMessage(chatId, text));
+        return true;
     }
 
-    private static void handleCompleteCallback(long chatId, String callbackData, int messageId) {
-        String category = callbackData.replace("complete_", "");
-        userRepository.incrementStreakNum(chatId, category);
-        bot.execute(new DeleteMessage(chatId, messageId));
-        int streakNum = userRepository.getStreakNum(chatId, category);
-        SendMessage confirmationMessage = new SendMessage(chatId, "Так держать!\n\nТвой streak для \"" + Main.categoryTranslations.get(category) + "\": " + streakNum + " \uD83C\uDF89");
-        bot.execute(confirmationMessage);
+    /**
+     * Результат отметки напоминания.
+     *
+     * @param recorded  {@code true}, если отметка засчитана и серия изменена.
+     * @param streakNum Серия после отметки (до сброса для пропуска), текущая серия, если отметка за этот день уже была,
+     *                  или пустой OptionalInt, если напоминание не найдено.
+     */
+    private record StreakUpdate(boolean recorded, OptionalInt streakNum) {
+        static final StreakUpdate NOT_FOUND = new StreakUpdate(false, OptionalInt.empty());
     }
 
-    private static void handleMissCallback(long chatId, String callbackData, int messageId) {
-        String category = callbackData.replace("miss_", "");
-        bot.execute(new DeleteMessage(chatId, messageId));
-        int prevStreakNum = userRepository.getStreakNum(chatId, category);
-        userRepository.resetStreakNum(chatId, category);
-        SendMessage confirmationMessage = new SendMessage(chatId, "Твой streak для \"" + Main.categoryTranslations.get(category) + "\": 0.\n\nА было: " + prevStreakNum + " \uD83D\uDE2D");
-        bot.execute(confirmationMessage);
+    /**
+     * Сообщает пользователю, что изменение не сохранено: транзакция откатана из-за ошибки базы.
+     *
+     * @param chatId    ID чата.
+     * @param operation Название операции для лога.
+     */
+    private static void replyDatabaseUnavailable(long chatId, String operation) {
+        logger.log(Level.WARNING, "Операция {0} для chatId={1} не выполнена: транзакция откатана",
+                new Object[]{operation, chatId});
+        sender.send(chatId, new SendMessage(chatId, "Сейчас не получается сохранить отметку, попробуй чуть позже."));
     }
 
     /**
-     * Устанавливает текущую категорию.
+     * Устанавливает текущую категорию для чата.
      *
+     * @param chatId   ID чата.
      * @param category Текущая категория.
      */
-    public static void setCurrentCategory(String category) {
-        currentCategory = category;
+    public static void setCurrentCategory(long chatId, String category) {
+        sessions.setPendingCategory(chatId, category);
     }
 
     /**
@@ -323,9 +534,9 @@ public class MessageHandler {
      * @param newName Новое имя пользователя.
      */
     private static void handleNameUpdate(long chatId, String newName) {
-        awaitingName.put(chatId, false);
         userRepository.updateUserName(chatId, newName);
-        SendMessage thankYouMessage = new SendMessage(chatId, "Приятно познакомиться, " + newName + "!\nВот немного обо мне:\n/menu - Выбрать и настроить полезные привычки.\n/streak - Все запланированные напоминания и streak.\n/facts - Интересные факты о полезных привычках.\n/feedback - Оставить отзыв.");
-        bot.execute(thankYouMessage);
+        ReminderScheduler.userUpdated(chatId);
+        SendMessage thankYouMessage = new SendMessage(chatId, "Приятно познакомиться, " + newName + "!\nВот немного обо мне:\n/menu - Выбрать и настроить полезные привычки.\n/streak - Все запланированные напоминания и streak.\n/stats - Статистика выполнения привычек.\n/facts - Интересные факты о полезных привычках.\n/feedback - Оставить отзыв.");
+        sender.send(chatId, thankYouMessage);
     }
 }
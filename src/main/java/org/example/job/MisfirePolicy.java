@@ -0,0 +1,32 @@
+package org.example.job;
+
+/**
+ * Политика для минут, обработка которых опоздала дольше одной минуты
+ * (пауза JVM, перегрузка планировщика, пропущенный запуск Quartz).
+ * Задается свойством {@code reminders.misfire.policy}.
+ */
+public enum MisfirePolicy {
+    /**
+     * Опоздавшие напоминания отправляются сразу, если опоздание не превышает {@code reminders.misfire.maxLagMs}.
+     */
+    CATCH_UP,
+    /**
+     * Опоздавшие напоминания пропускаются.
+     */
+    SKIP;
+
+    /**
+     * Разбирает значение свойства.
+     *
+     * @param value Значение свойства.
+     * @return Политика, {@link #CATCH_UP} для неизвестных значений.
+     */
+    static MisfirePolicy parse(String value) {
+        for (MisfirePolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        return CATCH_UP;
+    }
+}
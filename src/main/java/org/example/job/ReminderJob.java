@@ -1,33 +1,77 @@
 package org.example.job;
 
-import com.pengrad.telegrambot.TelegramBot;
-import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
-import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
 import com.pengrad.telegrambot.request.SendMessage;
+import org.example.config.ConfigLoader;
+import org.example.logging.EventCategory;
+import org.example.logging.EventLog;
+import org.example.metrics.Metrics;
 import org.example.repository.UserRepository;
+import org.example.sceduler.ReminderScheduler;
+import org.example.sender.MessageSender;
+import org.example.templates.menu.Menu;
 import org.example.templates.messages.MessagesTemplates;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Задача для отправки напоминаний пользователям.
+ * <p>
+ * Запускается раз в минуту и рассылает все напоминания, запланированные на эту минуту.
+ * Чтобы популярные минуты (08:00, 22:00) не нагружали базу и Telegram одним всплеском, отправки минуты
+ * распределяются по окну {@code reminders.spread.windowMs} согласно {@link SpreadPolicy}.
+ * Число одновременных отправок ограничено свойством {@code reminders.fanout.concurrency}.
  */
 public class ReminderJob implements Job {
     private static final Logger logger = Logger.getLogger(ReminderJob.class.getName());
-    private static TelegramBot bot;
+    private static final EventCategory events = EventLog.category("reminders");
+    private static final ExecutorService fanOut = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("reminder-", 0).factory());
+    private static final ExecutorService spreader = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("reminder-spread-", 0).factory());
+    private static final Semaphore inFlight = new Semaphore(ConfigLoader.getIntProperty("reminders.fanout.concurrency", 16));
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long MAX_CATCH_UP_MINUTES = 24 * 60 - 1;
+    private static final SpreadPolicy spreadPolicy = SpreadPolicy.parse(ConfigLoader.getProperty("reminders.spread.mode", "jitter"));
+    private static final long spreadWindowNanos = TimeUnit.MILLISECONDS.toNanos(
+            ConfigLoader.getLongProperty("reminders.spread.windowMs", 50_000L));
+    private static final long minIntervalNanos = minInterval(ConfigLoader.getIntProperty("reminders.spread.maxPerSecond", 0));
+    // опоздавшие минуты догоняются не быстрее общего лимита отправки, если свой темп не задан
+    private static final long catchUpIntervalNanos = minIntervalNanos > 0 ? minIntervalNanos
+            : minInterval(ConfigLoader.getIntProperty("sender.globalRatePerSecond", 30));
+    // момент System.nanoTime(), когда закончится уже запущенная догоняющая рассылка
+    private static final AtomicLong catchUpFreeAt = new AtomicLong(System.nanoTime());
+    private static final MisfirePolicy misfirePolicy = MisfirePolicy.parse(ConfigLoader.getProperty("reminders.misfire.policy", "catch_up"));
+    private static final long misfireMaxLagMillis = ConfigLoader.getLongProperty("reminders.misfire.maxLagMs", 600_000L);
+    private static final AtomicLong lastProcessedMinute = new AtomicLong(-1);
+    private static MessageSender sender;
     private static UserRepository userRepository;
 
+    private static long minInterval(int maxPerSecond) {
+        return maxPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxPerSecond : 0;
+    }
+
     /**
-     * Устанавливает экземпляр бота для отправки сообщений.
+     * Устанавливает конвейер отправки сообщений.
      *
-     * @param bot Экземпляр TelegramBot.
+     * @param sender Конвейер отправки сообщений.
      */
-    public static void setBot(TelegramBot bot) {
-        ReminderJob.bot = bot;
+    public static void setMessageSender(MessageSender sender) {
+        ReminderJob.sender = sender;
     }
 
     /**
@@ -40,33 +84,170 @@ public class ReminderJob implements Job {
     }
 
     /**
-     * Выполняет задачу отправки напоминания пользователю.
+     * Рассылает напоминания, запланированные на минуту срабатывания задачи, а также напоминания минут,
+     * пропущенных с прошлого запуска, согласно {@link MisfirePolicy}.
      *
      * @param context Контекст выполнения задачи.
      */
     @Override
     public void execute(JobExecutionContext context) {
-        long userId = context.getJobDetail().getJobDataMap().getLong("userId");  // Исправлено на long
-        String category = context.getJobDetail().getJobDataMap().getString("category");
+        long scheduledMinute = context.getScheduledFireTime().getTime() / MINUTE_MILLIS;
+        long previous = lastProcessedMinute.getAndAccumulate(scheduledMinute, Math::max);
+        if (previous >= scheduledMinute) {
+            return;
+        }
+        long from = previous < 0 ? scheduledMinute : Math.max(previous + 1, scheduledMinute - MAX_CATCH_UP_MINUTES);
+        long now = System.currentTimeMillis();
+        for (long minute = from; minute <= scheduledMinute; minute++) {
+            long minuteStart = minute * MINUTE_MILLIS;
+            boolean late = now - minuteStart >= MINUTE_MILLIS;
+            if (late && (misfirePolicy == MisfirePolicy.SKIP || now - minuteStart > misfireMaxLagMillis)) {
+                int[] skipped = new int[1];
+                ReminderScheduler.forEachDue(minuteOfDay(minuteStart), (userId, category) -> skipped[0]++);
+                if (skipped[0] > 0) {
+                    Metrics.REMINDERS_SKIPPED.add(skipped[0]);
+                    logger.log(Level.WARNING, "Пропущено {0} напоминаний опоздавшей минуты {1}",
+                            new Object[]{skipped[0], Instant.ofEpochMilli(minuteStart)});
+                }
+                continue;
+            }
+            dispatchMinute(minuteStart, late);
+        }
+        if (minuteOfDay(scheduledMinute * MINUTE_MILLIS) == 0) {
+            // раз в сутки заводим секцию журнала отметок на следующий месяц
+            fanOut.execute(() -> userRepository.ensureEventPartitions(LocalDate.now()));
+        }
+    }
+
+    /**
+     * Собирает напоминания минуты и запускает их отправку в отдельном виртуальном потоке,
+     * распределяя по времени согласно {@link SpreadPolicy}. Опоздавшая минута распределяется по тому же окну
+     * с {@link SpreadPolicy#PACING} не быстрее {@code reminders.spread.maxPerSecond}, а если он не задан -
+     * {@code sender.globalRatePerSecond}. Несколько опоздавших минут отправляются друг за другом, а не одновременно.
+     *
+     * @param minuteStart Начало минуты в миллисекундах эпохи.
+     * @param late        Минута обрабатывается с опозданием.
+     */
+    private static void dispatchMinute(long minuteStart, boolean late) {
+        DueBatch batch = new DueBatch();
+        ReminderScheduler.forEachDue(minuteOfDay(minuteStart), batch::add);
+        if (batch.count == 0) {
+            return;
+        }
+        SpreadPolicy policy = late ? SpreadPolicy.PACING : spreadPolicy;
+        long interval = late ? catchUpIntervalNanos : minIntervalNanos;
+        long[] order = new long[batch.count];
+        long lastOffset = 0;
+        for (int i = 0; i < batch.count; i++) {
+            long offset = policy.offsetNanos(i, batch.count, batch.userIds[i], batch.categories[i], spreadWindowNanos, interval);
+            lastOffset = Math.max(lastOffset, offset);
+            // смещение в миллисекундах в старших битах, индекс в младших - сортировка дает порядок отправки
+            order[i] = TimeUnit.NANOSECONDS.toMillis(offset) << 32 | i;
+        }
+        if (policy == SpreadPolicy.JITTER) {
+            Arrays.sort(order);
+        }
+        // смещения отсчитываются от начала минуты, а для опоздавшей минуты - от конца предыдущей догоняющей рассылки
+        long startNanos = late ? reserveCatchUp(lastOffset + interval)
+                : System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - minuteStart));
+        spreader.execute(() -> {
+            for (long entry : order) {
+                int i = (int) entry;
+                long dueNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(entry >>> 32);
+                long wait;
+                while ((wait = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!submit(batch.userIds[i], batch.categories[i], minuteStart, dueNanos)) {
+                    return;
+                }
+            }
+        });
+        logger.log(Level.INFO, "Минута {0}: поставлено в отправку {1} напоминаний, политика {2}",
+                new Object[]{Instant.ofEpochMilli(minuteStart), batch.count, policy});
+    }
+
+    /**
+     * Резервирует время для догоняющей рассылки после уже запущенных.
+     *
+     * @param spanNanos Длительность рассылки.
+     * @return Момент {@link System#nanoTime()}, с которого отсчитываются смещения рассылки.
+     */
+    private static long reserveCatchUp(long spanNanos) {
+        long now = System.nanoTime();
+        long previous = catchUpFreeAt.getAndAccumulate(spanNanos, (freeAt, span) -> Math.max(freeAt, now) + span);
+        return Math.max(previous, now);
+    }
+
+    private static int minuteOfDay(long epochMillis) {
+        LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static boolean submit(long userId, String category, long scheduledAt, long dueNanos) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        Metrics.REMINDER_DISPATCH_LAG.observeSince(dueNanos);
+        fanOut.execute(() -> {
+            try {
+                sendReminder(userId, category, scheduledAt);
+            } finally {
+                inFlight.release();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Отправляет напоминание пользователю.
+     *
+     * @param userId      ID пользователя.
+     * @param category    Категория напоминания.
+     * @param scheduledAt Запланированное время напоминания в миллисекундах эпохи.
+     */
+    private static void sendReminder(long userId, String category, long scheduledAt) {
         Optional<String> userNameOpt = userRepository.getUserNameByTgId(userId);
         String userName = userNameOpt.orElse("User");
 
         String messageText = MessagesTemplates.getRandomMessage(category, userName);
 
-        InlineKeyboardMarkup inlineKeyboard = new InlineKeyboardMarkup(
-                new InlineKeyboardButton("✅").callbackData("complete_" + category),
-                new InlineKeyboardButton("❌").callbackData("miss_" + category)
-        );
-
         SendMessage message = new SendMessage(userId, messageText)
-                .replyMarkup(inlineKeyboard);
+                .replyMarkup(Menu.getReminderKeyboard(category));
 
-        try {
-            bot.execute(message);
-            logger.log(Level.INFO, "Напоминание отправлено успешно userId={0}", userId);
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, e, () -> "Не удалось отправить сообщение userId=" + userId);
-        }
+        sender.send(userId, message).whenComplete((response, error) -> {
+            boolean sent = error == null && response.isOk();
+            long lagMillis = System.currentTimeMillis() - scheduledAt;
+            Metrics.REMINDER_LAG.labels(sent ? "sent" : "failed").observeNanos(TimeUnit.MILLISECONDS.toNanos(lagMillis));
+            if (error != null) {
+                events.error("Не удалось отправить напоминание", error, "userId", userId, "category", category);
+            } else if (response.isOk()) {
+                events.info("Напоминание отправлено", "userId", userId, "category", category);
+            } else {
+                events.warning("Telegram отклонил напоминание", "userId", userId);
+            }
+        });
     }
 
+    /**
+     * Напоминания одной минуты в параллельных массивах.
+     */
+    private static final class DueBatch {
+        private long[] userIds = new long[64];
+        private String[] categories = new String[64];
+        private int count;
+
+        void add(long userId, String category) {
+            if (count == userIds.length) {
+                userIds = Arrays.copyOf(userIds, count * 2);
+                categories = Arrays.copyOf(categories, count * 2);
+            }
+            userIds[count] = userId;
+            categories[count] = category;
+            count++;
+        }
+    }
 }
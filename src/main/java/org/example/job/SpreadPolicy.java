@@ -0,0 +1,62 @@
+package org.example.job;
+
+/**
+ * Политика распределения отправок одной минуты по времени.
+ * Задается свойством {@code reminders.spread.mode}.
+ */
+public enum SpreadPolicy {
+    /**
+     * Все напоминания минуты отправляются сразу.
+     */
+    NONE,
+    /**
+     * Каждое напоминание получает детерминированное смещение внутри окна по хешу пользователя и категории,
+     * поэтому один и тот же пользователь каждый день получает напоминание в одну и ту же секунду.
+     */
+    JITTER,
+    /**
+     * Напоминания равномерно распределяются по окну, но не чаще {@code reminders.spread.maxPerSecond} в секунду.
+     * Если напоминаний больше, чем помещается в окно при этом темпе, рассылка выходит за пределы окна.
+     */
+    PACING;
+
+    /**
+     * Возвращает смещение отправки от начала минуты.
+     *
+     * @param index            Порядковый номер напоминания в минуте.
+     * @param count            Число напоминаний в минуте.
+     * @param userId           ID пользователя.
+     * @param category         Категория напоминания.
+     * @param windowNanos      Ширина окна в наносекундах.
+     * @param minIntervalNanos Минимальный интервал между отправками для {@link #PACING}.
+     * @return Смещение в наносекундах.
+     */
+    long offsetNanos(int index, int count, long userId, String category, long windowNanos, long minIntervalNanos) {
+        return switch (this) {
+            case NONE -> 0;
+            case JITTER -> windowNanos <= 0 ? 0 : Math.floorMod(mix(userId * 31 + category.hashCode()), windowNanos);
+            case PACING -> index * Math.max(count > 0 ? windowNanos / count : 0, minIntervalNanos);
+        };
+    }
+
+    /**
+     * Разбирает значение свойства.
+     *
+     * @param value Значение свойства.
+     * @return Политика, {@link #JITTER} для неизвестных значений.
+     */
+    static SpreadPolicy parse(String value) {
+        for (SpreadPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        return JITTER;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.logging;
+
+import java.util.logging.Level;
+
+/**
+ * Ячейка кольцевого буфера {@link EventLog}. Ячейки создаются один раз и переиспользуются,
+ * поэтому запись события не создает объектов, кроме упаковки значений полей.
+ */
+final class Event {
+    static final int MAX_FIELDS = 4;
+
+    Level level;
+    EventCategory category;
+    String message;
+    Throwable error;
+    long timestampMillis;
+    final String[] keys = new String[MAX_FIELDS];
+    final Object[] values = new Object[MAX_FIELDS];
+    final long[] longValues = new long[MAX_FIELDS];
+    int fieldCount;
+    /**
+     * Битовая маска полей, значение которых хранится в {@link #longValues}, а не в {@link #values}.
+     */
+    int longMask;
+
+    void field(String key, long value) {
+        keys[fieldCount] = key;
+        longValues[fieldCount] = value;
+        longMask |= 1 << fieldCount;
+        fieldCount++;
+    }
+
+    void field(String key, Object value) {
+        keys[fieldCount] = key;
+        values[fieldCount] = value;
+        fieldCount++;
+    }
+
+    /**
+     * Форматирует событие в строку вида {@code message key=value key=value}.
+     *
+     * @param builder Буфер для строки.
+     * @return Тот же буфер.
+     */
+    StringBuilder format(StringBuilder builder) {
+        builder.append(message);
+        for (int i = 0; i < fieldCount; i++) {
+            builder.append(' ').append(keys[i]).append('=');
+            if ((longMask & (1 << i)) != 0) {
+                builder.append(longValues[i]);
+            } else {
+                builder.append(values[i]);
+            }
+        }
+        return builder;
+    }
+
+    void clear() {
+        category = null;
+        message = null;
+        error = null;
+        for (int i = 0; i < fieldCount; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        fieldCount = 0;
+        longMask = 0;
+    }
+}
@@ -0,0 +1,271 @@
+package org.example.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Категория событий {@link EventLog} с собственными выборкой и ограничением частоты.
+ * <p>
+ * Информационные события категории записываются с вероятностью {@code 1 / sampleEvery} и не чаще
+ * {@code maxPerSecond} в секунду (0 - без ограничения). К записанным при выборке событиям добавляется
+ * поле {@code sampleEvery}, чтобы по логу можно было оценить исходное число событий.
+ * Предупреждения и ошибки не подвергаются ни выборке, ни ограничению.
+ * <p>
+ * Значение первого поля события имеет тип {@code long}, что покрывает частый случай Телеграм ID без упаковки.
+ */
+public final class EventCategory {
+    private static final long EPOCH = System.nanoTime();
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final String name;
+    private final Logger logger;
+    private final int sampleEvery;
+    private final int maxPerSecond;
+    // номер секунды в старших битах, число событий за эту секунду в младших
+    private final AtomicLong window = new AtomicLong();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    EventCategory(String name, int sampleEvery, int maxPerSecond) {
+        this.name = name;
+        this.logger = Logger.getLogger(name);
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.maxPerSecond = (int) Math.min(Math.max(0, maxPerSecond), COUNT_MASK);
+    }
+
+    /**
+     * Записывает информационное событие.
+     *
+     * @param message Постоянное описание события.
+     */
+    public void info(String message) {
+        emit(Level.INFO, message, null, 0, null, 0, null, null, null, null);
+    }
+
+    /**
+     * Записывает информационное событие с одним полем.
+     *
+     * @param message Постоянное описание события.
+     * @param key1    Имя поля.
+     * @param value1  Значение поля.
+     */
+    public void info(String message, String key1, long value1) {
+        emit(Level.INFO, message, null, 1, key1, value1, null, null, null, null);
+    }
+
+    /**
+     * Записывает информационное событие с двумя полями.
+     *
+     * @param message Постоянное описание события.
+     * @param key1    Имя первого поля.
+     * @param value1  Значение первого поля.
+     * @param key2    Имя второго поля.
+     * @param value2  Значение второго поля.
+     */
+    public void info(String message, String key1, long value1, String key2, Object value2) {
+        emit(Level.INFO, message, null, 2, key1, value1, key2, value2, null, null);
+    }
+
+    /**
+     * Записывает информационное событие с тремя полями.
+     *
+     * @param message Постоянное описание события.
+     * @param key1    Имя первого поля.
+     * @param value1  Значение первого поля.
+     * @param key2    Имя второго поля.
+     * @param value2  Значение второго поля.
+     * @param key3    Имя третьего поля.
+     * @param value3  Значение третьего поля.
+     */
+    public void info(String message, String key1, long value1, String key2, Object value2, String key3, Object value3) {
+        emit(Level.INFO, message, null, 3, key1, value1, key2, value2, key3, value3);
+    }
+
+    /**
+     * Записывает предупреждение.
+     *
+     * @param message Постоянное описание события.
+     */
+    public void warning(String message) {
+        emit(Level.WARNING, message, null, 0, null, 0, null, null, null, null);
+    }
+
+    /**
+     * Записывает предупреждение с одним полем.
+     *
+     * @param message Постоянное описание события.
+     * @param key1    Имя поля.
+     * @param value1  Значение поля.
+     */
+    public void warning(String message, String key1, long value1) {
+        emit(Level.WARNING, message, null, 1, key1, value1, null, null, null, null);
+    }
+
+    /**
+     * Записывает ошибку.
+     *
+     * @param message Постоянное описание события.
+     * @param error   Исключение.
+     */
+    public void error(String message, Throwable error) {
+        emit(Level.SEVERE, message, error, 0, null, 0, null, null, null, null);
+    }
+
+    /**
+     * Записывает ошибку с одним полем.
+     *
+     * @param message Постоянное описание события.
+     * @param error   Исключение.
+     * @param key1    Имя поля.
+     * @param value1  Значение поля.
+     */
+    public void error(String message, Throwable error, String key1, long value1) {
+        emit(Level.SEVERE, message, error, 1, key1, value1, null, null, null, null);
+    }
+
+    /**
+     * Записывает ошибку с двумя полями.
+     *
+     * @param message Постоянное описание события.
+     * @param error   Исключение.
+     * @param key1    Имя первого поля.
+     * @param value1  Значение первого поля.
+     * @param key2    Имя второго поля.
+     * @param value2  Значение второго поля.
+     */
+    public void error(String message, Throwable error, String key1, long value1, String key2, Object value2) {
+        emit(Level.SEVERE, message, error, 2, key1, value1, key2, value2, null, null);
+    }
+
+    /**
+     * Записывает ошибку с тремя полями.
+     *
+     * @param message Постоянное описание события.
+     * @param error   Исключение.
+     * @param key1    Имя первого поля.
+     * @param value1  Значение первого поля.
+     * @param key2    Имя второго поля.
+     * @param value2  Значение второго поля.
+     * @param key3    Имя третьего поля.
+     * @param value3  Значение третьего поля.
+     */
+    public void error(String message, Throwable error, String key1, long value1, String key2, Object value2, String key3, Object value3) {
+        emit(Level.SEVERE, message, error, 3, key1, value1, key2, value2, key3, value3);
+    }
+
+    /**
+     * Возвращает имя категории.
+     *
+     * @return Имя категории.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Возвращает число информационных событий, не прошедших выборку.
+     *
+     * @return Число событий.
+     */
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * Возвращает число информационных событий, отброшенных ограничением частоты.
+     *
+     * @return Число событий.
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    Logger logger() {
+        return logger;
+    }
+
+    private void emit(Level level, String message, Throwable error, int fields,
+                      String key1, long value1, String key2, Object value2, String key3, Object value3) {
+        boolean important = level.intValue() >= Level.WARNING.intValue();
+        if (!logger.isLoggable(level) || (!important && !admit())) {
+            return;
+        }
+        long position = EventLog.claim();
+        Event event;
+        if (position >= 0) {
+            event = EventLog.slot(position);
+        } else if (important) {
+            event = new Event();
+        } else {
+            EventLog.dropped();
+            return;
+        }
+        boolean filled = false;
+        try {
+            event.level = level;
+            event.category = this;
+            event.message = message;
+            event.error = error;
+            event.timestampMillis = System.currentTimeMillis();
+            if (fields >= 1) {
+                event.field(key1, value1);
+            }
+            if (fields >= 2) {
+                event.field(key2, value2);
+            }
+            if (fields >= 3) {
+                event.field(key3, value3);
+            }
+            if (!important && sampleEvery > 1) {
+                event.field("sampleEvery", sampleEvery);
+            }
+            filled = true;
+        } finally {
+            if (position >= 0) {
+                // занятая ячейка публикуется всегда, иначе писатель остановится на ней навсегда;
+                // недозаполненное событие очищается, и писатель его пропускает
+                if (!filled) {
+                    event.clear();
+                }
+                EventLog.publish(position);
+            }
+        }
+        if (position < 0) {
+            EventLog.writeNow(event);
+        }
+    }
+
+    private boolean admit() {
+        if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            sampledOut.increment();
+            return false;
+        }
+        if (maxPerSecond > 0 && !tryAcquire()) {
+            rateLimited.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean tryAcquire() {
+        long second = (System.nanoTime() - EPOCH) / 1_000_000_000L;
+        while (true) {
+            long state = window.get();
+            long next;
+            if (state >>> COUNT_BITS != second) {
+                next = second << COUNT_BITS | 1;
+            } else if ((state & COUNT_MASK) >= maxPerSecond) {
+                return false;
+            } else {
+                next = state + 1;
+            }
+            if (window.compareAndSet(state, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.example.logging;
+
+import org.example.config.ConfigLoader;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Асинхронный журнал структурированных событий.
+ * <p>
+ * Потоки бота не форматируют сообщения и не пишут в консоль: событие с полями {@code ключ=значение}
+ * копируется в заранее созданную ячейку кольцевого буфера, а отдельный поток-писатель форматирует его
+ * и передает в {@link java.util.logging}, так что настройки обработчиков JUL продолжают действовать.
+ * <p>
+ * Буфер емкостью {@code log.ring.capacity} ячеек никогда не блокирует записывающий поток. Если он заполнен,
+ * информационное событие отбрасывается и учитывается в {@link #getDroppedCount()}, а предупреждение или
+ * ошибка записываются синхронно. Выборка и ограничение частоты настраиваются для каждой категории,
+ * см. {@link EventCategory}.
+ */
+public final class EventLog {
+    private static final int CAPACITY = Integer.highestOneBit(
+            Math.max(64, ConfigLoader.getIntProperty("log.ring.capacity", 8192)));
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final Event[] slots = new Event[CAPACITY];
+    // номер позиции, которую ячейка ждет: i - свободна для записи позиции i, i + 1 - позиция i опубликована
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong head = new AtomicLong();
+    private static final AtomicLong tail = new AtomicLong();
+    private static final ConcurrentHashMap<String, EventCategory> categories = new ConcurrentHashMap<>();
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder written = new LongAdder();
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            slots[i] = new Event();
+            sequences.set(i, i);
+        }
+        writer = new Thread(EventLog::drainLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private EventLog() {
+    }
+
+    /**
+     * Возвращает категорию событий с настройками выборки из свойств {@code log.<имя>.sampleEvery}
+     * и {@code log.<имя>.maxPerSecond}. Категорию следует хранить в статическом поле.
+     *
+     * @param name Имя категории, оно же имя логгера JUL.
+     * @return Категория.
+     */
+    public static EventCategory category(String name) {
+        return categories.computeIfAbsent(name, key -> new EventCategory(key,
+                ConfigLoader.getIntProperty("log." + key + ".sampleEvery", 1),
+                ConfigLoader.getIntProperty("log." + key + ".maxPerSecond", 0)));
+    }
+
+    /**
+     * Ждет, пока писатель запишет все уже опубликованные события.
+     *
+     * @param timeoutMs Максимальное время ожидания.
+     * @return {@code true}, если буфер опустел.
+     */
+    public static boolean flush(long timeoutMs) {
+        long target = head.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (tail.get() < target) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает число информационных событий, отброшенных из-за заполненного буфера.
+     *
+     * @return Число отброшенных событий.
+     */
+    public static long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Возвращает число записанных событий.
+     *
+     * @return Число событий.
+     */
+    public static long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Возвращает число событий в буфере.
+     *
+     * @return Число событий, ожидающих записи.
+     */
+    public static int getQueuedCount() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * Занимает ячейку буфера.
+     *
+     * @return Позиция ячейки или -1, если буфер заполнен.
+     */
+    static long claim() {
+        long position = head.get();
+        while (true) {
+            long difference = sequences.get((int) position & MASK) - position;
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    static Event slot(long position) {
+        return slots[(int) position & MASK];
+    }
+
+    static void publish(long position) {
+        sequences.set((int) position & MASK, position + 1);
+    }
+
+    static void dropped() {
+        dropped.increment();
+    }
+
+    /**
+     * Записывает событие сразу в вызывающем потоке. Используется для ошибок при заполненном буфере.
+     *
+     * @param event Событие.
+     */
+    static void writeNow(Event event) {
+        write(event, new StringBuilder(128));
+    }
+
+    private static void drainLoop() {
+        StringBuilder builder = new StringBuilder(256);
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & MASK;
+            if (sequences.get(index) != position + 1) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            Event event = slots[index];
+            try {
+                // ячейка без категории - событие, которое не удалось заполнить
+                if (event.category != null) {
+                    write(event, builder);
+                }
+            } catch (RuntimeException e) {
+                // ошибка обработчика JUL не должна останавливать писателя
+                Logger.getLogger(EventLog.class.getName()).log(Level.SEVERE, "Не удалось записать событие", e);
+            } finally {
+                event.clear();
+                sequences.set(index, position + CAPACITY);
+                tail.set(++position);
+            }
+        }
+    }
+
+    private static void write(Event event, StringBuilder builder) {
+        builder.setLength(0);
+        LogRecord record = new LogRecord(event.level, event.format(builder).toString());
+        record.setLoggerName(event.category.name());
+        record.setInstant(Instant.ofEpochMilli(event.timestampMillis));
+        record.setThrown(event.error);
+        event.category.logger().log(record);
+        written.increment();
+    }
+}
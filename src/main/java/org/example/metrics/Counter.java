@@ -0,0 +1,38 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Монотонно растущий счетчик. Запись не блокирует потоки.
+ */
+public final class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Увеличивает счетчик на единицу.
+     */
+    public void inc() {
+        value.increment();
+    }
+
+    /**
+     * Увеличивает счетчик.
+     *
+     * @param amount Неотрицательное приращение.
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Возвращает текущее значение.
+     *
+     * @return Значение счетчика.
+     */
+    public long get() {
+        return value.sum();
+    }
+}
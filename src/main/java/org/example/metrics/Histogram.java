@@ -0,0 +1,69 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей с фиксированными границами корзин.
+ * <p>
+ * Каждая корзина - отдельный {@link LongAdder}, поэтому запись не блокирует потоки и не создает объектов.
+ * Значения хранятся в наносекундах, а в Prometheus отдаются в секундах.
+ */
+public final class Histogram {
+    private final long[] boundsNanos;
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram(double[] boundsSeconds) {
+        this.boundsNanos = new long[boundsSeconds.length];
+        for (int i = 0; i < boundsSeconds.length; i++) {
+            boundsNanos[i] = (long) (boundsSeconds[i] * 1_000_000_000L);
+        }
+        this.buckets = new LongAdder[boundsSeconds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Записывает наблюдение.
+     *
+     * @param nanos Длительность в наносекундах.
+     */
+    public void observeNanos(long nanos) {
+        int i = 0;
+        while (i < boundsNanos.length && nanos > boundsNanos[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Записывает время, прошедшее с момента {@code startNanos}.
+     *
+     * @param startNanos Значение {@link System#nanoTime()} в начале операции.
+     */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    long[] snapshotBuckets() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    long boundNanos(int i) {
+        return boundsNanos[i];
+    }
+
+    int boundCount() {
+        return boundsNanos.length;
+    }
+}
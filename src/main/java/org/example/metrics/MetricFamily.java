@@ -0,0 +1,41 @@
+package org.example.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Семейство метрик одного типа с одной меткой.
+ * Дочерние метрики создаются при первом обращении к значению метки, далее поиск идет без блокировок.
+ *
+ * @param <T> Тип дочерней метрики.
+ */
+public final class MetricFamily<T> {
+    private final String labelName;
+    private final Supplier<T> factory;
+    private final ConcurrentHashMap<String, T> children = new ConcurrentHashMap<>();
+
+    MetricFamily(String labelName, Supplier<T> factory) {
+        this.labelName = labelName;
+        this.factory = factory;
+    }
+
+    /**
+     * Возвращает метрику для значения метки.
+     *
+     * @param value Значение метки.
+     * @return Дочерняя метрика.
+     */
+    public T labels(String value) {
+        T child = children.get(value);
+        return child != null ? child : children.computeIfAbsent(value, key -> factory.get());
+    }
+
+    String labelName() {
+        return labelName;
+    }
+
+    Map<String, T> children() {
+        return children;
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.metrics;
+
+/**
+ * Метрики бота. Все метрики регистрируются в общем реестре {@link #REGISTRY}.
+ */
+public final class Metrics {
+    /**
+     * Общий реестр метрик.
+     */
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    /**
+     * Длительность обработки команд и текстовых сообщений.
+     */
+    public static final MetricFamily<Histogram> COMMANDS = REGISTRY.histogram(
+            "bot_command_duration_seconds", "Время обработки команды или текстового сообщения.", "command");
+
+    /**
+     * Длительность обработки нажатий кнопок.
+     */
+    public static final MetricFamily<Histogram> CALLBACKS = REGISTRY.histogram(
+            "bot_callback_duration_seconds", "Время обработки нажатия кнопки.", "action");
+
+    /**
+     * Длительность запросов к базе данных.
+     */
+    public static final MetricFamily<Histogram> REPOSITORY = REGISTRY.histogram(
+            "bot_repository_duration_seconds", "Время выполнения метода UserRepository.", "method");
+
+    /**
+     * Длительность запросов к Telegram Bot API от отправки до ответа.
+     */
+    public static final MetricFamily<Histogram> TELEGRAM_REQUESTS = REGISTRY.histogram(
+            "bot_telegram_request_duration_seconds", "Время выполнения запроса к Telegram Bot API.", "method");
+
+    /**
+     * Ответы Telegram Bot API по коду.
+     */
+    public static final MetricFamily<Counter> TELEGRAM_RESPONSES = REGISTRY.counter(
+            "bot_telegram_responses_total", "Ответы Telegram Bot API по коду (io_error - сетевая ошибка).", "code");
+
+    /**
+     * Задержка доставки напоминания относительно запланированного времени.
+     */
+    public static final MetricFamily<Histogram> REMINDER_LAG = REGISTRY.histogram(
+            "bot_reminder_fire_lag_seconds", "Задержка отправки напоминания относительно activity_time.", "outcome",
+            new double[]{0.1, 0.5, 1, 2, 5, 10, 20, 30, 60, 120, 300});
+
+    /**
+     * Задержка передачи напоминания в отправку относительно момента, назначенного политикой распределения.
+     * Растет, когда отправка не успевает за темпом (исчерпан лимит {@code reminders.fanout.concurrency}).
+     */
+    public static final Histogram REMINDER_DISPATCH_LAG = REGISTRY.histogram(
+            "bot_reminder_dispatch_lag_seconds", "Задержка передачи напоминания в отправку относительно назначенного момента.");
+
+    /**
+     * Напоминания, пропущенные политикой опоздания.
+     */
+    public static final Counter REMINDERS_SKIPPED = REGISTRY.counter(
+            "bot_reminders_skipped_total", "Напоминания опоздавших минут, пропущенные по политике reminders.misfire.");
+
+    /**
+     * Webhook-запросы по коду ответа.
+     */
+    public static final MetricFamily<Counter> WEBHOOK_REQUESTS = REGISTRY.counter(
+            "bot_webhook_requests_total", "Webhook-запросы по коду ответа.", "code");
+
+    /**
+     * Повторные нажатия кнопок однократных действий, отброшенные без обработки.
+     */
+    public static final Counter DUPLICATE_CALLBACKS = REGISTRY.counter(
+            "bot_callbacks_duplicate_total", "Повторные нажатия кнопок однократных действий, отброшенные без обработки.");
+
+    private Metrics() {
+    }
+
+    /**
+     * Возвращает метку для кода ответа Telegram, не создавая строк для частых кодов.
+     *
+     * @param code Код ответа.
+     * @return Значение метки.
+     */
+    public static String responseCode(int code) {
+        return switch (code) {
+            case 200 -> "200";
+            case 400 -> "400";
+            case 401 -> "401";
+            case 403 -> "403";
+            case 413 -> "413";
+            case 429 -> "429";
+            case 503 -> "503";
+            default -> String.valueOf(code);
+        };
+    }
+}
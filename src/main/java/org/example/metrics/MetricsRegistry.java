@@ -0,0 +1,186 @@
+package org.example.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Реестр метрик, формирующий ответ в текстовом формате Prometheus (версия 0.0.4).
+ * Регистрация метрик выполняется при старте, запись в них - без блокировок.
+ */
+public final class MetricsRegistry {
+    private static final Logger logger = Logger.getLogger(MetricsRegistry.class.getName());
+
+    /**
+     * Границы корзин по умолчанию для длительностей, в секундах.
+     */
+    public static final double[] DEFAULT_BUCKETS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+    /**
+     * Регистрирует счетчик.
+     *
+     * @param name Имя метрики.
+     * @param help Описание.
+     * @return Счетчик.
+     */
+    public Counter counter(String name, String help) {
+        Counter counter = new Counter();
+        collectors.add(new Collector(name, help, "counter",
+                out -> sample(out, name, null, null, counter.get())));
+        return counter;
+    }
+
+    /**
+     * Регистрирует семейство счетчиков с меткой.
+     *
+     * @param name      Имя метрики.
+     * @param help      Описание.
+     * @param labelName Имя метки.
+     * @return Семейство счетчиков.
+     */
+    public MetricFamily<Counter> counter(String name, String help, String labelName) {
+        MetricFamily<Counter> family = new MetricFamily<>(labelName, Counter::new);
+        collectors.add(new Collector(name, help, "counter", out -> {
+            for (Map.Entry<String, Counter> child : new TreeMap<>(family.children()).entrySet()) {
+                sample(out, name, labelName, child.getKey(), child.getValue().get());
+            }
+        }));
+        return family;
+    }
+
+    /**
+     * Регистрирует гистограмму длительностей.
+     *
+     * @param name Имя метрики.
+     * @param help Описание.
+     * @return Гистограмма.
+     */
+    public Histogram histogram(String name, String help) {
+        Histogram histogram = new Histogram(DEFAULT_BUCKETS);
+        collectors.add(new Collector(name, help, "histogram",
+                out -> writeHistogram(out, name, null, null, histogram)));
+        return histogram;
+    }
+
+    /**
+     * Регистрирует семейство гистограмм длительностей с меткой.
+     *
+     * @param name      Имя метрики.
+     * @param help      Описание.
+     * @param labelName Имя метки.
+     * @return Семейство гистограмм.
+     */
+    public MetricFamily<Histogram> histogram(String name, String help, String labelName) {
+        return histogram(name, help, labelName, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Регистрирует семейство гистограмм с заданными границами корзин.
+     *
+     * @param name          Имя метрики.
+     * @param help          Описание.
+     * @param labelName     Имя метки.
+     * @param boundsSeconds Границы корзин в секундах.
+     * @return Семейство гистограмм.
+     */
+    public MetricFamily<Histogram> histogram(String name, String help, String labelName, double[] boundsSeconds) {
+        MetricFamily<Histogram> family = new MetricFamily<>(labelName, () -> new Histogram(boundsSeconds));
+        collectors.add(new Collector(name, help, "histogram", out -> {
+            for (Map.Entry<String, Histogram> child : new TreeMap<>(family.children()).entrySet()) {
+                writeHistogram(out, name, labelName, child.getKey(), child.getValue());
+            }
+        }));
+        return family;
+    }
+
+    /**
+     * Регистрирует метрику, значение которой вычисляется при каждом запросе.
+     *
+     * @param name  Имя метрики.
+     * @param help  Описание.
+     * @param value Источник значения.
+     */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        collectors.add(new Collector(name, help, "gauge", out -> sample(out, name, null, null, value.getAsDouble())));
+    }
+
+    /**
+     * Регистрирует счетчик, значение которого хранится в другом компоненте.
+     *
+     * @param name  Имя метрики.
+     * @param help  Описание.
+     * @param value Источник значения.
+     */
+    public void counterFunction(String name, String help, DoubleSupplier value) {
+        collectors.add(new Collector(name, help, "counter", out -> sample(out, name, null, null, value.getAsDouble())));
+    }
+
+    /**
+     * Формирует текущие значения всех метрик.
+     *
+     * @return Текст в формате Prometheus.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Collector collector : collectors) {
+            try {
+                StringBuilder block = new StringBuilder(256);
+                collector.writer.write(block);
+                out.append("# HELP ").append(collector.name).append(' ').append(collector.help).append('\n');
+                out.append("# TYPE ").append(collector.name).append(' ').append(collector.type).append('\n');
+                out.append(block);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, e, () -> "Не удалось получить значение метрики " + collector.name);
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labelName, String labelValue, Histogram histogram) {
+        long[] counts = histogram.snapshotBuckets();
+        long cumulative = 0;
+        String labels = labelName == null ? "" : labelName + "=\"" + escape(labelValue) + "\",";
+        for (int i = 0; i < histogram.boundCount(); i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket{").append(labels).append("le=\"")
+                    .append(histogram.boundNanos(i) / 1e9).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[counts.length - 1];
+        out.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        sample(out, name + "_sum", labelName, labelValue, histogram.sumNanos() / 1e9);
+        sample(out, name + "_count", labelName, labelValue, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labelName, String labelValue, double value) {
+        out.append(name);
+        if (labelName != null) {
+            out.append('{').append(labelName).append("=\"").append(escape(labelValue)).append("\"}");
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @FunctionalInterface
+    private interface SampleWriter {
+        void write(StringBuilder out);
+    }
+
+    private record Collector(String name, String help, String type, SampleWriter writer) {
+    }
+}
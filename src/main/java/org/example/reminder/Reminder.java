@@ -4,7 +4,12 @@ import java.sql.Time;
 
 /**
  * Модель класса, представляющая напоминание.
+ *
+ * @param userId       Телеграм ID пользователя.
+ * @param category     Категория напоминания.
+ * @param activityTime Время напоминания.
+ * @param streakNum    Текущий streak по категории.
  */
-public record Reminder(long userId, String category, Time activityTime) {
+public record Reminder(long userId, String category, Time activityTime, int streakNum) {
 
 }
@@ -0,0 +1,33 @@
+package org.example.reminder;
+
+import java.sql.Time;
+
+/**
+ * Изменение, влияющее на расписание напоминаний, прочитанное из базы при теплом перезапуске.
+ *
+ * @param kind         Вид изменения.
+ * @param userId       Телеграм ID пользователя.
+ * @param userName     Имя пользователя; для {@link Kind#REMOVED} и строк снимка расписания - {@code null}.
+ * @param category     Категория напоминания, для {@link Kind#RENAMED} - {@code null}.
+ * @param activityTime Время напоминания, только для {@link Kind#SCHEDULED}.
+ */
+public record ReminderChange(Kind kind, long userId, String userName, String category, Time activityTime) {
+
+    /**
+     * Вид изменения.
+     */
+    public enum Kind {
+        /**
+         * Напоминание удалено.
+         */
+        REMOVED,
+        /**
+         * Напоминание добавлено или перенесено.
+         */
+        SCHEDULED,
+        /**
+         * Изменилось имя пользователя.
+         */
+        RENAMED
+    }
+}
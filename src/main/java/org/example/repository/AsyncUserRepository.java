@@ -0,0 +1,180 @@
+package org.example.repository;
+
+import org.example.reminder.Reminder;
+import org.example.stats.UserStats;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Неблокирующий фасад над {@link UserRepository}.
+ * <p>
+ * Каждый вызов выполняется в отдельном виртуальном потоке и возвращает {@link CompletableFuture},
+ * поэтому обработчик может одновременно ждать базу и Telegram. Одновременно к базе обращаются не больше
+ * {@code concurrency} потоков (обычно размер пула соединений), а число принятых и еще не завершенных вызовов
+ * ограничено {@code maxPending}: сверх него вызов сразу завершается {@link RejectedExecutionException}.
+ * <p>
+ * Вызов, не завершившийся за {@code timeoutMs}, завершается {@link java.util.concurrent.TimeoutException}.
+ * Отмененный или просроченный вызов, еще не дождавшийся своей очереди, к базе не обращается,
+ * а выполняющийся прерывается.
+ * <p>
+ * Фасад только читает: запись обработчика обновлений должна завершиться в полосе чата, внутри единицы работы
+ * {@link UserRepository#inUnitOfWork(Runnable)}, до обработки следующего обновления. Команды только для чтения
+ * ({@code /streak}, {@code /stats}) не держат полосу, пока идет запрос, а их ответ может прийти после ответов
+ * на следующие обновления чата.
+ */
+public class AsyncUserRepository implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(AsyncUserRepository.class.getName());
+
+    private final UserRepository repository;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("db-async-", 0).factory());
+    private final Semaphore permits;
+    private final int maxPending;
+    private final long timeoutMs;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+
+    /**
+     * Создает фасад.
+     *
+     * @param repository  Синхронный репозиторий.
+     * @param concurrency Максимальное число одновременных обращений к базе.
+     * @param maxPending  Максимальное число принятых и не завершенных вызовов.
+     * @param timeoutMs   Время, через которое вызов завершается по таймауту; 0 - без таймаута.
+     */
+    public AsyncUserRepository(UserRepository repository, int concurrency, int maxPending, long timeoutMs) {
+        this.repository = repository;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.maxPending = maxPending;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Асинхронно возвращает все напоминания пользователя.
+     *
+     * @param tgId Телеграм ID пользователя.
+     * @return Future со списком напоминаний.
+     */
+    public CompletableFuture<List<Reminder>> getAllRemindersForUser(long tgId) {
+        return submit("getAllRemindersForUser", () -> repository.getAllRemindersForUser(tgId));
+    }
+
+    /**
+     * Асинхронно возвращает накопленную статистику пользователя.
+     *
+     * @param tgId Телеграм ID пользователя.
+     * @return Future со статистикой по категориям.
+     */
+    public CompletableFuture<List<UserStats>> getUserStats(long tgId) {
+        return submit("getUserStats", () -> repository.getUserStats(tgId));
+    }
+
+    /**
+     * Возвращает число принятых и еще не завершенных вызовов.
+     *
+     * @return Число вызовов.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Возвращает число вызовов, отклоненных из-за переполнения.
+     *
+     * @return Число отклоненных вызовов.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Возвращает число вызовов, отмененных или завершенных по таймауту.
+     *
+     * @return Число брошенных вызовов.
+     */
+    public long getAbandonedCount() {
+        return abandoned.sum();
+    }
+
+    /**
+     * Прекращает прием вызовов и прерывает выполняющиеся.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> submit(String operation, Supplier<T> work) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Слишком много запросов к базе в очереди: " + operation));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        try {
+            executor.execute(() -> run(future, worker, work));
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+        if (timeoutMs > 0) {
+            future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        future.whenComplete((result, error) -> {
+            pending.decrementAndGet();
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                abandoned.increment();
+                // выполняющийся запрос прерывается, ожидающий свою очередь увидит завершенный future и не начнется
+                Thread thread = worker.getAndSet(null);
+                if (thread != null) {
+                    thread.interrupt();
+                }
+                logger.log(Level.WARNING, "Запрос к базе {0} брошен: {1}", new Object[]{operation, error.toString()});
+            }
+        });
+        return future;
+    }
+
+    private <T> void run(CompletableFuture<T> future, AtomicReference<Thread> worker, Supplier<T> work) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            return;
+        }
+        try {
+            if (future.isDone()) {
+                return;
+            }
+            worker.set(Thread.currentThread());
+            if (future.isDone()) {
+                return;
+            }
+            future.complete(work.get());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            worker.set(null);
+            // флаг прерывания не должен пережить задачу, даже если прерывание пришло после завершения работы
+            Thread.interrupted();
+            permits.release();
+        }
+    }
+}
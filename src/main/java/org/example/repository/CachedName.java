@@ -0,0 +1,21 @@
+package org.example.repository;
+
+import java.util.Optional;
+
+/**
+ * Запись кеша имен пользователей: отсутствие имени у пользователя тоже кешируется.
+ *
+ * @param userName Имя пользователя или {@code null}, если известно, что имени нет.
+ */
+public record CachedName(String userName) {
+    static final CachedName NO_NAME = new CachedName(null);
+
+    /**
+     * Возвращает имя в виде Optional.
+     *
+     * @return Имя пользователя или пустой Optional, если имени нет.
+     */
+    public Optional<String> toOptional() {
+        return Optional.ofNullable(userName);
+    }
+}
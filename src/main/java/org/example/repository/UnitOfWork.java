@@ -0,0 +1,147 @@
+package org.example.repository;
+
+import org.example.database.DatabaseConnection;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Соединение, привязанное к потоку на время обработки одного обновления.
+ * <p>
+ * Соединение берется из пула лениво, при первом запросе репозитория, и возвращается в пул в {@link #close()}.
+ * Пока единица работы открыта, все методы {@link UserRepository} в этом потоке используют его,
+ * а не берут из пула новое на каждый запрос.
+ */
+final class UnitOfWork implements AutoCloseable {
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private Connection connection;
+    private Connection handle;
+    private int transactionDepth;
+    private boolean failed;
+
+    private UnitOfWork() {
+    }
+
+    /**
+     * Открывает единицу работы в текущем потоке.
+     *
+     * @return Новая единица работы, которую должен закрыть вызывающий, или {@code null},
+     *         если в потоке уже открыта внешняя единица работы.
+     */
+    static UnitOfWork begin() {
+        UnitOfWork current = CURRENT.get();
+        if (current != null) {
+            return null;
+        }
+        current = new UnitOfWork();
+        CURRENT.set(current);
+        return current;
+    }
+
+    /**
+     * Возвращает текущую единицу работы потока.
+     *
+     * @return Единица работы или {@code null}, если она не открыта.
+     */
+    static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Возвращает соединение для одного запроса репозитория. Внутри единицы работы это общее соединение,
+     * закрытие которого ничего не делает, иначе - новое соединение из пула.
+     *
+     * @return Соединение с базой данных.
+     * @throws SQLException Если не удалось получить соединение из пула.
+     */
+    static Connection connection() throws SQLException {
+        UnitOfWork current = CURRENT.get();
+        return current == null ? DatabaseConnection.getConnection() : current.handle();
+    }
+
+    /**
+     * Отмечает, что запрос в открытой транзакции текущего потока завершился ошибкой, и транзакция будет откатана.
+     * Методы репозитория перехватывают {@link SQLException} и не пробрасывают его, поэтому сообщают о сбое явно.
+     */
+    static void markFailed() {
+        UnitOfWork current = CURRENT.get();
+        if (current != null && current.transactionDepth > 0) {
+            current.failed = true;
+        }
+    }
+
+    /**
+     * Начинает транзакцию. Вложенные вызовы присоединяются к внешней транзакции.
+     *
+     * @throws SQLException Если не удалось отключить автокоммит.
+     */
+    void beginTransaction() throws SQLException {
+        if (transactionDepth++ == 0) {
+            handle().setAutoCommit(false);
+        }
+    }
+
+    /**
+     * Завершает транзакцию: фиксирует ее, если ни один запрос внутри не завершился ошибкой, иначе откатывает.
+     * Вложенные вызовы только уменьшают глубину.
+     *
+     * @param success Работа внутри транзакции завершилась без исключения.
+     * @return {@code true}, если изменения зафиксированы.
+     * @throws SQLException Если не удалось зафиксировать или откатить транзакцию.
+     */
+    boolean endTransaction(boolean success) throws SQLException {
+        if (--transactionDepth > 0) {
+            return success && !failed;
+        }
+        try {
+            if (success && !failed) {
+                connection.commit();
+                return true;
+            }
+            connection.rollback();
+            return false;
+        } finally {
+            failed = false;
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Возвращает соединение в пул и отвязывает единицу работы от потока.
+     *
+     * @throws SQLException Если не удалось вернуть соединение.
+     */
+    @Override
+    public void close() throws SQLException {
+        CURRENT.remove();
+        if (connection != null) {
+            connection.close();
+            connection = null;
+            handle = null;
+        }
+    }
+
+    private Connection handle() throws SQLException {
+        if (handle == null) {
+            connection = DatabaseConnection.getConnection();
+            Connection target = connection;
+            handle = (Connection) Proxy.newProxyInstance(
+                    UnitOfWork.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName())) {
+                            return null;
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+        return handle;
+    }
+}
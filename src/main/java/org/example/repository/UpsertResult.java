@@ -0,0 +1,27 @@
+package org.example.repository;
+
+/**
+ * Результат {@link UserRepository#upsertActivity(long, String, java.sql.Time)}.
+ */
+public enum UpsertResult {
+    /**
+     * Действие добавлено.
+     */
+    CREATED,
+    /**
+     * Время существующего действия изменено.
+     */
+    UPDATED,
+    /**
+     * Действие уже было запланировано на это время.
+     */
+    UNCHANGED,
+    /**
+     * Пользователь не найден.
+     */
+    USER_NOT_FOUND,
+    /**
+     * Ошибка базы данных.
+     */
+    FAILED
+}
@@ -0,0 +1,101 @@
+package org.example.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ограниченный по размеру кеш имен пользователей по Телеграм ID.
+ * <p>
+ * Кеш хранит и отрицательные результаты (пользователь не найден или имя не задано).
+ * При превышении {@code maxSize} вытесняются самые давно добавленные записи. Порядок добавления
+ * хранит сама {@link LinkedHashMap}, поэтому удаление записи не оставляет следов в очереди вытеснения.
+ * Чтение не меняет порядок и выполняется под общей блокировкой чтения.
+ */
+class UserNameCache {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LinkedHashMap<Long, CachedName> names;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Создает кеш.
+     *
+     * @param maxSize Максимальное число записей.
+     */
+    UserNameCache(int maxSize) {
+        this.names = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedName> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Ищет имя пользователя в кеше.
+     *
+     * @param tgId Телеграм ID пользователя.
+     * @return Запись кеша или пустой Optional, если записи нет.
+     */
+    Optional<CachedName> get(long tgId) {
+        CachedName cached;
+        lock.readLock().lock();
+        try {
+            cached = names.get(tgId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return Optional.ofNullable(cached);
+    }
+
+    /**
+     * Сохраняет имя пользователя.
+     *
+     * @param tgId     Телеграм ID пользователя.
+     * @param userName Имя пользователя или {@code null}, если имени нет.
+     */
+    void put(long tgId, String userName) {
+        CachedName entry = userName != null ? new CachedName(userName) : CachedName.NO_NAME;
+        lock.writeLock().lock();
+        try {
+            names.put(tgId, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long tgId) {
+        lock.writeLock().lock();
+        try {
+            names.remove(tgId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
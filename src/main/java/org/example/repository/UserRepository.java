@@ -1,22 +1,42 @@
 package org.example.repository;
 
+import org.example.config.ConfigLoader;
 import org.example.database.DatabaseConnection;
+import org.example.logging.EventCategory;
+import org.example.logging.EventLog;
+import org.example.metrics.Metrics;
 import org.example.reminder.Reminder;
+import org.example.reminder.ReminderChange;
+import org.example.stats.UserStats;
 
 import java.io.Serializable;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Класс репозитория для работы с пользователями и их действиями в базе данных.
+ * <p>
+ * Схемой владеет {@link org.example.database.MigrationRunner}. Запросы по одному пользователю находят его
+ * внутренний {@code id} по уникальному ключу {@code tg_id}, а действие - по уникальному ключу
+ * {@code (user_id, category)}, поэтому остаются поиском по индексу при любом размере таблиц.
+ * <p>
+ * Каждый метод по умолчанию берет соединение из пула на один запрос. Внутри {@link #inUnitOfWork(Runnable)}
+ * и {@link #inTransaction(Supplier)} запросы потока выполняются на одном общем соединении.
+ * <p>
+ * Запросы по одному пользователю пишут события в категорию {@code repository} журнала {@link EventLog},
+ * поэтому частые успешные операции можно прореживать свойствами {@code log.repository.*}.
  */
 public class UserRepository implements Serializable {
-    private static final Logger logger = Logger.getLogger(UserRepository.class.getName());
-
+    private static final EventCategory events = EventLog.category("repository");
+    private final transient UserNameCache userNameCache = new UserNameCache(
+            ConfigLoader.getIntProperty("users.nameCache.maxSize", 100_000));
 
     /**
      * Конструктор по умолчанию.
@@ -35,14 +55,21 @@ public class UserRepository implements Serializable {
      */
     public void addUser(long tgId, String userName) {
         String query = "INSERT INTO Users (tg_id, user_name) VALUES (?, ?) ON CONFLICT (tg_id) DO NOTHING";
-        try (Connection connection = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, (int) tgId);
+            statement.setLong(1, tgId);
             statement.setString(2, userName);
             int rowsAffected = statement.executeUpdate();
-            logUserAdditionResult((int) tgId, userName, rowsAffected);
+            if (rowsAffected > 0) {
+                userNameCache.put(tgId, userName);
+            }
+            logUserAdditionResult(tgId, userName, rowsAffected);
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при добавлении пользователя: tgId=" + tgId + ", userName=" + userName);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при добавлении пользователя", e, "tgId", tgId, "userName", userName);
+        } finally {
+            Metrics.REPOSITORY.labels("addUser").observeSince(start);
         }
     }
 
@@ -53,11 +80,11 @@ public class UserRepository implements Serializable {
      * @param userName Имя пользователя.
      * @param rowsAffected Количество затронутых строк.
      */
-    private void logUserAdditionResult(int tgId, String userName, int rowsAffected) {
+    private void logUserAdditionResult(long tgId, String userName, int rowsAffected) {
         if (rowsAffected > 0) {
-            logger.log(Level.INFO, "Пользователь успешно добавлен: tgId={0}, userName={1}", new Object[]{tgId, userName});
+            events.info("Пользователь успешно добавлен", "tgId", tgId, "userName", userName);
         } else {
-            logger.log(Level.INFO, "Пользователь уже существует: tgId={0}", tgId);
+            events.info("Пользователь уже существует", "tgId", tgId);
         }
     }
 
@@ -69,42 +96,60 @@ public class UserRepository implements Serializable {
      * @param activityTime Время действия.
      */
     public void addActivity(long tgId, String category, Time activityTime) {
-        String query = "INSERT INTO activities (user_id, category, activity_time) VALUES ((SELECT id FROM Users WHERE tg_id = ?), ?, ?)";
-        try (Connection connection = DatabaseConnection.getConnection();
+        String query = "INSERT INTO activities (user_id, category, activity_time) SELECT id, ?, ? FROM Users WHERE tg_id = ?";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setLong(1, tgId);
-            statement.setString(2, category);
-            statement.setTime(3, activityTime);
-            statement.executeUpdate();
-            logger.log(Level.INFO, "Действие успешно добавлено: tgId={0}, category={1}, activityTime={2}", new Object[]{tgId, category, activityTime});
+            statement.setString(1, category);
+            statement.setTime(2, activityTime);
+            statement.setLong(3, tgId);
+            if (statement.executeUpdate() == 0) {
+                events.warning("Действие не добавлено, пользователь не найден", "tgId", tgId);
+                return;
+            }
+            events.info("Действие успешно добавлено", "tgId", tgId, "category", category, "activityTime", activityTime);
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при добавлении действия: tgId=" + tgId + ", category=" + category + ", activityTime=" + activityTime);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при добавлении действия", e, "tgId", tgId, "category", category, "activityTime", activityTime);
+        } finally {
+            Metrics.REPOSITORY.labels("addActivity").observeSince(start);
         }
     }
 
     /**
      * Возвращает имя пользователя по Телеграм ID.
+     * Сначала ищет в кеше имен, к базе данных обращается только при промахе.
      *
      * @param tgId Телеграм ID пользователя.
      * @return Optional с именем пользователя, если найден, иначе пустой Optional.
      */
     public Optional<String> getUserNameByTgId(long tgId) {
+        Optional<CachedName> cached = userNameCache.get(tgId);
+        if (cached.isPresent()) {
+            return cached.get().toOptional();
+        }
         String query = "SELECT user_name FROM Users WHERE tg_id = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setLong(1, tgId);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
                 String username = resultSet.getString("user_name");
-                logger.log(Level.INFO, "Пользователь найден: tgId={0}, username={1}", new Object[]{tgId, username});
-                return Optional.of(username);
+                userNameCache.put(tgId, username);
+                events.info("Пользователь найден", "tgId", tgId, "username", username);
+                return Optional.ofNullable(username);
             } else {
-                logger.log(Level.INFO, "Пользователь не найден: tgId={0}", tgId);
+                userNameCache.put(tgId, null);
+                events.info("Пользователь не найден", "tgId", tgId);
                 return Optional.empty();
             }
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при получении пользователя: tgId=" + tgId);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при получении пользователя", e, "tgId", tgId);
             return Optional.empty();
+        } finally {
+            Metrics.REPOSITORY.labels("getUserNameByTgId").observeSince(start);
         }
     }
 
@@ -116,8 +161,9 @@ public class UserRepository implements Serializable {
      * @return Optional с временем действия, если найдено, иначе пустой Optional.
      */
     public Optional<Time> getActivityTime(long tgId, String category) {
-        String query = "SELECT activity_time FROM activities a JOIN Users u ON a.user_id = u.id WHERE u.tg_id = ? AND a.category = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+        String query = "SELECT a.activity_time FROM activities a JOIN Users u ON u.id = a.user_id WHERE u.tg_id = ? AND a.category = ?";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setLong(1, tgId);
             statement.setString(2, category);
@@ -129,8 +175,11 @@ public class UserRepository implements Serializable {
                 return Optional.empty();
             }
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при получении времени действия для пользователя: tgId=" + tgId + ", category=" + category);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при получении времени действия", e, "tgId", tgId, "category", category);
             return Optional.empty();
+        } finally {
+            Metrics.REPOSITORY.labels("getActivityTime").observeSince(start);
         }
     }
 
@@ -142,41 +191,359 @@ public class UserRepository implements Serializable {
      * @param newTime Новое время действия.
      */
     public void updateActivityTime(long tgId, String category, Time newTime) {
-        String query = "UPDATE activities SET activity_time = ? WHERE user_id = (SELECT id FROM Users WHERE tg_id = ?) AND category = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+        String query = "UPDATE activities a SET activity_time = ? FROM Users u WHERE a.user_id = u.id AND u.tg_id = ? AND a.category = ?";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setTime(1, newTime);
             statement.setLong(2, tgId);
             statement.setString(3, category);
             statement.executeUpdate();
-            logger.log(Level.INFO, "Время действия успешно обновлено: tgId={0}, category={1}, newTime={2}", new Object[]{tgId, category, newTime});
+            events.info("Время действия успешно обновлено", "tgId", tgId, "category", category, "newTime", newTime);
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при обновлении времени действия: tgId=" + tgId + ", category=" + category + ", newTime=" + newTime);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при обновлении времени действия", e, "tgId", tgId, "category", category, "newTime", newTime);
+        } finally {
+            Metrics.REPOSITORY.labels("updateActivityTime").observeSince(start);
         }
     }
 
     /**
-     * Возвращает список всех напоминаний из базы данных.
+     * Добавляет действие или переносит его на новое время одним запросом.
+     * Строка выбирается по уникальному ключу {@code (user_id, category)}, поэтому два одновременных ввода
+     * времени не создают дубликатов.
      *
-     * @return Список напоминаний.
+     * @param tgId Телеграм ID пользователя.
+     * @param category Категория действия.
+     * @param activityTime Время действия.
+     * @return Что произошло со строкой действия.
      */
-    public List<Reminder> getAllReminders() {
-        String query = "SELECT u.tg_id, a.category, a.activity_time, a.streak_num FROM activities a JOIN Users u ON a.user_id = u.id";
-        List<Reminder> reminders = new ArrayList<>();
-        try (Connection connection = DatabaseConnection.getConnection();
+    public UpsertResult upsertActivity(long tgId, String category, Time activityTime) {
+        String query = "WITH u AS (SELECT id FROM Users WHERE tg_id = ?), "
+                + "up AS (INSERT INTO activities (user_id, category, activity_time) SELECT id, ?, ? FROM u "
+                + "ON CONFLICT (user_id, category) DO UPDATE SET activity_time = EXCLUDED.activity_time "
+                + "WHERE activities.activity_time IS DISTINCT FROM EXCLUDED.activity_time "
+                + "RETURNING (xmax = 0) AS inserted) "
+                + "SELECT (SELECT id FROM u) AS user_id, (SELECT inserted FROM up) AS inserted";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, tgId);
+            statement.setString(2, category);
+            statement.setTime(3, activityTime);
             ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                long telegramId = resultSet.getInt("tg_id");
-                String category = resultSet.getString("category");
-                Time activityTime = resultSet.getTime("activity_time");
-                reminders.add(new Reminder(telegramId, category, activityTime));
+            resultSet.next();
+            UpsertResult result;
+            if (resultSet.getObject("user_id") == null) {
+                result = UpsertResult.USER_NOT_FOUND;
+            } else {
+                // xmax = 0 бывает только у вставленной строки, а неизмененная строка не возвращается вовсе
+                boolean inserted = resultSet.getBoolean("inserted");
+                result = resultSet.wasNull() ? UpsertResult.UNCHANGED : inserted ? UpsertResult.CREATED : UpsertResult.UPDATED;
             }
-            logger.log(Level.INFO, "Получено {0} напоминаний из базы данных", reminders.size());
+            events.info("Действие сохранено", "tgId", tgId, "category", category, "result", result);
+            return result;
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Ошибка при получении напоминаний", e);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при сохранении действия", e, "tgId", tgId, "category", category, "activityTime", activityTime);
+            return UpsertResult.FAILED;
+        } finally {
+            Metrics.REPOSITORY.labels("upsertActivity").observeSince(start);
+        }
+    }
+
+    /**
+     * Отправляет уведомление PostgreSQL об изменении пользователя на соединении текущей единицы работы,
+     * не занимая второе соединение пула. Внутри транзакции PostgreSQL доставляет уведомление слушателям
+     * только после ее фиксации, поэтому слушатели уже видят изменения.
+     *
+     * @param channel Канал уведомления.
+     * @param tgId    Телеграм ID пользователя, передается как содержимое уведомления.
+     */
+    public void notifyUserChange(String channel, long tgId) {
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, channel);
+            statement.setString(2, Long.toString(tgId));
+            statement.execute();
+        } catch (SQLException e) {
+            UnitOfWork.markFailed();
+            events.error("Ошибка уведомления об изменении пользователя", e, "tgId", tgId, "channel", channel);
+        } finally {
+            Metrics.REPOSITORY.labels("notifyUserChange").observeSince(start);
+        }
+    }
+
+    /**
+     * Выполняет работу на одном соединении из пула, привязанном к текущему потоку.
+     * Все методы репозитория, вызванные внутри, используют это соединение в режиме автокоммита.
+     * Соединение берется при первом запросе, поэтому работа без обращений к базе его не занимает.
+     * Вложенные вызовы присоединяются к внешнему.
+     *
+     * @param work Работа, например обработка одного обновления.
+     */
+    public void inUnitOfWork(Runnable work) {
+        UnitOfWork unit = UnitOfWork.begin();
+        try {
+            work.run();
+        } finally {
+            if (unit != null) {
+                closeUnit(unit);
+            }
+        }
+    }
+
+    /**
+     * Выполняет работу в одной транзакции на соединении, привязанном к текущему потоку.
+     * Если один из запросов репозитория внутри завершился ошибкой или работа выбросила исключение,
+     * транзакция откатывается. Вложенные вызовы присоединяются к внешней транзакции.
+     *
+     * @param work Работа, вызывающая методы репозитория.
+     * @param <T>  Тип результата.
+     * @return Optional с результатом, если транзакция зафиксирована, иначе пустой Optional.
+     */
+    public <T> Optional<T> inTransaction(Supplier<T> work) {
+        UnitOfWork opened = UnitOfWork.begin();
+        UnitOfWork unit = opened != null ? opened : UnitOfWork.current();
+        try {
+            unit.beginTransaction();
+            T result = null;
+            boolean success = false;
+            boolean committed;
+            try {
+                result = work.get();
+                success = true;
+            } finally {
+                committed = unit.endTransaction(success);
+            }
+            if (!committed) {
+                events.warning("Транзакция откатана из-за ошибки запроса");
+            }
+            return committed ? Optional.ofNullable(result) : Optional.empty();
+        } catch (SQLException e) {
+            events.error("Ошибка при завершении транзакции", e);
+            return Optional.empty();
+        } finally {
+            if (opened != null) {
+                closeUnit(opened);
+            }
+        }
+    }
+
+    private static void closeUnit(UnitOfWork unit) {
+        try {
+            unit.close();
+        } catch (SQLException e) {
+            events.error("Не удалось вернуть соединение в пул", e);
+        }
+    }
+
+    /**
+     * Последовательно передает все напоминания из базы данных получателю, не загружая их в память целиком.
+     * Строки читаются через серверный курсор порциями по {@code fetchSize}.
+     * Попутно заполняет кеш имен пользователей, чтобы отправка напоминаний не обращалась к базе.
+     *
+     * @param fetchSize Число строк, получаемых с сервера за одно обращение.
+     * @param consumer  Получатель напоминаний.
+     * @return Число прочитанных напоминаний или -1, если чтение прервано ошибкой.
+     */
+    public long streamAllReminders(int fetchSize, Consumer<Reminder> consumer) {
+        return streamReminders(0, null, fetchSize, consumer);
+    }
+
+    /**
+     * Последовательно передает получателю напоминания пользователей из указанных шардов.
+     * Номер шарда вычисляется так же, как {@link org.example.shard.ShardManager#shardOf(long, int)}.
+     *
+     * @param shardCount Общее число шардов.
+     * @param shards     Номера шардов.
+     * @param fetchSize  Число строк, получаемых с сервера за одно обращение.
+     * @param consumer   Получатель напоминаний.
+     * @return Число прочитанных напоминаний или -1, если чтение прервано ошибкой.
+     */
+    public long streamRemindersForShards(int shardCount, int[] shards, int fetchSize, Consumer<Reminder> consumer) {
+        return streamReminders(shardCount, shards, fetchSize, consumer);
+    }
+
+    private long streamReminders(int shardCount, int[] shards, int fetchSize, Consumer<Reminder> consumer) {
+        String query = "SELECT u.tg_id, u.user_name, a.category, a.activity_time, a.streak_num FROM activities a JOIN Users u ON a.user_id = u.id";
+        if (shards != null) {
+            query += " WHERE mod(mod(u.tg_id, ?) + ?, ?) = ANY (?)";
+        }
+        long count = 0;
+        long start = System.nanoTime();
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            // PostgreSQL использует курсор только вне режима автокоммита
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                if (shards != null) {
+                    statement.setLong(1, shardCount);
+                    statement.setLong(2, shardCount);
+                    statement.setLong(3, shardCount);
+                    statement.setArray(4, connection.createArrayOf("integer", Arrays.stream(shards).boxed().toArray(Integer[]::new)));
+                }
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    long telegramId = resultSet.getLong("tg_id");
+                    String category = resultSet.getString("category");
+                    Time activityTime = resultSet.getTime("activity_time");
+                    userNameCache.put(telegramId, resultSet.getString("user_name"));
+                    consumer.accept(new Reminder(telegramId, category, activityTime, resultSet.getInt("streak_num")));
+                    count++;
+                }
+            } finally {
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+            events.info("Получены напоминания из базы данных", "count", count);
+        } catch (SQLException e) {
+            events.error("Ошибка при получении напоминаний", e, "read", count);
+            // часть напоминаний не прочитана: вызывающий не должен считать загрузку завершенной
+            return -1;
+        } finally {
+            Metrics.REPOSITORY.labels("streamReminders").observeSince(start);
+        }
+        return count;
+    }
+
+    /**
+     * Передает получателю расписание из одного согласованного снимка базы и возвращает горизонт этого снимка:
+     * строки и горизонт читаются в одной транзакции REPEATABLE READ, поэтому каждое изменение, не попавшее
+     * в переданные строки, имеет {@code change_xid} не ниже горизонта. Сначала передаются напоминания как изменения
+     * {@link ReminderChange.Kind#SCHEDULED} без имени, затем по одному разу имена пользователей с напоминаниями
+     * как изменения {@link ReminderChange.Kind#RENAMED}; кеш имен не меняется.
+     *
+     * @param shardCount Общее число шардов.
+     * @param shards     Номера шардов или {@code null}, чтобы прочитать всех пользователей.
+     * @param fetchSize  Число строк, получаемых с сервера за одно обращение.
+     * @param consumer   Получатель строк расписания.
+     * @return Горизонт изменений или -1 при ошибке.
+     */
+    public long streamScheduleSnapshot(int shardCount, int[] shards, int fetchSize, Consumer<ReminderChange> consumer) {
+        String query = "SELECT u.tg_id, a.category, a.activity_time FROM activities a JOIN Users u ON a.user_id = u.id";
+        String namesQuery = "SELECT u.tg_id, u.user_name FROM Users u WHERE EXISTS (SELECT 1 FROM activities a WHERE a.user_id = u.id)";
+        if (shards != null) {
+            query += " WHERE mod(mod(u.tg_id, ?) + ?, ?) = ANY (?)";
+            namesQuery += " AND mod(mod(u.tg_id, ?) + ?, ?) = ANY (?)";
+        }
+        long start = System.nanoTime();
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            int isolation = connection.getTransactionIsolation();
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (Statement horizonStatement = connection.createStatement();
+                 PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 PreparedStatement namesStatement = connection.prepareStatement(namesQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // первый запрос транзакции фиксирует ее снимок, и pg_current_snapshot() возвращает этот же снимок
+                long horizon;
+                try (ResultSet resultSet = horizonStatement.executeQuery("SELECT pg_snapshot_xmin(pg_current_snapshot())::text")) {
+                    resultSet.next();
+                    horizon = Long.parseLong(resultSet.getString(1));
+                }
+                statement.setFetchSize(fetchSize);
+                namesStatement.setFetchSize(fetchSize);
+                if (shards != null) {
+                    Array shardArray = connection.createArrayOf("integer", Arrays.stream(shards).boxed().toArray(Integer[]::new));
+                    for (PreparedStatement filtered : new PreparedStatement[]{statement, namesStatement}) {
+                        filtered.setLong(1, shardCount);
+                        filtered.setLong(2, shardCount);
+                        filtered.setLong(3, shardCount);
+                        filtered.setArray(4, shardArray);
+                    }
+                }
+                long count = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(new ReminderChange(ReminderChange.Kind.SCHEDULED, resultSet.getLong("tg_id"),
+                                null, resultSet.getString("category"), resultSet.getTime("activity_time")));
+                        count++;
+                    }
+                }
+                try (ResultSet resultSet = namesStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(new ReminderChange(ReminderChange.Kind.RENAMED, resultSet.getLong("tg_id"),
+                                resultSet.getString("user_name"), null, null));
+                    }
+                }
+                events.info("Прочитан снимок расписания", "count", count, "horizon", horizon);
+                return horizon;
+            } finally {
+                connection.commit();
+                connection.setAutoCommit(true);
+                connection.setTransactionIsolation(isolation);
+            }
+        } catch (SQLException e) {
+            events.error("Не удалось прочитать снимок расписания", e);
+            return -1;
+        } finally {
+            Metrics.REPOSITORY.labels("streamScheduleSnapshot").observeSince(start);
+        }
+    }
+
+    /**
+     * Последовательно передает получателю изменения расписания, сделанные транзакциями не ниже горизонта:
+     * сначала удаления, затем текущее состояние добавленных и перенесенных напоминаний и новые имена.
+     * Изменение может прийти повторно, если оно уже учтено, поэтому получатель должен быть идемпотентным.
+     *
+     * @param horizon  Горизонт изменений, см. {@link #streamScheduleSnapshot(int, int[], int, Consumer)}.
+     * @param consumer Получатель изменений.
+     * @return Число прочитанных изменений или -1 при ошибке.
+     */
+    public long streamChangesSince(long horizon, Consumer<ReminderChange> consumer) {
+        String query = "SELECT 0 AS kind, t.tg_id, NULL AS user_name, t.category, NULL::time AS activity_time "
+                + "FROM activity_tombstones t WHERE t.change_xid >= CAST(? AS xid8) "
+                + "UNION ALL SELECT 1, u.tg_id, u.user_name, a.category, a.activity_time "
+                + "FROM activities a JOIN Users u ON a.user_id = u.id WHERE a.change_xid >= CAST(? AS xid8) "
+                + "UNION ALL SELECT 2, u.tg_id, u.user_name, NULL, NULL FROM Users u WHERE u.change_xid >= CAST(? AS xid8) "
+                + "ORDER BY kind";
+        ReminderChange.Kind[] kinds = ReminderChange.Kind.values();
+        long count = 0;
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            String value = Long.toString(horizon);
+            statement.setString(1, value);
+            statement.setString(2, value);
+            statement.setString(3, value);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(new ReminderChange(kinds[resultSet.getInt("kind")], resultSet.getLong("tg_id"),
+                            resultSet.getString("user_name"), resultSet.getString("category"),
+                            resultSet.getTime("activity_time")));
+                    count++;
+                }
+            }
+            events.info("Получены изменения расписания после горизонта", "count", count, "horizon", horizon);
+            return count;
+        } catch (SQLException e) {
+            UnitOfWork.markFailed();
+            events.error("Ошибка при получении изменений расписания", e, "horizon", horizon);
+            return -1;
+        } finally {
+            Metrics.REPOSITORY.labels("streamChangesSince").observeSince(start);
+        }
+    }
+
+    /**
+     * Удаляет записи об удаленных напоминаниях старше указанного возраста.
+     *
+     * @param maxAgeMs Максимальный возраст записи в миллисекундах.
+     */
+    public void pruneTombstones(long maxAgeMs) {
+        String query = "DELETE FROM activity_tombstones WHERE deleted_at < now() - ? * interval '1 millisecond'";
+        try (Connection connection = UnitOfWork.connection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, maxAgeMs);
+            int removed = statement.executeUpdate();
+            if (removed > 0) {
+                events.info("Удалены старые записи об удаленных напоминаниях", "removed", removed);
+            }
+        } catch (SQLException e) {
+            UnitOfWork.markFailed();
+            events.error("Не удалось удалить старые записи об удаленных напоминаниях", e, "maxAgeMs", maxAgeMs);
         }
-        return reminders;
     }
 
     /**
@@ -186,20 +553,24 @@ public class UserRepository implements Serializable {
      * @return Список напоминаний для пользователя.
      */
     public List<Reminder> getAllRemindersForUser(long tgId) {
-        String query = "SELECT a.category, a.activity_time, a.streak_num FROM activities a JOIN users u ON a.user_id = u.id WHERE u.tg_id = ?";
+        String query = "SELECT a.category, a.activity_time, a.streak_num FROM activities a JOIN Users u ON u.id = a.user_id WHERE u.tg_id = ?";
         List<Reminder> reminders = new ArrayList<>();
-        try (Connection connection = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setLong(1, tgId);
             ResultSet resultSet = statement.executeQuery();
             while (resultSet.next()) {
                 String category = resultSet.getString("category");
                 Time activityTime = resultSet.getTime("activity_time");
-                reminders.add(new Reminder(tgId, category, activityTime));
+                reminders.add(new Reminder(tgId, category, activityTime, resultSet.getInt("streak_num")));
             }
-            logger.log(Level.INFO, "Получено {0} напоминаний для пользователя {1} из базы данных", new Object[]{reminders.size(), tgId});
+            events.info("Получены напоминания пользователя", "tgId", tgId, "count", reminders.size());
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при получении напоминаний для пользователя " + tgId);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при получении напоминаний пользователя", e, "tgId", tgId);
+        } finally {
+            Metrics.REPOSITORY.labels("getAllRemindersForUser").observeSince(start);
         }
         return reminders;
     }
@@ -211,53 +582,109 @@ public class UserRepository implements Serializable {
      * @param category Категория действия.
      */
     public void deleteActivity(long tgId, String category) {
-        String query = "DELETE FROM activities WHERE user_id = (SELECT id FROM Users WHERE tg_id = ?) AND category = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+        String query = "DELETE FROM activities a USING Users u WHERE a.user_id = u.id AND u.tg_id = ? AND a.category = ?";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setLong(1, tgId);
             statement.setString(2, category);
             statement.executeUpdate();
-            logger.log(Level.INFO, "Действие успешно удалено: tgId={0}, category={1}", new Object[]{tgId, category});
+            events.info("Действие успешно удалено", "tgId", tgId, "category", category);
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при удалении действия: tgId=" + tgId + ", category=" + category);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при удалении действия", e, "tgId", tgId, "category", category);
+        } finally {
+            Metrics.REPOSITORY.labels("deleteActivity").observeSince(start);
         }
     }
 
     /**
-     * Увеличивает количество выполнений для действия пользователя.
+     * Возвращает количество выполнений действия и блокирует его строку до конца транзакции,
+     * чтобы отметка и изменение количества выполнений не разошлись с параллельным удалением действия.
      *
      * @param tgId Телеграм ID пользователя.
      * @param category Категория действия.
+     * @return Количество выполнений или пустой OptionalInt, если действие не найдено.
      */
-    public void incrementStreakNum(long tgId, String category) {
-        String query = "UPDATE activities SET streak_num = streak_num + 1 WHERE user_id = (SELECT id FROM Users WHERE tg_id = ?) AND category = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+    public OptionalInt getStreakNumForUpdate(long tgId, String category) {
+        String query = "SELECT a.streak_num FROM activities a JOIN Users u ON u.id = a.user_id WHERE u.tg_id = ? AND a.category = ? FOR UPDATE OF a";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setLong(1, tgId);
             statement.setString(2, category);
-            statement.executeUpdate();
-            logger.log(Level.INFO, "Количество выполнений увеличено для пользователя: tgId={0}, category={1}", new Object[]{tgId, category});
+            ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() ? OptionalInt.of(resultSet.getInt("streak_num")) : OptionalInt.empty();
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при увеличении количества выполнений для пользователя: tgId=" + tgId + ", category=" + category);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при получении количества выполнений", e, "tgId", tgId, "category", category);
+            return OptionalInt.empty();
+        } finally {
+            Metrics.REPOSITORY.labels("getStreakNumForUpdate").observeSince(start);
         }
     }
 
     /**
-     * Сбрасывает количество выполнений для действия пользователя.
+     * Увеличивает количество выполнений для действия пользователя одним запросом.
      *
      * @param tgId Телеграм ID пользователя.
      * @param category Категория действия.
+     * @return Новое количество выполнений или пустой OptionalInt, если действие не найдено.
      */
-    public void resetStreakNum(long tgId, String category) {
-        String query = "UPDATE activities SET streak_num = 0 WHERE user_id = (SELECT id FROM Users WHERE tg_id = ?) AND category = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+    public OptionalInt incrementStreakNum(long tgId, String category) {
+        String query = "UPDATE activities a SET streak_num = a.streak_num + 1 FROM Users u WHERE a.user_id = u.id AND u.tg_id = ? AND a.category = ? RETURNING a.streak_num";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setLong(1, tgId);
             statement.setString(2, category);
-            statement.executeUpdate();
-            logger.log(Level.INFO, "Количество выполнений сброшено для пользователя: tgId={0}, category={1}", new Object[]{tgId, category});
+            ResultSet resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                events.info("Действие для увеличения количества выполнений не найдено", "tgId", tgId, "category", category);
+                return OptionalInt.empty();
+            }
+            int streakNum = resultSet.getInt("streak_num");
+            events.info("Количество выполнений увеличено", "tgId", tgId, "category", category, "streakNum", streakNum);
+            return OptionalInt.of(streakNum);
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при сбросе количества выполнений для пользователя: tgId=" + tgId + ", category=" + category);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при увеличении количества выполнений", e, "tgId", tgId, "category", category);
+            return OptionalInt.empty();
+        } finally {
+            Metrics.REPOSITORY.labels("incrementStreakNum").observeSince(start);
+        }
+    }
+
+    /**
+     * Сбрасывает количество выполнений для действия пользователя одним запросом.
+     * Строка блокируется на время запроса, поэтому возвращаемое значение согласовано со сбросом.
+     *
+     * @param tgId Телеграм ID пользователя.
+     * @param category Категория действия.
+     * @return Количество выполнений до сброса или пустой OptionalInt, если действие не найдено.
+     */
+    public OptionalInt resetStreakNum(long tgId, String category) {
+        String query = "WITH prev AS (SELECT a.user_id, a.category, a.streak_num FROM activities a JOIN Users u ON u.id = a.user_id WHERE u.tg_id = ? AND a.category = ? FOR UPDATE OF a) "
+                + "UPDATE activities a SET streak_num = 0 FROM prev WHERE a.user_id = prev.user_id AND a.category = prev.category RETURNING prev.streak_num";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, tgId);
+            statement.setString(2, category);
+            ResultSet resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                events.info("Действие для сброса количества выполнений не найдено", "tgId", tgId, "category", category);
+                return OptionalInt.empty();
+            }
+            int prevStreakNum = resultSet.getInt("streak_num");
+            events.info("Количество выполнений сброшено", "tgId", tgId, "category", category, "prevStreakNum", prevStreakNum);
+            return OptionalInt.of(prevStreakNum);
+        } catch (SQLException e) {
+            UnitOfWork.markFailed();
+            events.error("Ошибка при сбросе количества выполнений", e, "tgId", tgId, "category", category);
+            return OptionalInt.empty();
+        } finally {
+            Metrics.REPOSITORY.labels("resetStreakNum").observeSince(start);
         }
     }
 
@@ -269,8 +696,9 @@ public class UserRepository implements Serializable {
      * @return Количество выполнений.
      */
     public int getStreakNum(long tgId, String category) {
-        String query = "SELECT streak_num FROM activities a JOIN Users u ON a.user_id = u.id WHERE u.tg_id = ? AND a.category = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+        String query = "SELECT a.streak_num FROM activities a JOIN Users u ON u.id = a.user_id WHERE u.tg_id = ? AND a.category = ?";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setLong(1, tgId);
             statement.setString(2, category);
@@ -281,8 +709,126 @@ public class UserRepository implements Serializable {
                 return 0;
             }
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при получении количества выполнений для пользователя: tgId=" + tgId + ", category=" + category);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при получении количества выполнений", e, "tgId", tgId, "category", category);
             return 0;
+        } finally {
+            Metrics.REPOSITORY.labels("getStreakNum").observeSince(start);
+        }
+    }
+
+    /**
+     * Записывает отметку "выполнено" или "пропущено" в журнал событий и в том же запросе обновляет
+     * накопленную статистику привычки, поэтому статистика не расходится с журналом.
+     * За один день по привычке учитывается только первая отметка, повторные (в том числе противоположные)
+     * не меняют ни журнал, ни статистику. Отметка за прошедший день, пришедшая после более поздней,
+     * ставит бит своего дня в масках и не меняет текущий streak.
+     *
+     * @param tgId      Телеграм ID пользователя.
+     * @param category  Категория действия.
+     * @param completed {@code true} для отметки "выполнено".
+     * @param day       День отметки по часовому поясу бота.
+     * @return {@code true}, если отметка учтена, и {@code false}, если за этот день отметка уже была или произошла ошибка.
+     */
+    public boolean recordCompletion(long tgId, String category, boolean completed, LocalDate day) {
+        String query = "WITH u AS (SELECT id FROM Users WHERE tg_id = ?), "
+                + "p AS (SELECT ?::text AS category, ?::boolean AS completed, ?::date AS day), "
+                + "e AS (INSERT INTO completion_events (user_id, category, day, completed) "
+                + "SELECT u.id, p.category, p.day, p.completed FROM u, p "
+                + "ON CONFLICT (user_id, category, day) DO NOTHING RETURNING user_id, category, day, completed) "
+                + "INSERT INTO user_stats AS s (user_id, category, last_day, completed_mask, seen_mask, "
+                + "total_completed, total_missed, current_streak, longest_streak) "
+                + "SELECT e.user_id, e.category, e.day, e.completed::int, 1, e.completed::int, 1 - e.completed::int, "
+                + "e.completed::int, e.completed::int FROM e "
+                + "ON CONFLICT (user_id, category) DO UPDATE SET "
+                // новый день: маски сдвигаются на число дней с прошлой отметки, бит 0 - день новой отметки;
+                // прошедший день: ставится бит (last_day - day), если он помещается в маску
+                + "completed_mask = CASE WHEN s.last_day IS NULL OR EXCLUDED.last_day - s.last_day >= 64 THEN EXCLUDED.completed_mask "
+                + "WHEN EXCLUDED.last_day >= s.last_day THEN (s.completed_mask << (EXCLUDED.last_day - s.last_day)) | EXCLUDED.completed_mask "
+                + "WHEN s.last_day - EXCLUDED.last_day < 64 THEN s.completed_mask | (EXCLUDED.completed_mask << (s.last_day - EXCLUDED.last_day)) "
+                + "ELSE s.completed_mask END, "
+                + "seen_mask = CASE WHEN s.last_day IS NULL OR EXCLUDED.last_day - s.last_day >= 64 THEN 1 "
+                + "WHEN EXCLUDED.last_day >= s.last_day THEN (s.seen_mask << (EXCLUDED.last_day - s.last_day)) | 1 "
+                + "WHEN s.last_day - EXCLUDED.last_day < 64 THEN s.seen_mask | (1::bigint << (s.last_day - EXCLUDED.last_day)) "
+                + "ELSE s.seen_mask END, "
+                + "last_day = GREATEST(s.last_day, EXCLUDED.last_day), "
+                + "total_completed = s.total_completed + EXCLUDED.total_completed, "
+                + "total_missed = s.total_missed + EXCLUDED.total_missed, "
+                + "current_streak = CASE WHEN EXCLUDED.last_day < s.last_day THEN s.current_streak "
+                + "WHEN EXCLUDED.current_streak = 1 THEN s.current_streak + 1 ELSE 0 END, "
+                + "longest_streak = GREATEST(s.longest_streak, CASE WHEN EXCLUDED.last_day < s.last_day THEN s.current_streak "
+                + "WHEN EXCLUDED.current_streak = 1 THEN s.current_streak + 1 ELSE 0 END)";
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, tgId);
+            statement.setString(2, category);
+            statement.setBoolean(3, completed);
+            statement.setObject(4, day);
+            boolean recorded = statement.executeUpdate() > 0;
+            events.info(recorded ? "Отметка записана" : "Отметка за этот день уже была", "tgId", tgId, "category", category, "completed", completed);
+            return recorded;
+        } catch (SQLException e) {
+            UnitOfWork.markFailed();
+            events.error("Ошибка при записи отметки", e, "tgId", tgId, "category", category, "completed", completed);
+            return false;
+        } finally {
+            Metrics.REPOSITORY.labels("recordCompletion").observeSince(start);
+        }
+    }
+
+    /**
+     * Возвращает накопленную статистику пользователя по всем привычкам.
+     * Читаются только строки {@code user_stats}, без обращения к журналу событий.
+     *
+     * @param tgId Телеграм ID пользователя.
+     * @return Статистика по привычкам.
+     */
+    public List<UserStats> getUserStats(long tgId) {
+        String query = "SELECT s.category, s.last_day, s.completed_mask, s.seen_mask, s.total_completed, s.total_missed, "
+                + "s.current_streak, s.longest_streak FROM user_stats s JOIN Users u ON u.id = s.user_id WHERE u.tg_id = ? "
+                + "ORDER BY s.category";
+        List<UserStats> stats = new ArrayList<>();
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setLong(1, tgId);
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                stats.add(new UserStats(
+                        resultSet.getString("category"),
+                        resultSet.getObject("last_day", LocalDate.class),
+                        resultSet.getLong("completed_mask"),
+                        resultSet.getLong("seen_mask"),
+                        resultSet.getInt("total_completed"),
+                        resultSet.getInt("total_missed"),
+                        resultSet.getInt("current_streak"),
+                        resultSet.getInt("longest_streak")));
+            }
+        } catch (SQLException e) {
+            UnitOfWork.markFailed();
+            events.error("Ошибка при получении статистики", e, "tgId", tgId);
+        } finally {
+            Metrics.REPOSITORY.labels("getUserStats").observeSince(start);
+        }
+        return stats;
+    }
+
+    /**
+     * Создает секции журнала событий для текущего и следующего месяца, если их еще нет.
+     *
+     * @param today Текущий день.
+     */
+    public void ensureEventPartitions(LocalDate today) {
+        String query = "SELECT completion_events_ensure_partition(?), completion_events_ensure_partition(?)";
+        try (Connection connection = UnitOfWork.connection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setObject(1, today);
+            statement.setObject(2, today.plusMonths(1));
+            statement.execute();
+        } catch (SQLException e) {
+            UnitOfWork.markFailed();
+            events.error("Не удалось создать секции журнала событий", e, "month", today.getMonthValue(), "year", today.getYear());
         }
     }
 
@@ -294,14 +840,66 @@ public class UserRepository implements Serializable {
      */
     public void updateUserName(long tgId, String newName) {
         String query = "UPDATE Users SET user_name = ? WHERE tg_id = ?";
-        try (Connection connection = DatabaseConnection.getConnection();
+        long start = System.nanoTime();
+        try (Connection connection = UnitOfWork.connection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, newName);
             statement.setLong(2, tgId);
-            statement.executeUpdate();
-            logger.log(Level.INFO, () -> "Имя пользователя обновлено: tgId=" + tgId + ", newName=" + newName);
+            if (statement.executeUpdate() > 0) {
+                userNameCache.put(tgId, newName);
+            }
+            events.info("Имя пользователя обновлено", "tgId", tgId, "newName", newName);
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Ошибка при обновлении имени пользователя: tgId=" + tgId + ", newName=" + newName);
+            UnitOfWork.markFailed();
+            events.error("Ошибка при обновлении имени пользователя", e, "tgId", tgId, "newName", newName);
+        } finally {
+            Metrics.REPOSITORY.labels("updateUserName").observeSince(start);
         }
     }
+
+    /**
+     * Удаляет имя пользователя из кеша, например после изменения на другом экземпляре бота.
+     *
+     * @param tgId Телеграм ID пользователя.
+     */
+    public void evictUserName(long tgId) {
+        userNameCache.remove(tgId);
+    }
+
+    /**
+     * Заполняет кеш имен, например из снимка расписания.
+     *
+     * @param tgId     Телеграм ID пользователя.
+     * @param userName Имя пользователя или {@code null}, если имени нет.
+     */
+    public void primeUserName(long tgId, String userName) {
+        userNameCache.put(tgId, userName);
+    }
+
+    /**
+     * Возвращает число попаданий в кеш имен пользователей.
+     *
+     * @return Число попаданий.
+     */
+    public long getNameCacheHits() {
+        return userNameCache.getHits();
+    }
+
+    /**
+     * Возвращает число промахов кеша имен пользователей.
+     *
+     * @return Число промахов.
+     */
+    public long getNameCacheMisses() {
+        return userNameCache.getMisses();
+    }
+
+    /**
+     * Возвращает число записей в кеше имен пользователей.
+     *
+     * @return Размер кеша.
+     */
+    public int getNameCacheSize() {
+        return userNameCache.size();
+    }
 }
@@ -1,82 +1,606 @@
 package org.example.sceduler;
 
-import org.example.repository.UserRepository;
+import org.example.config.ConfigLoader;
 import org.example.reminder.Reminder;
+import org.example.reminder.ReminderChange;
+import org.example.repository.UserRepository;
 import org.example.job.ReminderJob;
+import org.example.shard.ShardManager;
+import org.example.time.TimeParser;
 import org.quartz.*;
 import org.quartz.impl.StdSchedulerFactory;
+import org.quartz.simpl.RAMJobStore;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Time;
-import java.time.LocalTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Класс для планирования напоминаний с использованием Quartz Scheduler.
+ * Класс для планирования напоминаний.
+ * <p>
+ * Напоминания хранятся в {@link ReminderWheel} по минутам суток, а Quartz запускает
+ * одну задачу {@link ReminderJob} в начале каждой минуты, которая рассылает все наступившие напоминания.
+ * <p>
+ * Расписание вместе с именами пользователей периодически читается из согласованного снимка базы и сохраняется
+ * в файл {@code reminders.snapshot.path} ({@link ReminderSnapshot}) в отдельном потоке, не задерживая загрузчик.
+ * При запуске шарды, покрытые свежим снимком, восстанавливаются из него,
+ * а из базы читаются только изменения после горизонта снимка, поэтому время до первого напоминания
+ * не зависит от размера таблиц. Остальные шарды загружаются из базы полностью.
  */
 public class ReminderScheduler {
     private static final Logger logger = Logger.getLogger(ReminderScheduler.class.getName());
+    private static final JobKey TICK_JOB_KEY = new JobKey("reminder-tick", "reminders");
+    private static final ReminderWheel wheel = new ReminderWheel(ConfigLoader.getIntProperty("reminders.initialCapacity", 1024));
+    private static final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "reminder-bootstrap");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ScheduledExecutorService snapshotWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "reminder-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final String snapshotPath = ConfigLoader.getProperty("reminders.snapshot.path", "reminders.snapshot");
+    private static final long snapshotIntervalMs = ConfigLoader.getLongProperty("reminders.snapshot.intervalMs", 600_000L);
+    private static final long snapshotMaxAgeMs = ConfigLoader.getLongProperty("reminders.snapshot.maxAgeMs", 86_400_000L);
+    private static final long loadRetryMs = ConfigLoader.getLongProperty("reminders.bootstrap.retryMs", 30_000L);
+    // ключи, измененные обработчиками во время текущей загрузки, или null, если загрузки нет
+    private static volatile TouchedKeys touched;
     private static Scheduler scheduler;
+    private static ShardManager shardManager;
+    private static UserRepository repository;
+    // состояние ниже меняется только в потоке загрузчика
+    private static ReminderSnapshot snapshot;
+    private static final BitSet loadedShards = new BitSet();
+    private static boolean loadedAll;
+    // шарды, загрузка которых прервана ошибкой базы и будет повторена
+    private static final BitSet failedShards = new BitSet();
+    private static boolean failedAll;
+    // копия загруженных шардов для записи снимка: без шардирования загрузку всех пользователей обозначает шард 0
+    private static volatile BitSet loadedView = new BitSet();
 
     private ReminderScheduler(){
     }
 
-    static {
+    /**
+     * Создает и запускает единственный планировщик Quartz приложения и регистрирует ежеминутную задачу.
+     * Задачи выполняются в {@link VirtualThreadPool} с ограничением {@code scheduler.concurrency}.
+     * Зависимости {@link ReminderJob} должны быть установлены до вызова: первая задача может запуститься сразу.
+     *
+     * @return Запущенный планировщик.
+     * @throws SchedulerException Если Quartz не удалось настроить или запустить.
+     */
+    public static synchronized Scheduler start() throws SchedulerException {
+        if (scheduler != null) {
+            return scheduler;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, "hh-bot");
+        properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+        properties.setProperty(StdSchedulerFactory.PROP_JOB_STORE_CLASS, RAMJobStore.class.getName());
+        properties.setProperty(StdSchedulerFactory.PROP_THREAD_POOL_CLASS, VirtualThreadPool.class.getName());
+        properties.setProperty(StdSchedulerFactory.PROP_THREAD_POOL_PREFIX + ".concurrency",
+                String.valueOf(ConfigLoader.getIntProperty("scheduler.concurrency", 64)));
+        Scheduler created = new StdSchedulerFactory(properties).getScheduler();
+        created.start();
+        scheduler = created;
+        scheduleTick();
+        return created;
+    }
+
+    /**
+     * Останавливает планировщик, дожидаясь выполняющихся задач.
+     */
+    public static synchronized void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
         try {
-            scheduler = StdSchedulerFactory.getDefaultScheduler();
-            scheduler.start();
+            scheduler.shutdown(true);
         } catch (SchedulerException e) {
-            logger.log(Level.SEVERE, "Failed to start scheduler", e);
+            logger.log(Level.WARNING, "Не удалось остановить планировщик", e);
+        }
+    }
+
+    /**
+     * Регистрирует ежеминутную задачу рассылки напоминаний.
+     *
+     * @throws SchedulerException Если Quartz не смог зарегистрировать задачу.
+     */
+    private static void scheduleTick() throws SchedulerException {
+        if (scheduler.checkExists(TICK_JOB_KEY)) {
+            return;
         }
+        JobDetail job = JobBuilder.newJob(ReminderJob.class)
+                .withIdentity(TICK_JOB_KEY)
+                .build();
+
+        Trigger trigger = TriggerBuilder.newTrigger()
+                .withIdentity("reminder-tick-trigger", "reminders")
+                .withSchedule(CronScheduleBuilder.cronSchedule("0 * * * * ?")
+                        // пропущенные запуски догоняет сама задача по lastProcessedMinute
+                        .withMisfireHandlingInstructionFireAndProceed())
+                .build();
+
+        scheduler.scheduleJob(job, trigger);
     }
 
     /**
-     * Планирует напоминание для пользователя.
+     * Устанавливает менеджер шардов. Без него экземпляр обслуживает напоминания всех пользователей.
+     *
+     * @param manager Менеджер шардов.
+     */
+    public static void setShardManager(ShardManager manager) {
+        shardManager = manager;
+    }
+
+    /**
+     * Планирует напоминание для пользователя. Повторный вызов для той же категории переносит напоминание.
+     * Если пользователь относится к чужому шарду, владельцу шарда отправляется уведомление.
      *
      * @param userId       ID пользователя.
      * @param category     Категория напоминания.
      * @param activityTime Время напоминания.
      */
     public static void scheduleReminder(long userId, String category, Time activityTime) {
+        if (!ownsUser(userId)) {
+            shardManager.publishUserChange(userId);
+            return;
+        }
+        TouchedKeys loading = touched;
+        if (loading != null) {
+            loading.touch(userId, category);
+        }
+        wheel.put(userId, category, TimeParser.minuteOfDay(activityTime));
+    }
+
+    /**
+     * Отменяет напоминание пользователя.
+     *
+     * @param userId   ID пользователя.
+     * @param category Категория напоминания.
+     */
+    public static void cancelReminder(long userId, String category) {
+        if (!ownsUser(userId)) {
+            shardManager.publishUserChange(userId);
+            return;
+        }
+        TouchedKeys loading = touched;
+        if (loading != null) {
+            loading.touch(userId, category);
+        }
+        wheel.remove(userId, category);
+    }
+
+    /**
+     * Сообщает планировщику, что данные пользователя, нужные для отправки напоминаний, изменились.
+     *
+     * @param userId ID пользователя.
+     */
+    public static void userUpdated(long userId) {
+        if (!ownsUser(userId)) {
+            shardManager.publishUserChange(userId);
+            return;
+        }
+        TouchedKeys loading = touched;
+        if (loading != null) {
+            loading.touchName(userId);
+        }
+    }
+
+    /**
+     * Передает получателю все напоминания, запланированные на указанную минуту суток,
+     * пропуская пользователей, шарды которых экземпляру больше не принадлежат.
+     *
+     * @param minuteOfDay Минута суток от 0 до 1439.
+     * @param consumer    Получатель напоминаний.
+     * @return Число напоминаний.
+     */
+    public static int forEachDue(int minuteOfDay, ReminderWheel.ReminderConsumer consumer) {
+        if (shardManager == null) {
+            return wheel.forEachDue(minuteOfDay, consumer);
+        }
+        return wheel.forEachDue(minuteOfDay, (userId, category) -> {
+            if (shardManager.ownsUser(userId)) {
+                consumer.accept(userId, category);
+            }
+        });
+    }
+
+    /**
+     * Асинхронно планирует существующие напоминания.
+     * Напоминания читаются из базы потоком и регистрируются пачками по мере поступления,
+     * поэтому бот обслуживает обновления, не дожидаясь окончания загрузки.
+     * С менеджером шардов загружаются только шарды экземпляра, а при перераспределении шардов
+     * напоминания догружаются и удаляются автоматически.
+     *
+     * @param userRepository Репозиторий пользователей.
+     * @return Future с числом напоминаний, загруженных при первом распределении шардов.
+     */
+    public static CompletableFuture<Long> scheduleExistingReminders(UserRepository userRepository) {
+        repository = userRepository;
+        long[] loaded = new long[1];
+        loader.execute(ReminderScheduler::readSnapshot);
+        if (!snapshotPath.isEmpty() && snapshotIntervalMs > 0) {
+            snapshotWriter.scheduleWithFixedDelay(ReminderScheduler::writeSnapshot, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        if (shardManager == null) {
+            return CompletableFuture.supplyAsync(() -> loadReminders(null), loader);
+        }
+        shardManager.start(new ShardManager.Listener() {
+            @Override
+            public void onAssigned(int[] shards) {
+                loader.execute(() -> loaded[0] += loadReminders(shards));
+            }
+
+            @Override
+            public void onRevoked(int[] shards) {
+                loader.execute(() -> dropShards(shards));
+            }
+
+            @Override
+            public void onUserChanged(long tgId) {
+                loader.execute(() -> reloadUser(tgId));
+            }
+        });
+        // загрузчик однопоточный, поэтому эта задача выполнится после загрузки первых шардов
+        return CompletableFuture.supplyAsync(() -> loaded[0], loader);
+    }
+
+    /**
+     * Сохраняет снимок колеса, например перед остановкой экземпляра, чтобы следующий запуск
+     * прочитал из базы как можно меньше изменений. Снимок пишется в потоке записи снимков после уже начатой записи.
+     *
+     * @param timeoutMs Максимальное время ожидания записи.
+     */
+    public static void saveSnapshot(long timeoutMs) {
+        if (snapshotPath.isEmpty() || repository == null) {
+            return;
+        }
         try {
-            JobDetail job = JobBuilder.newJob(ReminderJob.class)
-                    .withIdentity("job-" + userId + "-" + category, "group-" + userId)
-                    .usingJobData("userId", userId)  // Исправлено на long
-                    .usingJobData("category", category)
-                    .build();
+            snapshotWriter.submit(ReminderScheduler::writeSnapshot).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.log(Level.WARNING, "Снимок напоминаний не сохранен при остановке", e);
+        }
+    }
 
-            LocalTime localTime = activityTime.toLocalTime();
-            int hours = localTime.getHour();
-            int minutes = localTime.getMinute();
+    /**
+     * Возвращает число напоминаний, запланированных на этом экземпляре.
+     *
+     * @return Число напоминаний.
+     */
+    public static int getScheduledCount() {
+        return wheel.size();
+    }
 
-            Trigger trigger = TriggerBuilder.newTrigger()
-                    .withIdentity("trigger-" + userId + "-" + category, "group-" + userId)
-                    .withSchedule(CronScheduleBuilder.dailyAtHourAndMinute(hours, minutes))
-                    .build();
+    private static boolean ownsUser(long userId) {
+        return shardManager == null || shardManager.ownsUser(userId);
+    }
 
-            if (scheduler.checkExists(new JobKey("job-" + userId + "-" + category, "group-" + userId))) {
-                scheduler.deleteJob(new JobKey("job-" + userId + "-" + category, "group-" + userId));
+    /**
+     * Загружает напоминания шардов: покрытые снимком - из снимка с догрузкой изменений, остальные - из базы.
+     * Пока идет загрузка, ключи, которые меняют обработчики, отмечаются в {@link TouchedKeys}, и загрузка
+     * их не перетирает. Если базу не удалось прочитать, шарды не считаются загруженными и загружаются повторно
+     * через {@code reminders.bootstrap.retryMs}.
+     *
+     * @param shards Номера шардов или {@code null} без шардирования.
+     * @return Число загруженных напоминаний.
+     */
+    private static long loadReminders(int[] shards) {
+        TouchedKeys guard = new TouchedKeys();
+        touched = guard;
+        try {
+            return loadReminders(shards, guard);
+        } finally {
+            publishLoaded();
+            touched = null;
+            // загрузка могла положить в кеш устаревшие имена: они будут прочитаны из базы при напоминании
+            guard.forEachUser(repository::evictUserName);
+        }
+    }
+
+    private static long loadReminders(int[] shards, TouchedKeys guard) {
+        ReminderSnapshot restored = snapshot;
+        // снимок используется только при первом распределении: позже полученные шарды в нем устарели бы
+        snapshot = null;
+        if (shards == null) {
+            long count = restored != null && restored.covers(0, 0) ? restore(restored, null, 0, guard) : -1;
+            if (count < 0) {
+                count = loadFromDatabase(null, guard);
+            }
+            failedAll = count < 0;
+            if (failedAll) {
+                scheduleRetry();
+                return 0;
+            }
+            loadedAll = true;
+            return count;
+        }
+        int shardCount = shardManager.getShardCount();
+        BitSet covered = new BitSet();
+        if (restored != null) {
+            for (int shard : shards) {
+                if (restored.covers(shard, shardCount)) {
+                    covered.set(shard);
+                }
+            }
+        }
+        long count = 0;
+        if (!covered.isEmpty()) {
+            count = restore(restored, covered, shardCount, guard);
+            if (count < 0) {
+                count = 0;
+                covered.clear();
             }
+        }
+        int[] remaining = Arrays.stream(shards).filter(shard -> !covered.get(shard)).toArray();
+        long fromDatabase = remaining.length > 0 ? loadFromDatabase(remaining, guard) : 0;
+        for (int shard : shards) {
+            if (fromDatabase >= 0 || covered.get(shard)) {
+                loadedShards.set(shard);
+                failedShards.clear(shard);
+            } else {
+                failedShards.set(shard);
+            }
+        }
+        if (fromDatabase < 0) {
+            scheduleRetry();
+            return count;
+        }
+        return count + fromDatabase;
+    }
 
-            scheduler.scheduleJob(job, trigger);
-        } catch (SchedulerException e) {
-            logger.log(Level.SEVERE, e, () ->  "Ошибка установки напоминания userId=" + userId + ", category=" + category);
+    private static void publishLoaded() {
+        BitSet view = (BitSet) loadedShards.clone();
+        if (loadedAll) {
+            view.set(0);
         }
+        loadedView = view;
     }
 
+    private static void scheduleRetry() {
+        logger.log(Level.WARNING, "Напоминания загружены не полностью, повторная загрузка через {0} мс", loadRetryMs);
+        loader.schedule(ReminderScheduler::retryFailed, loadRetryMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void retryFailed() {
+        if (failedAll) {
+            loadReminders(null);
+        } else if (!failedShards.isEmpty()) {
+            // отданные за это время шарды уже исключены из failedShards в dropShards
+            int[] shards = failedShards.stream().toArray();
+            failedShards.clear();
+            loadReminders(shards);
+        }
+    }
 
     /**
-     * Планирует существующие напоминания для всех пользователей.
+     * Загружает напоминания шардов из базы, не перетирая ключи, измененные обработчиками.
      *
-     * @param userRepository Репозиторий пользователей.
+     * @param shards Номера шардов или {@code null} без шардирования.
+     * @param guard  Ключи, измененные во время загрузки.
+     * @return Число прочитанных напоминаний или -1, если базу не удалось прочитать.
      */
-    public static void scheduleExistingReminders(UserRepository userRepository) {
+    private static long loadFromDatabase(int[] shards, TouchedKeys guard) {
+        int fetchSize = ConfigLoader.getIntProperty("reminders.bootstrap.fetchSize", 1000);
+        int batchSize = ConfigLoader.getIntProperty("reminders.bootstrap.batchSize", 1000);
+        long progressEvery = ConfigLoader.getLongProperty("reminders.bootstrap.progressEvery", 100_000L);
+        long start = System.nanoTime();
+
+        long[] userIds = new long[batchSize];
+        String[] categories = new String[batchSize];
+        int[] minutesOfDay = new int[batchSize];
+        int[] pending = new int[1];
+        long[] loaded = new long[1];
+
+        Consumer<Reminder> batcher = reminder -> {
+            int i = pending[0]++;
+            userIds[i] = reminder.userId();
+            categories[i] = reminder.category();
+            minutesOfDay[i] = TimeParser.minuteOfDay(reminder.activityTime());
+            if (pending[0] == batchSize) {
+                wheel.putAll(userIds, categories, minutesOfDay, batchSize, guard);
+                pending[0] = 0;
+                loaded[0] += batchSize;
+                if (loaded[0] % progressEvery < batchSize) {
+                    logger.log(Level.INFO, "Загружено {0} напоминаний за {1} мс",
+                            new Object[]{loaded[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+                }
+            }
+        };
+        long count = shards == null
+                ? repository.streamAllReminders(fetchSize, batcher)
+                : repository.streamRemindersForShards(shardManager.getShardCount(), shards, fetchSize, batcher);
+        wheel.putAll(userIds, categories, minutesOfDay, pending[0], guard);
+        if (count < 0) {
+            logger.log(Level.WARNING, "Загрузка напоминаний из базы прервана после {0} напоминаний", loaded[0] + pending[0]);
+            return -1;
+        }
+
+        logger.log(Level.INFO, "Запланировано {0} напоминаний за {1} мс, всего {2}, память колеса ~{3} байт",
+                new Object[]{count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), wheel.size(), wheel.estimatedMemoryBytes()});
+        return count;
+    }
+
+    private static void dropShards(int[] shards) {
+        BitSet revoked = new BitSet();
+        for (int shard : shards) {
+            revoked.set(shard);
+        }
+        loadedShards.andNot(revoked);
+        failedShards.andNot(revoked);
+        int shardCount = shardManager.getShardCount();
+        publishLoaded();
+        int removed = wheel.removeIf(userId -> revoked.get(ShardManager.shardOf(userId, shardCount)));
+        logger.log(Level.INFO, "Удалено {0} напоминаний отданных шардов", removed);
+    }
+
+    private static void reloadUser(long tgId) {
+        TouchedKeys loading = touched;
+        if (loading != null) {
+            loading.touchUser(tgId);
+        }
+        repository.evictUserName(tgId);
+        wheel.removeUser(tgId);
+        for (Reminder reminder : repository.getAllRemindersForUser(tgId)) {
+            wheel.put(tgId, reminder.category(), TimeParser.minuteOfDay(reminder.activityTime()));
+        }
+    }
+
+    private static void readSnapshot() {
+        if (snapshotPath.isEmpty()) {
+            return;
+        }
         try {
-            for (Reminder reminder : userRepository.getAllReminders()) {
-                scheduleReminder(reminder.userId(), reminder.category(), reminder.activityTime());
+            Optional<ReminderSnapshot> found = ReminderSnapshot.read(Path.of(snapshotPath));
+            if (found.isEmpty()) {
+                return;
+            }
+            long age = System.currentTimeMillis() - found.get().createdAtMillis();
+            // записи об удалениях хранятся ограниченное время, поэтому старый снимок мог бы вернуть удаленные напоминания
+            if (age > snapshotMaxAgeMs) {
+                logger.log(Level.INFO, "Снимок напоминаний от {0} устарел, напоминания загружаются из базы",
+                        Instant.ofEpochMilli(found.get().createdAtMillis()));
+                return;
+            }
+            snapshot = found.get();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Не удалось прочитать снимок напоминаний, напоминания загружаются из базы", e);
+        }
+    }
+
+    /**
+     * Восстанавливает напоминания покрытых шардов из снимка и применяет изменения после его горизонта.
+     * Ключи, измененные обработчиками во время восстановления, не перетираются и не удаляются.
+     *
+     * @param restored   Снимок.
+     * @param covered    Шарды, берущиеся из снимка, или {@code null} без шардирования.
+     * @param shardCount Общее число шардов.
+     * @param guard      Ключи, измененные во время загрузки.
+     * @return Число напоминаний, восстановленных из снимка, или -1, если изменения не удалось прочитать.
+     */
+    private static long restore(ReminderSnapshot restored, BitSet covered, int shardCount, TouchedKeys guard) {
+        long start = System.nanoTime();
+        int batchSize = ConfigLoader.getIntProperty("reminders.bootstrap.batchSize", 1000);
+        long[] userIds = new long[batchSize];
+        String[] categories = new String[batchSize];
+        int[] minutesOfDay = new int[batchSize];
+        int[] pending = new int[1];
+        long[] restoredCount = new long[1];
+        restored.forEachReminder((userId, category, minuteOfDay) -> {
+            if (covered != null && !covered.get(ShardManager.shardOf(userId, shardCount))) {
+                return;
             }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Ошибка получения существующих напоминаний", e);
+            restoredCount[0]++;
+            int i = pending[0]++;
+            userIds[i] = userId;
+            categories[i] = category;
+            minutesOfDay[i] = minuteOfDay;
+            if (pending[0] == batchSize) {
+                wheel.putAll(userIds, categories, minutesOfDay, batchSize, guard);
+                pending[0] = 0;
+            }
+        });
+        wheel.putAll(userIds, categories, minutesOfDay, pending[0], guard);
+        pending[0] = 0;
+        restored.forEachName((userId, userName) -> {
+            if (covered == null || covered.get(ShardManager.shardOf(userId, shardCount))) {
+                repository.primeUserName(userId, userName);
+            }
+        });
+        long fromSnapshot = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // изменения приходят упорядоченными по виду, поэтому пачка сбрасывается при смене вида
+        ReminderChange.Kind[] batchKind = new ReminderChange.Kind[1];
+        long changes = repository.streamChangesSince(restored.horizon(), change -> {
+            long userId = change.userId();
+            if (covered != null && !covered.get(ShardManager.shardOf(userId, shardCount))) {
+                return;
+            }
+            if (change.kind() == ReminderChange.Kind.RENAMED) {
+                repository.primeUserName(userId, change.userName());
+                return;
+            }
+            if (change.kind() != batchKind[0] || pending[0] == batchSize) {
+                applyChanges(batchKind[0], userIds, categories, minutesOfDay, pending[0], guard);
+                batchKind[0] = change.kind();
+                pending[0] = 0;
+            }
+            int i = pending[0]++;
+            userIds[i] = userId;
+            categories[i] = change.category();
+            if (change.kind() == ReminderChange.Kind.SCHEDULED) {
+                minutesOfDay[i] = TimeParser.minuteOfDay(change.activityTime());
+                repository.primeUserName(userId, change.userName());
+            }
+        });
+        applyChanges(batchKind[0], userIds, categories, minutesOfDay, pending[0], guard);
+        if (changes < 0) {
+            // без изменений снимок неполон: отменяем восстановление, шарды загрузятся из базы целиком;
+            // ключи, измененные обработчиками, остаются в колесе
+            wheel.removeKeysIf((userId, category) -> !guard.test(userId, category)
+                    && (covered == null || covered.get(ShardManager.shardOf(userId, shardCount))));
+            return -1;
+        }
+        logger.log(Level.INFO, "Из снимка восстановлено {0} напоминаний за {1} мс, применено {2} изменений, всего {3} мс",
+                new Object[]{restoredCount[0], fromSnapshot, changes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+        return restoredCount[0];
+    }
+
+    private static void applyChanges(ReminderChange.Kind kind, long[] userIds, String[] categories, int[] minutesOfDay,
+                                     int count, TouchedKeys guard) {
+        if (kind == ReminderChange.Kind.REMOVED) {
+            wheel.removeAll(userIds, categories, count, guard);
+        } else if (kind == ReminderChange.Kind.SCHEDULED) {
+            wheel.putAll(userIds, categories, minutesOfDay, count, guard);
+        }
+    }
+
+    private static void writeSnapshot() {
+        BitSet shards = loadedView;
+        if (shards.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int shardCount = shardManager == null ? 0 : shardManager.getShardCount();
+        // напоминания, имена и горизонт читаются из одного снимка базы, а не из колеса: изменение, которое
+        // обработчик еще не внес в колесо, либо уже есть в строках, либо будет применено после горизонта
+        ReminderSnapshot.Rows rows = new ReminderSnapshot.Rows(wheel.size());
+        long horizon = repository.streamScheduleSnapshot(shardCount, shardManager == null ? null : shards.stream().toArray(),
+                ConfigLoader.getIntProperty("reminders.bootstrap.fetchSize", 1000), row -> {
+                    if (row.kind() == ReminderChange.Kind.RENAMED) {
+                        rows.addName(row.userId(), row.userName());
+                    } else {
+                        rows.add(row.userId(), row.category(), TimeParser.minuteOfDay(row.activityTime()));
+                    }
+                });
+        if (horizon < 0) {
+            return;
+        }
+        try {
+            int written = ReminderSnapshot.write(Path.of(snapshotPath), horizon, shardCount, shards, rows);
+            logger.log(Level.INFO, "Снимок напоминаний записан: {0} напоминаний за {1} мс",
+                    new Object[]{written, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+            repository.pruneTombstones(snapshotMaxAgeMs * 2);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Не удалось записать снимок напоминаний", e);
         }
     }
 }
@@ -0,0 +1,292 @@
+package org.example.sceduler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Двоичный снимок расписания напоминаний и имен пользователей для теплого перезапуска.
+ * <p>
+ * Напоминания и имена читаются из одного согласованного снимка базы, а не из колеса и кеша имен,
+ * и записываются вместе с горизонтом этого снимка: при восстановлении догружаются изменения после горизонта.
+ * <p>
+ * Файл состоит из заголовка (время создания, горизонт изменений базы, шарды, которые покрывает снимок),
+ * словаря категорий, записей напоминаний фиксированной длины и имен пользователей. В конце записана
+ * контрольная сумма CRC32C всего содержимого. Файл пишется во временный и атомарно переименовывается,
+ * поэтому читатель видит либо старый, либо новый снимок целиком.
+ * <p>
+ * Снимок читается через отображение файла в память: записи разбираются прямо из отображенного буфера,
+ * без промежуточных копий.
+ */
+final class ReminderSnapshot {
+    private static final int MAGIC = 0x524D4E44; // "RMND"
+    private static final int VERSION = 1;
+    private static final int REMINDER_BYTES = Long.BYTES + Byte.BYTES + Short.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final long createdAtMillis;
+    private final long horizon;
+    private final int shardCount;
+    private final BitSet shards;
+    private final String[] categories;
+    private final int reminderCount;
+    private final int remindersOffset;
+    private final int nameCount;
+    private final int namesOffset;
+
+    private ReminderSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < Integer.BYTES * 3 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Файл не является снимком напоминаний");
+        }
+        int end = buffer.capacity() - Integer.BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, end));
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("Контрольная сумма снимка не совпадает");
+        }
+        ByteBuffer in = buffer.duplicate().position(Integer.BYTES);
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия снимка: " + version);
+        }
+        createdAtMillis = in.getLong();
+        horizon = in.getLong();
+        shardCount = in.getInt();
+        long[] words = new long[in.getInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.getLong();
+        }
+        shards = BitSet.valueOf(words);
+        categories = new String[in.getInt()];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = readString(in);
+        }
+        reminderCount = in.getInt();
+        remindersOffset = in.position();
+        in.position(remindersOffset + reminderCount * REMINDER_BYTES);
+        nameCount = in.getInt();
+        namesOffset = in.position();
+    }
+
+    /**
+     * Записывает снимок.
+     *
+     * @param path       Путь к файлу снимка.
+     * @param horizon    Горизонт изменений базы, на который прочитаны напоминания.
+     * @param shardCount Общее число шардов или 0, если экземпляр обслуживает всех пользователей.
+     * @param shards     Шарды, напоминания которых попали в снимок; без шардирования не используется.
+     * @param rows       Напоминания и имена пользователей.
+     * @return Число записанных напоминаний.
+     * @throws IOException Если файл не удалось записать.
+     */
+    static int write(Path path, long horizon, int shardCount, BitSet shards, Rows rows) throws IOException {
+        int count = rows.count;
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            CRC32C crc = new CRC32C();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Files.newOutputStream(temp), crc), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeLong(horizon);
+                out.writeInt(shardCount);
+                long[] words = shards.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+                out.writeInt(rows.categories.size());
+                for (String category : rows.categories) {
+                    writeString(out, category);
+                }
+                out.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(rows.userIds[i]);
+                    out.writeByte(rows.categoryIds[i]);
+                    out.writeShort(rows.minutes[i]);
+                }
+                out.writeInt(rows.nameCount);
+                for (int i = 0; i < rows.nameCount; i++) {
+                    String userName = rows.userNames[i];
+                    out.writeLong(rows.nameUserIds[i]);
+                    out.writeBoolean(userName != null);
+                    if (userName != null) {
+                        writeString(out, userName);
+                    }
+                }
+                out.flush();
+                out.writeInt((int) crc.getValue());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Отображает файл снимка в память и проверяет его заголовок и контрольную сумму.
+     *
+     * @param path Путь к файлу снимка.
+     * @return Снимок или пустое значение, если файла нет.
+     * @throws IOException Если файл не читается или поврежден.
+     */
+    static Optional<ReminderSnapshot> read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // отображение остается действительным после закрытия канала
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Optional.of(new ReminderSnapshot(buffer));
+        } catch (RuntimeException e) {
+            throw new IOException("Снимок напоминаний поврежден", e);
+        }
+    }
+
+    /**
+     * Напоминания и имена пользователей, накапливаемые для записи снимка, в параллельных массивах
+     * со словарем категорий.
+     */
+    static final class Rows {
+        private final List<String> categories = new ArrayList<>();
+        private long[] userIds;
+        private byte[] categoryIds;
+        private short[] minutes;
+        private int count;
+        private long[] nameUserIds = new long[16];
+        private String[] userNames = new String[16];
+        private int nameCount;
+
+        Rows(int expected) {
+            int capacity = Math.max(16, expected);
+            userIds = new long[capacity];
+            categoryIds = new byte[capacity];
+            minutes = new short[capacity];
+        }
+
+        void add(long userId, String category, int minuteOfDay) {
+            if (count == userIds.length) {
+                userIds = Arrays.copyOf(userIds, count * 2);
+                categoryIds = Arrays.copyOf(categoryIds, count * 2);
+                minutes = Arrays.copyOf(minutes, count * 2);
+            }
+            int id = categories.indexOf(category);
+            if (id < 0) {
+                id = categories.size();
+                categories.add(category);
+            }
+            userIds[count] = userId;
+            categoryIds[count] = (byte) id;
+            minutes[count] = (short) minuteOfDay;
+            count++;
+        }
+
+        void addName(long userId, String userName) {
+            if (nameCount == nameUserIds.length) {
+                nameUserIds = Arrays.copyOf(nameUserIds, nameCount * 2);
+                userNames = Arrays.copyOf(userNames, nameCount * 2);
+            }
+            nameUserIds[nameCount] = userId;
+            userNames[nameCount] = userName;
+            nameCount++;
+        }
+    }
+
+    /**
+     * Получатель имени пользователя из снимка.
+     */
+    @FunctionalInterface
+    interface NameConsumer {
+        /**
+         * Обрабатывает имя пользователя.
+         *
+         * @param userId   ID пользователя.
+         * @param userName Имя пользователя или {@code null}, если имени нет.
+         */
+        void accept(long userId, String userName);
+    }
+
+    long createdAtMillis() {
+        return createdAtMillis;
+    }
+
+    long horizon() {
+        return horizon;
+    }
+
+    /**
+     * Проверяет, что напоминания шарда полностью содержатся в снимке.
+     *
+     * @param shard         Номер шарда.
+     * @param currentShards Текущее общее число шардов или 0 без шардирования.
+     * @return {@code true}, если напоминания шарда можно взять из снимка.
+     */
+    boolean covers(int shard, int currentShards) {
+        if (shardCount == 0) {
+            return true;
+        }
+        return currentShards == shardCount && shards.get(shard);
+    }
+
+    /**
+     * Передает получателю все напоминания снимка.
+     *
+     * @param consumer Получатель напоминаний.
+     */
+    void forEachReminder(ReminderWheel.ScheduledConsumer consumer) {
+        ByteBuffer in = buffer.duplicate().position(remindersOffset);
+        for (int i = 0; i < reminderCount; i++) {
+            long userId = in.getLong();
+            String category = categories[in.get()];
+            consumer.accept(userId, category, in.getShort());
+        }
+    }
+
+    /**
+     * Передает получателю все имена пользователей снимка.
+     *
+     * @param consumer Получатель имен.
+     */
+    void forEachName(NameConsumer consumer) {
+        ByteBuffer in = buffer.duplicate().position(namesOffset);
+        for (int i = 0; i < nameCount; i++) {
+            long userId = in.getLong();
+            consumer.accept(userId, in.get() != 0 ? readString(in) : null);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,471 @@
+package org.example.sceduler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+/**
+ * Колесо напоминаний с корзинами по минутам суток.
+ * <p>
+ * Каждое напоминание (пользователь, категория) занимает один слот в параллельных примитивных массивах и
+ * входит в двусвязный список своей минуты, поэтому добавление, перенос и удаление выполняются за O(1).
+ * Поиск слота по ключу идет через хеш-индекс с открытой адресацией на массиве {@code int}.
+ * Категории хранятся как однобайтовые коды.
+ */
+public class ReminderWheel {
+    /**
+     * Число минут в сутках и, соответственно, корзин колеса.
+     */
+    public static final int MINUTES_PER_DAY = 1440;
+
+    private static final int NONE = -1;
+
+    private final int[] bucketHead = new int[MINUTES_PER_DAY];
+    private final int[] bucketSize = new int[MINUTES_PER_DAY];
+
+    private long[] userIds;
+    private byte[] categoryIds;
+    private short[] minutes;
+    private int[] next;
+    private int[] prev;
+    private int freeHead = NONE;
+    private int used;
+    private int size;
+
+    private int[] index;
+
+    private final Map<String, Byte> categoryCodes = new HashMap<>();
+    private String[] categoryNames = new String[8];
+
+    /**
+     * Получатель напоминаний, наступивших в данную минуту.
+     */
+    @FunctionalInterface
+    public interface ReminderConsumer {
+        /**
+         * Обрабатывает наступившее напоминание.
+         *
+         * @param userId   ID пользователя.
+         * @param category Категория напоминания.
+         */
+        void accept(long userId, String category);
+    }
+
+    /**
+     * Получатель всех запланированных напоминаний.
+     */
+    @FunctionalInterface
+    public interface ScheduledConsumer {
+        /**
+         * Обрабатывает запланированное напоминание.
+         *
+         * @param userId      ID пользователя.
+         * @param category    Категория напоминания.
+         * @param minuteOfDay Минута суток.
+         */
+        void accept(long userId, String category, int minuteOfDay);
+    }
+
+    /**
+     * Условие по ключу напоминания.
+     */
+    @FunctionalInterface
+    public interface KeyFilter {
+        /**
+         * Проверяет ключ напоминания.
+         *
+         * @param userId   ID пользователя.
+         * @param category Категория напоминания.
+         * @return {@code true}, если ключ удовлетворяет условию.
+         */
+        boolean test(long userId, String category);
+    }
+
+    /**
+     * Создает пустое колесо.
+     *
+     * @param initialCapacity Ожидаемое число напоминаний.
+     */
+    public ReminderWheel(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        userIds = new long[capacity];
+        categoryIds = new byte[capacity];
+        minutes = new short[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        index = new int[tableSizeFor(capacity * 2)];
+        Arrays.fill(bucketHead, NONE);
+    }
+
+    /**
+     * Добавляет напоминание или переносит существующее на другую минуту.
+     *
+     * @param userId      ID пользователя.
+     * @param category    Категория напоминания.
+     * @param minuteOfDay Минута суток от 0 до 1439.
+     * @return Предыдущая минута напоминания или -1, если напоминание новое.
+     */
+    public synchronized int put(long userId, String category, int minuteOfDay) {
+        if (minuteOfDay < 0 || minuteOfDay >= MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("minuteOfDay out of range: " + minuteOfDay);
+        }
+        byte categoryId = intern(category);
+        int slot = find(userId, categoryId);
+        if (slot != NONE) {
+            int previous = minutes[slot];
+            if (previous != minuteOfDay) {
+                unlink(slot);
+                link(slot, minuteOfDay);
+            }
+            return previous;
+        }
+        slot = allocate();
+        userIds[slot] = userId;
+        categoryIds[slot] = categoryId;
+        link(slot, minuteOfDay);
+        indexInsert(slot);
+        size++;
+        return NONE;
+    }
+
+    /**
+     * Добавляет или переносит пачку напоминаний за одно взятие блокировки, пропуская ключи,
+     * удовлетворяющие условию. Условие проверяется под блокировкой колеса.
+     *
+     * @param userIds      ID пользователей.
+     * @param categories   Категории напоминаний.
+     * @param minutesOfDay Минуты суток.
+     * @param count        Число элементов пачки.
+     * @param skip         Условие пропуска.
+     * @return Число добавленных или перенесенных напоминаний.
+     */
+    public synchronized int putAll(long[] userIds, String[] categories, int[] minutesOfDay, int count, KeyFilter skip) {
+        int applied = 0;
+        for (int i = 0; i < count; i++) {
+            if (!skip.test(userIds[i], categories[i])) {
+                put(userIds[i], categories[i], minutesOfDay[i]);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Удаляет напоминание.
+     *
+     * @param userId   ID пользователя.
+     * @param category Категория напоминания.
+     * @return {@code true}, если напоминание было запланировано.
+     */
+    public synchronized boolean remove(long userId, String category) {
+        Byte categoryId = categoryCodes.get(category);
+        if (categoryId == null) {
+            return false;
+        }
+        int slot = find(userId, categoryId);
+        if (slot == NONE) {
+            return false;
+        }
+        release(slot);
+        return true;
+    }
+
+    /**
+     * Удаляет пачку напоминаний за одно взятие блокировки, пропуская ключи, удовлетворяющие условию.
+     * Условие проверяется под блокировкой колеса.
+     *
+     * @param userIds    ID пользователей.
+     * @param categories Категории напоминаний.
+     * @param count      Число элементов пачки.
+     * @param skip       Условие пропуска.
+     * @return Число удаленных напоминаний.
+     */
+    public synchronized int removeAll(long[] userIds, String[] categories, int count, KeyFilter skip) {
+        int removed = 0;
+        for (int i = 0; i < count; i++) {
+            if (!skip.test(userIds[i], categories[i]) && remove(userIds[i], categories[i])) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Удаляет все напоминания пользователя.
+     *
+     * @param userId ID пользователя.
+     * @return Число удаленных напоминаний.
+     */
+    public synchronized int removeUser(long userId) {
+        int removed = 0;
+        for (int id = 0; id < categoryCodes.size(); id++) {
+            if (remove(userId, categoryNames[id])) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Удаляет все напоминания пользователей, удовлетворяющих условию. Выполняется за O(n).
+     *
+     * @param userFilter Условие по ID пользователя.
+     * @return Число удаленных напоминаний.
+     */
+    public synchronized int removeIf(LongPredicate userFilter) {
+        int removed = 0;
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            int slot = bucketHead[minute];
+            while (slot != NONE) {
+                int following = next[slot];
+                if (userFilter.test(userIds[slot])) {
+                    release(slot);
+                    removed++;
+                }
+                slot = following;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Удаляет все напоминания, ключи которых удовлетворяют условию. Выполняется за O(n).
+     *
+     * @param keyFilter Условие по ключу напоминания.
+     * @return Число удаленных напоминаний.
+     */
+    public synchronized int removeKeysIf(KeyFilter keyFilter) {
+        int removed = 0;
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            int slot = bucketHead[minute];
+            while (slot != NONE) {
+                int following = next[slot];
+                if (keyFilter.test(userIds[slot], categoryNames[categoryIds[slot]])) {
+                    release(slot);
+                    removed++;
+                }
+                slot = following;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Возвращает минуту суток, на которую запланировано напоминание.
+     *
+     * @param userId   ID пользователя.
+     * @param category Категория напоминания.
+     * @return Минута суток или -1, если напоминания нет.
+     */
+    public synchronized int minuteOf(long userId, String category) {
+        Byte categoryId = categoryCodes.get(category);
+        if (categoryId == null) {
+            return NONE;
+        }
+        int slot = find(userId, categoryId);
+        return slot == NONE ? NONE : minutes[slot];
+    }
+
+    /**
+     * Передает получателю все напоминания указанной минуты.
+     * Корзина копируется под блокировкой, а получатель вызывается уже без нее.
+     *
+     * @param minuteOfDay Минута суток.
+     * @param consumer    Получатель напоминаний.
+     * @return Число переданных напоминаний.
+     */
+    public int forEachDue(int minuteOfDay, ReminderConsumer consumer) {
+        long[] dueUsers;
+        byte[] dueCategories;
+        String[] names;
+        synchronized (this) {
+            int count = bucketSize[minuteOfDay];
+            dueUsers = new long[count];
+            dueCategories = new byte[count];
+            int i = 0;
+            for (int slot = bucketHead[minuteOfDay]; slot != NONE; slot = next[slot]) {
+                dueUsers[i] = userIds[slot];
+                dueCategories[i] = categoryIds[slot];
+                i++;
+            }
+            names = categoryNames;
+        }
+        for (int i = 0; i < dueUsers.length; i++) {
+            consumer.accept(dueUsers[i], names[dueCategories[i]]);
+        }
+        return dueUsers.length;
+    }
+
+    /**
+     * Возвращает число напоминаний в корзине минуты.
+     *
+     * @param minuteOfDay Минута суток.
+     * @return Размер корзины.
+     */
+    public synchronized int bucketSize(int minuteOfDay) {
+        return bucketSize[minuteOfDay];
+    }
+
+    /**
+     * Возвращает общее число запланированных напоминаний.
+     *
+     * @return Число напоминаний.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Оценивает объем памяти, занимаемый массивами колеса.
+     *
+     * @return Приблизительный размер в байтах.
+     */
+    public synchronized long estimatedMemoryBytes() {
+        long slots = userIds.length;
+        return slots * (Long.BYTES + Byte.BYTES + Short.BYTES + Integer.BYTES + Integer.BYTES)
+                + (long) index.length * Integer.BYTES
+                + (long) MINUTES_PER_DAY * Integer.BYTES * 2;
+    }
+
+    private byte intern(String category) {
+        Byte code = categoryCodes.get(category);
+        if (code != null) {
+            return code;
+        }
+        int id = categoryCodes.size();
+        if (id > Byte.MAX_VALUE) {
+            throw new IllegalStateException("Too many reminder categories");
+        }
+        if (id == categoryNames.length) {
+            categoryNames = Arrays.copyOf(categoryNames, categoryNames.length * 2);
+        }
+        categoryNames[id] = category;
+        categoryCodes.put(category, (byte) id);
+        return (byte) id;
+    }
+
+    private int allocate() {
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = next[slot];
+            return slot;
+        }
+        if (used == userIds.length) {
+            int capacity = userIds.length * 2;
+            userIds = Arrays.copyOf(userIds, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+            minutes = Arrays.copyOf(minutes, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+        }
+        return used++;
+    }
+
+    private void release(int slot) {
+        indexDelete(slot);
+        unlink(slot);
+        next[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    private void link(int slot, int minute) {
+        minutes[slot] = (short) minute;
+        int head = bucketHead[minute];
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        bucketHead[minute] = slot;
+        bucketSize[minute]++;
+    }
+
+    private void unlink(int slot) {
+        int minute = minutes[slot];
+        int before = prev[slot];
+        int after = next[slot];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            bucketHead[minute] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+        bucketSize[minute]--;
+    }
+
+    private int find(long userId, byte categoryId) {
+        int mask = index.length - 1;
+        int pos = hash(userId, categoryId) & mask;
+        int entry;
+        while ((entry = index[pos]) != 0) {
+            int slot = entry - 1;
+            if (userIds[slot] == userId && categoryIds[slot] == categoryId) {
+                return slot;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return NONE;
+    }
+
+    private void indexInsert(int slot) {
+        if ((size + 1) * 2 > index.length) {
+            rehash(index.length * 2);
+        }
+        int mask = index.length - 1;
+        int pos = hash(userIds[slot], categoryIds[slot]) & mask;
+        while (index[pos] != 0) {
+            pos = (pos + 1) & mask;
+        }
+        index[pos] = slot + 1;
+    }
+
+    private void indexDelete(int slot) {
+        int mask = index.length - 1;
+        int hole = hash(userIds[slot], categoryIds[slot]) & mask;
+        while (index[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        int pos = (hole + 1) & mask;
+        int entry;
+        while ((entry = index[pos]) != 0) {
+            int home = hash(userIds[entry - 1], categoryIds[entry - 1]) & mask;
+            if (((pos - home) & mask) >= ((pos - hole) & mask)) {
+                index[hole] = entry;
+                hole = pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        index[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = index;
+        index = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int pos = hash(userIds[entry - 1], categoryIds[entry - 1]) & mask;
+                while (index[pos] != 0) {
+                    pos = (pos + 1) & mask;
+                }
+                index[pos] = entry;
+            }
+        }
+    }
+
+    private static int hash(long userId, byte categoryId) {
+        long h = userId * 0x9E3779B97F4A7C15L + categoryId;
+        h ^= h >>> 32;
+        h *= 0xff51afd7ed558ccdL;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        return Math.max(16, n);
+    }
+}
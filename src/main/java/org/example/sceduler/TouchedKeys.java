@@ -0,0 +1,68 @@
+package org.example.sceduler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Ключи напоминаний, которые обработчики изменили, пока в колесо загружались напоминания.
+ * <p>
+ * Загрузка читает строки, которые могли устареть на минуты, поэтому запись загрузки не должна
+ * перетирать изменение обработчика. Обработчик отмечает ключ до изменения колеса, а загрузка проверяет
+ * отметку под блокировкой колеса ({@link ReminderWheel.KeyFilter}), так что устаревшая строка либо
+ * пропускается, либо записывается раньше изменения обработчика и перетирается им.
+ */
+final class TouchedKeys implements ReminderWheel.KeyFilter {
+    // категория, означающая все напоминания пользователя
+    private static final String ALL_CATEGORIES = "\u0000";
+
+    // пустое множество - у пользователя изменилось только имя
+    private final ConcurrentHashMap<Long, Set<String>> users = new ConcurrentHashMap<>();
+
+    /**
+     * Отмечает напоминание пользователя.
+     *
+     * @param userId   ID пользователя.
+     * @param category Категория напоминания.
+     */
+    void touch(long userId, String category) {
+        categories(userId).add(category);
+    }
+
+    /**
+     * Отмечает все напоминания пользователя.
+     *
+     * @param userId ID пользователя.
+     */
+    void touchUser(long userId) {
+        categories(userId).add(ALL_CATEGORIES);
+    }
+
+    /**
+     * Отмечает изменение имени пользователя: имя, прочитанное загрузкой, могло устареть.
+     *
+     * @param userId ID пользователя.
+     */
+    void touchName(long userId) {
+        categories(userId);
+    }
+
+    @Override
+    public boolean test(long userId, String category) {
+        Set<String> touched = users.get(userId);
+        return touched != null && (touched.contains(category) || touched.contains(ALL_CATEGORIES));
+    }
+
+    /**
+     * Передает получателю всех отмеченных пользователей.
+     *
+     * @param consumer Получатель ID пользователей.
+     */
+    void forEachUser(LongConsumer consumer) {
+        users.keySet().forEach(consumer::accept);
+    }
+
+    private Set<String> categories(long userId) {
+        return users.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet());
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.sceduler;
+
+import org.quartz.SchedulerConfigException;
+import org.quartz.spi.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Пул потоков Quartz, выполняющий каждую задачу в отдельном виртуальном потоке.
+ * <p>
+ * Задачи, ожидающие базу или Telegram, не занимают потоки платформы, поэтому в пиковые минуты они
+ * не выстраиваются в очередь за несколькими потоками стандартного пула и не пропускают запуски.
+ * Число одновременно выполняющихся задач ограничено свойством {@code org.quartz.threadPool.concurrency}.
+ * <p>
+ * Подключается свойством {@code org.quartz.threadPool.class}; Quartz создает пул конструктором
+ * без аргументов и передает свойства через сеттеры.
+ */
+public class VirtualThreadPool implements ThreadPool {
+    private static final Logger logger = Logger.getLogger(VirtualThreadPool.class.getName());
+
+    private int concurrency = 64;
+    private String instanceName = "quartz";
+    private Semaphore permits;
+    private ExecutorService executor;
+    private volatile boolean shutdown;
+
+    /**
+     * Создает пул. Вызывается Quartz.
+     */
+    public VirtualThreadPool() {
+        // параметры задаются сеттерами до initialize()
+    }
+
+    /**
+     * Устанавливает максимальное число одновременно выполняющихся задач.
+     *
+     * @param concurrency Максимальное число задач.
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public void initialize() throws SchedulerConfigException {
+        if (concurrency <= 0) {
+            throw new SchedulerConfigException("concurrency must be > 0: " + concurrency);
+        }
+        permits = new Semaphore(concurrency);
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(instanceName + "-job-", 0).factory());
+        logger.log(Level.INFO, "Пул задач Quartz на виртуальных потоках, одновременно задач: {0}", concurrency);
+    }
+
+    /**
+     * Запускает задачу, дожидаясь свободного места, если выполняется {@code concurrency} задач.
+     *
+     * @param runnable Задача.
+     * @return {@code false}, если пул остановлен или ожидание прервано.
+     */
+    @Override
+    public boolean runInThread(Runnable runnable) {
+        if (runnable == null || shutdown) {
+            return false;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return false;
+        }
+    }
+
+    /**
+     * Дожидается, пока освободится место хотя бы для одной задачи.
+     *
+     * @return Число задач, которые можно запустить сейчас, или 0, если пул остановлен.
+     */
+    @Override
+    public int blockForAvailableThreads() {
+        if (shutdown) {
+            return 0;
+        }
+        try {
+            permits.acquire();
+            permits.release();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        return Math.max(1, permits.availablePermits());
+    }
+
+    @Override
+    public void shutdown(boolean waitForJobsToComplete) {
+        shutdown = true;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        if (waitForJobsToComplete) {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public int getPoolSize() {
+        return concurrency;
+    }
+
+    @Override
+    public void setInstanceId(String schedInstId) {
+        // имя потоков строится по имени планировщика
+    }
+
+    @Override
+    public void setInstanceName(String schedName) {
+        this.instanceName = schedName;
+    }
+}
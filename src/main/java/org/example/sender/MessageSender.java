@@ -0,0 +1,383 @@
+package org.example.sender;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+import org.example.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Асинхронный конвейер исходящих запросов к Telegram Bot API.
+ * <p>
+ * Запросы ставятся в очередь своего чата и отправляются одним потоком-диспетчером с соблюдением
+ * общего лимита ({@code globalRatePerSecond}) и лимита на чат ({@code chatRatePerSecond}).
+ * Запросы одного чата отправляются строго по очереди: следующий уходит только после ответа на предыдущий.
+ * Ответ 429 приостанавливает чат на {@code retry_after} секунд и повторяет запрос.
+ * Общее число ожидающих запросов ограничено {@code maxQueued}, сверх него запросы отклоняются.
+ */
+public class MessageSender implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(MessageSender.class.getName());
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final TelegramBot bot;
+    private final int maxQueued;
+    private final int maxRetries;
+    private final double chatRatePerSecond;
+    private final double chatBurst;
+    private final TokenBucket global;
+
+    private final ConcurrentHashMap<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatQueue> ready = new DelayQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder rateLimitedCount = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * Создает конвейер и запускает поток-диспетчер.
+     *
+     * @param bot                 Экземпляр TelegramBot.
+     * @param globalRatePerSecond Общий лимит запросов в секунду.
+     * @param chatRatePerSecond   Лимит запросов в секунду для одного чата.
+     * @param chatBurst           Допустимая пачка запросов в один чат.
+     * @param maxQueued           Максимальное число ожидающих отправки запросов.
+     * @param maxRetries          Максимальное число повторов после 429 или сетевой ошибки.
+     */
+    public MessageSender(TelegramBot bot, double globalRatePerSecond, double chatRatePerSecond, double chatBurst,
+                         int maxQueued, int maxRetries) {
+        this.bot = bot;
+        this.maxQueued = maxQueued;
+        this.maxRetries = maxRetries;
+        this.chatRatePerSecond = chatRatePerSecond;
+        this.chatBurst = chatBurst;
+        this.global = new TokenBucket(globalRatePerSecond, globalRatePerSecond, System.nanoTime());
+        this.worker = new Thread(this::runDispatcher, "telegram-sender");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Ставит запрос в очередь отправки.
+     *
+     * @param chatId  ID чата, которому адресован запрос.
+     * @param request Запрос к Bot API.
+     * @param <T>     Тип запроса.
+     * @param <R>     Тип ответа.
+     * @return Future с ответом Telegram. Завершается исключением, если очередь переполнена
+     * или запрос не удалось отправить после всех повторов.
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> send(long chatId, T request) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("Sender is closed"));
+            return future;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            droppedCount.increment();
+            logger.log(Level.WARNING, "Очередь отправки переполнена, запрос для chatId={0} отброшен", chatId);
+            future.completeExceptionally(new RejectedExecutionException("Send queue is full"));
+            return future;
+        }
+        Task<T, R> task = new Task<>(request, future);
+        chats.compute(chatId, (key, queue) -> {
+            ChatQueue target = queue != null ? queue : new ChatQueue(key, System.nanoTime());
+            target.enqueue(task);
+            return target;
+        });
+        return future;
+    }
+
+    /**
+     * Проверяет, принимает ли конвейер новые запросы.
+     *
+     * @return {@code false} после {@link #close()}.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Возвращает число запросов, ожидающих отправки.
+     *
+     * @return Глубина очереди.
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Возвращает число отправленных запросов, на которые еще не пришел ответ.
+     *
+     * @return Число запросов в полете.
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * Возвращает число чатов, для которых хранится состояние очереди.
+     *
+     * @return Число чатов.
+     */
+    public int getActiveChatCount() {
+        return chats.size();
+    }
+
+    /**
+     * Возвращает число успешно выполненных запросов.
+     *
+     * @return Число успешных запросов.
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * Возвращает число запросов, завершившихся ошибкой.
+     *
+     * @return Число неудачных запросов.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Возвращает число запросов, отклоненных из-за переполнения очереди.
+     *
+     * @return Число отброшенных запросов.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Возвращает число ответов 429 Too Many Requests.
+     *
+     * @return Число ответов 429.
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.sum();
+    }
+
+    /**
+     * Прекращает прием запросов и ждет отправки уже принятых.
+     */
+    @Override
+    public void close() {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((queued.get() > 0 || inFlight.get() > 0) && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        worker.interrupt();
+    }
+
+    private void runDispatcher() {
+        long lastSweep = System.nanoTime();
+        while (running || queued.get() > 0) {
+            try {
+                ChatQueue queue = ready.poll(1, TimeUnit.SECONDS);
+                long now = System.nanoTime();
+                if (now - lastSweep > SWEEP_INTERVAL_NANOS) {
+                    sweepIdleChats(now);
+                    lastSweep = now;
+                }
+                if (queue == null) {
+                    continue;
+                }
+                Task<?, ?> task = queue.takeForSend(now);
+                if (task == null) {
+                    continue;
+                }
+                long wait = global.reserve(now);
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                queued.decrementAndGet();
+                inFlight.incrementAndGet();
+                task.execute(queue);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Ошибка диспетчера отправки", e);
+            }
+        }
+    }
+
+    private void sweepIdleChats(long now) {
+        for (Long chatId : chats.keySet()) {
+            chats.computeIfPresent(chatId, (key, queue) -> queue.isIdle(now) ? null : queue);
+        }
+    }
+
+    /**
+     * Очередь запросов одного чата с собственной маркерной корзиной.
+     */
+    private final class ChatQueue implements Delayed {
+        private final long chatId;
+        private final ArrayDeque<Task<?, ?>> tasks = new ArrayDeque<>();
+        private final TokenBucket bucket;
+        private long pausedUntil;
+        private boolean inFlight;
+        private boolean inReady;
+        private volatile long readyAt;
+
+        private ChatQueue(long chatId, long now) {
+            this.chatId = chatId;
+            this.bucket = new TokenBucket(chatRatePerSecond, chatBurst, now);
+            this.pausedUntil = now;
+        }
+
+        synchronized void enqueue(Task<?, ?> task) {
+            tasks.add(task);
+            if (!inFlight && !inReady) {
+                markReady(System.nanoTime());
+            }
+        }
+
+        synchronized Task<?, ?> takeForSend(long now) {
+            inReady = false;
+            if (tasks.isEmpty()) {
+                return null;
+            }
+            if (pausedUntil - now > 0 || bucket.delayUntilAvailable(now) > 0) {
+                markReady(now);
+                return null;
+            }
+            bucket.reserve(now);
+            inFlight = true;
+            return tasks.poll();
+        }
+
+        synchronized void complete(Task<?, ?> task, long retryAfterNanos) {
+            inFlight = false;
+            long now = System.nanoTime();
+            if (retryAfterNanos >= 0) {
+                tasks.addFirst(task);
+                queued.incrementAndGet();
+                pausedUntil = now + retryAfterNanos;
+            }
+            if (!tasks.isEmpty()) {
+                markReady(now);
+            }
+        }
+
+        synchronized boolean isIdle(long now) {
+            return tasks.isEmpty() && !inFlight && !inReady && pausedUntil - now <= 0 && bucket.isFull(now);
+        }
+
+        private void markReady(long now) {
+            long delay = Math.max(bucket.delayUntilAvailable(now), pausedUntil - now);
+            readyAt = now + Math.max(0, delay);
+            inReady = true;
+            ready.add(this);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((ChatQueue) other).readyAt);
+        }
+    }
+
+    /**
+     * Запрос в очереди вместе с Future его результата.
+     */
+    private final class Task<T extends BaseRequest<T, R>, R extends BaseResponse> {
+        private final T request;
+        private final CompletableFuture<R> future;
+        private int attempts;
+        private long startedAt;
+
+        private Task(T request, CompletableFuture<R> future) {
+            this.request = request;
+            this.future = future;
+        }
+
+        void execute(ChatQueue queue) {
+            attempts++;
+            startedAt = System.nanoTime();
+            try {
+                bot.execute(request, new Callback<T, R>() {
+                    @Override
+                    public void onResponse(T sentRequest, R response) {
+                        handleResponse(queue, response);
+                    }
+
+                    @Override
+                    public void onFailure(T sentRequest, IOException e) {
+                        handleFailure(queue, e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                failedCount.increment();
+                queue.complete(this, -1);
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void handleResponse(ChatQueue queue, R response) {
+            inFlight.decrementAndGet();
+            Metrics.TELEGRAM_REQUESTS.labels(request.getMethod()).observeSince(startedAt);
+            Metrics.TELEGRAM_RESPONSES.labels(response.isOk() ? "200" : Metrics.responseCode(response.errorCode())).inc();
+            if (!response.isOk() && response.errorCode() == TOO_MANY_REQUESTS && attempts <= maxRetries) {
+                rateLimitedCount.increment();
+                Integer retryAfter = response.parameters() != null ? response.parameters().retryAfter() : null;
+                long pauseSeconds = retryAfter != null ? retryAfter : 1;
+                logger.log(Level.WARNING, "Telegram вернул 429 для chatId={0}, повтор через {1} с",
+                        new Object[]{queue.chatId, pauseSeconds});
+                queue.complete(this, TimeUnit.SECONDS.toNanos(pauseSeconds));
+                return;
+            }
+            if (response.isOk()) {
+                sentCount.increment();
+            } else {
+                failedCount.increment();
+                logger.log(Level.WARNING, "Telegram отклонил запрос для chatId={0}: {1} {2}",
+                        new Object[]{queue.chatId, response.errorCode(), response.description()});
+            }
+            queue.complete(this, -1);
+            future.complete(response);
+        }
+
+        private void handleFailure(ChatQueue queue, IOException e) {
+            inFlight.decrementAndGet();
+            Metrics.TELEGRAM_REQUESTS.labels(request.getMethod()).observeSince(startedAt);
+            Metrics.TELEGRAM_RESPONSES.labels("io_error").inc();
+            if (attempts <= maxRetries) {
+                queue.complete(this, TimeUnit.SECONDS.toNanos(attempts));
+                return;
+            }
+            failedCount.increment();
+            logger.log(Level.SEVERE, e, () -> "Не удалось отправить запрос для chatId=" + queue.chatId);
+            queue.complete(this, -1);
+            future.completeExceptionally(e);
+        }
+    }
+}
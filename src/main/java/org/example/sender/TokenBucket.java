@@ -0,0 +1,70 @@
+package org.example.sender;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маркерная корзина: не более {@code ratePerSecond} операций в секунду в среднем
+ * и не более {@code burst} операций подряд.
+ */
+final class TokenBucket {
+    private final double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Создает полную корзину.
+     *
+     * @param ratePerSecond Скорость пополнения, маркеров в секунду.
+     * @param burst         Емкость корзины.
+     * @param now           Текущее время в наносекундах.
+     */
+    TokenBucket(double ratePerSecond, double burst, long now) {
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Забирает один маркер, допуская уход в долг.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return Сколько наносекунд нужно подождать, прежде чем выполнить операцию.
+     */
+    synchronized long reserve(long now) {
+        refill(now);
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / ratePerNano);
+    }
+
+    /**
+     * Возвращает время ожидания до появления маркера, не забирая его.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return Время ожидания в наносекундах.
+     */
+    synchronized long delayUntilAvailable(long now) {
+        refill(now);
+        return tokens >= 1 ? 0 : (long) ((1 - tokens) / ratePerNano);
+    }
+
+    /**
+     * Проверяет, что корзина полностью пополнена, то есть ее состояние можно забыть.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return {@code true}, если корзина полна.
+     */
+    synchronized boolean isFull(long now) {
+        refill(now);
+        return tokens >= burst;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * ratePerNano);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.session;
+
+/**
+ * Состояние диалога с пользователем.
+ */
+public enum ChatState {
+    /**
+     * Бот не ожидает от пользователя специального ввода.
+     */
+    IDLE,
+    /**
+     * Бот ожидает текст отзыва.
+     */
+    AWAITING_FEEDBACK,
+    /**
+     * Бот ожидает имя пользователя.
+     */
+    AWAITING_NAME;
+
+    private static final ChatState[] VALUES = values();
+
+    /**
+     * Возвращает состояние по его компактному коду.
+     *
+     * @param code Код состояния, полученный из {@link #code()}.
+     * @return Состояние диалога.
+     */
+    static ChatState fromCode(byte code) {
+        return VALUES[code];
+    }
+
+    /**
+     * Возвращает компактный код состояния.
+     *
+     * @return Код состояния.
+     */
+    byte code() {
+        return (byte) ordinal();
+    }
+}
@@ -0,0 +1,326 @@
+package org.example.session;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Потокобезопасное хранилище состояний диалогов, индексированное ID чата.
+ * <p>
+ * Хранилище разбито на независимые сегменты с собственными блокировками. Каждый сегмент - хеш-таблица
+ * с открытой адресацией на примитивных массивах ({@code long} ключи без упаковки в {@link Long}).
+ * Сессии, к которым не обращались дольше TTL, удаляются фоновой задачей, запускаемой {@link #start()},
+ * а сессии в состоянии {@link ChatState#IDLE} без выбранной категории не хранятся вовсе. Сегмент,
+ * опустевший после очистки, сжимается, чтобы пик нагрузки не удерживал память навсегда.
+ */
+public class SessionStore implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(SessionStore.class.getName());
+    private static final int SEGMENT_COUNT = 64;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final long ttlMillis;
+    private final long sweepIntervalMs;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Создает хранилище сессий.
+     *
+     * @param ttlMillis       Время жизни неактивной сессии в миллисекундах.
+     * @param sweepIntervalMs Период фоновой очистки устаревших сессий в миллисекундах.
+     */
+    public SessionStore(long ttlMillis, long sweepIntervalMs) {
+        this.ttlMillis = ttlMillis;
+        this.sweepIntervalMs = sweepIntervalMs;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запускает фоновую очистку устаревших сессий.
+     */
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Возвращает состояние диалога.
+     *
+     * @param chatId ID чата.
+     * @return Текущее состояние, {@link ChatState#IDLE} если сессии нет.
+     */
+    public ChatState getState(long chatId) {
+        return segmentFor(chatId).getState(chatId, System.currentTimeMillis());
+    }
+
+    /**
+     * Устанавливает состояние диалога.
+     *
+     * @param chatId ID чата.
+     * @param state  Новое состояние.
+     */
+    public void setState(long chatId, ChatState state) {
+        segmentFor(chatId).setState(chatId, state, System.currentTimeMillis());
+    }
+
+    /**
+     * Атомарно сбрасывает состояние диалога в {@link ChatState#IDLE}.
+     *
+     * @param chatId ID чата.
+     * @return Состояние до сброса.
+     */
+    public ChatState resetState(long chatId) {
+        return segmentFor(chatId).resetState(chatId, System.currentTimeMillis());
+    }
+
+    /**
+     * Возвращает категорию, для которой пользователь сейчас вводит время.
+     *
+     * @param chatId ID чата.
+     * @return Ключ категории или {@code null}, если категория не выбрана.
+     */
+    public String getPendingCategory(long chatId) {
+        return segmentFor(chatId).getPendingCategory(chatId, System.currentTimeMillis());
+    }
+
+    /**
+     * Запоминает категорию, для которой пользователь будет вводить время.
+     *
+     * @param chatId   ID чата.
+     * @param category Ключ категории или {@code null}, чтобы сбросить выбор.
+     */
+    public void setPendingCategory(long chatId, String category) {
+        segmentFor(chatId).setPendingCategory(chatId, category, System.currentTimeMillis());
+    }
+
+    /**
+     * Возвращает число хранимых сессий.
+     *
+     * @return Число сессий.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Удаляет сессии, к которым не обращались дольше TTL.
+     *
+     * @return Число удаленных сессий.
+     */
+    public int sweep() {
+        long expireBefore = System.currentTimeMillis() - ttlMillis;
+        int removed = 0;
+        for (Segment segment : segments) {
+            removed += segment.sweep(expireBefore);
+        }
+        if (removed > 0) {
+            logger.log(Level.FINE, "Удалено устаревших сессий: {0}", removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Останавливает фоновую очистку.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private Segment segmentFor(long chatId) {
+        return segments[(int) (mix(chatId) >>> 58)];
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * Сегмент хранилища: хеш-таблица с линейным пробированием и удалением обратным сдвигом.
+     * Слот свободен, если {@code flags[i] == 0}, иначе в нем хранится код состояния плюс один.
+     */
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private byte[] flags = new byte[INITIAL_CAPACITY];
+        private String[] categories = new String[INITIAL_CAPACITY];
+        private long[] touched = new long[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized ChatState getState(long chatId, long now) {
+            int slot = find(chatId);
+            if (slot < 0) {
+                return ChatState.IDLE;
+            }
+            touched[slot] = now;
+            return ChatState.fromCode((byte) (flags[slot] - 1));
+        }
+
+        synchronized void setState(long chatId, ChatState state, long now) {
+            int slot = find(chatId);
+            if (slot < 0) {
+                if (state != ChatState.IDLE) {
+                    insert(chatId, state, null, now);
+                }
+                return;
+            }
+            flags[slot] = (byte) (state.code() + 1);
+            touched[slot] = now;
+            removeIfEmpty(slot);
+        }
+
+        synchronized ChatState resetState(long chatId, long now) {
+            int slot = find(chatId);
+            if (slot < 0) {
+                return ChatState.IDLE;
+            }
+            ChatState previous = ChatState.fromCode((byte) (flags[slot] - 1));
+            flags[slot] = (byte) (ChatState.IDLE.code() + 1);
+            touched[slot] = now;
+            removeIfEmpty(slot);
+            return previous;
+        }
+
+        synchronized String getPendingCategory(long chatId, long now) {
+            int slot = find(chatId);
+            if (slot < 0) {
+                return null;
+            }
+            touched[slot] = now;
+            return categories[slot];
+        }
+
+        synchronized void setPendingCategory(long chatId, String category, long now) {
+            int slot = find(chatId);
+            if (slot < 0) {
+                if (category != null) {
+                    insert(chatId, ChatState.IDLE, category, now);
+                }
+                return;
+            }
+            categories[slot] = category;
+            touched[slot] = now;
+            removeIfEmpty(slot);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int sweep(long expireBefore) {
+            int removed = 0;
+            int slot = 0;
+            while (slot < keys.length) {
+                if (flags[slot] != 0 && touched[slot] < expireBefore) {
+                    // после обратного сдвига в текущий слот может переехать другой элемент - проверяем его снова
+                    delete(slot);
+                    removed++;
+                } else {
+                    slot++;
+                }
+            }
+            if (keys.length > INITIAL_CAPACITY && size * 8 < keys.length) {
+                // после сжатия таблица заполнена не больше чем на четверть и может расти без немедленного resize
+                int capacity = INITIAL_CAPACITY;
+                while (capacity < size * 4) {
+                    capacity <<= 1;
+                }
+                resize(capacity);
+            }
+            return removed;
+        }
+
+        private int find(long chatId) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(chatId) & mask;
+            while (flags[slot] != 0) {
+                if (keys[slot] == chatId) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(long chatId, ChatState state, String category, long now) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = (int) mix(chatId) & mask;
+            while (flags[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = chatId;
+            flags[slot] = (byte) (state.code() + 1);
+            categories[slot] = category;
+            touched[slot] = now;
+            size++;
+        }
+
+        private void removeIfEmpty(int slot) {
+            if (flags[slot] == ChatState.IDLE.code() + 1 && categories[slot] == null) {
+                delete(slot);
+            }
+        }
+
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (flags[next] != 0) {
+                int home = (int) mix(keys[next]) & mask;
+                // элемент можно сдвинуть в дыру, если его исходная позиция не лежит между дырой и ним
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    flags[hole] = flags[next];
+                    categories[hole] = categories[next];
+                    touched[hole] = touched[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            flags[hole] = 0;
+            categories[hole] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            byte[] oldFlags = flags;
+            String[] oldCategories = categories;
+            long[] oldTouched = touched;
+            keys = new long[capacity];
+            flags = new byte[capacity];
+            categories = new String[capacity];
+            touched = new long[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldFlags[i] != 0) {
+                    int slot = (int) mix(oldKeys[i]) & mask;
+                    while (flags[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    flags[slot] = oldFlags[i];
+                    categories[slot] = oldCategories[i];
+                    touched[slot] = oldTouched[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package org.example.shard;
+
+import org.example.database.DatabaseConnection;
+import org.example.repository.UserRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Распределение напоминаний между экземплярами бота.
+ * <p>
+ * Пользователи разбиты на {@code shardCount} шардов по Телеграм ID. Экземпляр владеет шардом, пока держит
+ * его аренду в таблице {@code reminder_shard_leases}, и продлевает аренды каждые {@code heartbeatMs}.
+ * Каждый экземпляр стремится владеть равной долей шардов от числа живых экземпляров, поэтому при появлении
+ * нового экземпляра лишние шарды освобождаются, а аренды упавшего экземпляра истекают через
+ * {@code leaseTtlMs} и разбираются остальными.
+ * <p>
+ * Изменения напоминаний пользователя чужого шарда передаются владельцу через {@code NOTIFY reminder_changes}.
+ */
+public class ShardManager implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(ShardManager.class.getName());
+    private static final String CHANGES_CHANNEL = "reminder_changes";
+
+    private final String nodeId;
+    private final int shardCount;
+    private final long leaseTtlMs;
+    private final long heartbeatMs;
+    private final UserRepository repository;
+    private final ScheduledExecutorService heartbeat;
+    private volatile BitSet owned = new BitSet();
+    private volatile long leaseValidUntil = System.nanoTime();
+    private volatile boolean running;
+    private Listener listener;
+    private Thread changeListener;
+
+    /**
+     * Получатель событий изменения набора шардов.
+     */
+    public interface Listener {
+        /**
+         * Вызывается, когда экземпляр получил шарды.
+         *
+         * @param shards Номера полученных шардов.
+         */
+        void onAssigned(int[] shards);
+
+        /**
+         * Вызывается, когда экземпляр потерял шарды.
+         *
+         * @param shards Номера потерянных шардов.
+         */
+        void onRevoked(int[] shards);
+
+        /**
+         * Вызывается, когда другой экземпляр изменил данные пользователя из шарда этого экземпляра.
+         *
+         * @param tgId Телеграм ID пользователя.
+         */
+        void onUserChanged(long tgId);
+    }
+
+    /**
+     * Создает менеджер шардов.
+     *
+     * @param nodeId      Уникальный идентификатор экземпляра; {@code null} - имя хоста.
+     * @param shardCount  Общее число шардов.
+     * @param leaseTtlMs  Время жизни аренды шарда.
+     * @param heartbeatMs Период продления аренд.
+     * @param repository  Репозиторий, через который отправляются уведомления об изменениях.
+     */
+    public ShardManager(String nodeId, int shardCount, long leaseTtlMs, long heartbeatMs, UserRepository repository) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        this.nodeId = nodeId != null && !nodeId.isBlank() ? nodeId : defaultNodeId();
+        this.shardCount = shardCount;
+        this.leaseTtlMs = leaseTtlMs;
+        this.heartbeatMs = heartbeatMs;
+        this.repository = repository;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "shard-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Возвращает номер шарда пользователя.
+     *
+     * @param tgId       Телеграм ID пользователя.
+     * @param shardCount Общее число шардов.
+     * @return Номер шарда от 0 до {@code shardCount - 1}.
+     */
+    public static int shardOf(long tgId, int shardCount) {
+        return (int) Math.floorMod(tgId, (long) shardCount);
+    }
+
+    /**
+     * Захватывает первые шарды и запускает продление аренд и прослушивание изменений.
+     * Первое распределение выполняется синхронно, поэтому после возврата слушатель уже получил свои шарды.
+     *
+     * @param listener Получатель событий.
+     */
+    public void start(Listener listener) {
+        this.listener = listener;
+        this.running = true;
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            ensureLeases(connection);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось подготовить аренды шардов", e);
+        }
+        heartbeat();
+        heartbeat.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        changeListener = new Thread(this::listenForChanges, "shard-change-listener");
+        changeListener.setDaemon(true);
+        changeListener.start();
+        logger.log(Level.INFO, "Экземпляр {0} запущен, шардов: {1}, получено: {2}",
+                new Object[]{nodeId, shardCount, owned.cardinality()});
+    }
+
+    /**
+     * Проверяет, отвечает ли этот экземпляр за напоминания пользователя.
+     *
+     * @param tgId Телеграм ID пользователя.
+     * @return {@code true}, если шард пользователя принадлежит экземпляру и аренда не истекла.
+     */
+    public boolean ownsUser(long tgId) {
+        return System.nanoTime() - leaseValidUntil < 0 && owned.get(shardOf(tgId, shardCount));
+    }
+
+    /**
+     * Возвращает общее число шардов.
+     *
+     * @return Число шардов.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Возвращает число шардов, которыми владеет экземпляр.
+     *
+     * @return Число собственных шардов.
+     */
+    public int getOwnedShardCount() {
+        return owned.cardinality();
+    }
+
+    /**
+     * Возвращает идентификатор экземпляра.
+     *
+     * @return Идентификатор экземпляра.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Сообщает владельцу шарда, что напоминания или имя пользователя изменились.
+     * Уведомление отправляется на соединении текущей единицы работы и внутри транзакции
+     * доставляется только после ее фиксации.
+     *
+     * @param tgId Телеграм ID пользователя.
+     */
+    public void publishUserChange(long tgId) {
+        repository.notifyUserChange(CHANGES_CHANNEL, tgId);
+    }
+
+    /**
+     * Освобождает все аренды и останавливает фоновые задачи.
+     */
+    @Override
+    public void close() {
+        running = false;
+        heartbeat.shutdownNow();
+        if (changeListener != null) {
+            changeListener.interrupt();
+        }
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE reminder_shard_leases SET owner = NULL, expires_at = now() WHERE owner = ?")) {
+                statement.setString(1, nodeId);
+                statement.executeUpdate();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM reminder_shard_nodes WHERE node_id = ?")) {
+                statement.setString(1, nodeId);
+                statement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Не удалось освободить аренды шардов", e);
+        }
+        owned = new BitSet();
+    }
+
+    // таблицы создаются миграцией V3, здесь только заводятся строки аренд под настроенное число шардов
+    private void ensureLeases(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO reminder_shard_leases (shard_id) SELECT g FROM generate_series(0, ? - 1) g "
+                        + "ON CONFLICT (shard_id) DO NOTHING")) {
+            statement.setInt(1, shardCount);
+            statement.executeUpdate();
+        }
+    }
+
+    private void heartbeat() {
+        if (!running) {
+            return;
+        }
+        long started = System.nanoTime();
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            touchNode(connection);
+            BitSet current = renew(connection);
+            int nodes = liveNodes(connection);
+            int target = (shardCount + nodes - 1) / nodes;
+            int surplus = current.cardinality() - target;
+            if (surplus > 0) {
+                BitSet released = new BitSet();
+                for (int shard = current.length() - 1; shard >= 0 && surplus > 0; shard = current.previousSetBit(shard - 1)) {
+                    released.set(shard);
+                    surplus--;
+                }
+                current.andNot(released);
+                // сначала перестаем обслуживать шарды локально, затем отдаем аренды
+                apply(current);
+                release(connection, released);
+            } else if (surplus < 0) {
+                current.or(claim(connection, -surplus));
+            }
+            leaseValidUntil = started + TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+            apply(current);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка продления аренд шардов", e);
+            if (System.nanoTime() - leaseValidUntil >= 0 && !owned.isEmpty()) {
+                logger.log(Level.WARNING, "Аренды шардов истекли, напоминания этого экземпляра приостановлены");
+                apply(new BitSet());
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Ошибка обработки изменения шардов", e);
+        }
+    }
+
+    private void touchNode(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO reminder_shard_nodes (node_id, heartbeat_at) VALUES (?, now()) "
+                        + "ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = now()")) {
+            statement.setString(1, nodeId);
+            statement.executeUpdate();
+        }
+    }
+
+    private int liveNodes(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT count(*) FROM reminder_shard_nodes WHERE heartbeat_at > now() - ? * interval '1 millisecond'")) {
+            statement.setLong(1, leaseTtlMs);
+            ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() ? Math.max(1, resultSet.getInt(1)) : 1;
+        }
+    }
+
+    private BitSet renew(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE reminder_shard_leases SET expires_at = now() + ? * interval '1 millisecond' "
+                        + "WHERE owner = ? AND shard_id < ? RETURNING shard_id")) {
+            statement.setLong(1, leaseTtlMs);
+            statement.setString(2, nodeId);
+            statement.setInt(3, shardCount);
+            return readShards(statement.executeQuery());
+        }
+    }
+
+    private BitSet claim(Connection connection, int limit) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE reminder_shard_leases SET owner = ?, expires_at = now() + ? * interval '1 millisecond' "
+                        + "WHERE shard_id IN (SELECT shard_id FROM reminder_shard_leases "
+                        + "WHERE shard_id < ? AND (owner IS NULL OR expires_at < now()) "
+                        + "ORDER BY shard_id LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING shard_id")) {
+            statement.setString(1, nodeId);
+            statement.setLong(2, leaseTtlMs);
+            statement.setInt(3, shardCount);
+            statement.setInt(4, limit);
+            return readShards(statement.executeQuery());
+        }
+    }
+
+    private void release(Connection connection, BitSet shards) throws SQLException {
+        Array array = connection.createArrayOf("integer", shards.stream().boxed().toArray(Integer[]::new));
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE reminder_shard_leases SET owner = NULL, expires_at = now() WHERE owner = ? AND shard_id = ANY (?)")) {
+            statement.setString(1, nodeId);
+            statement.setArray(2, array);
+            statement.executeUpdate();
+        }
+    }
+
+    private static BitSet readShards(ResultSet resultSet) throws SQLException {
+        BitSet shards = new BitSet();
+        while (resultSet.next()) {
+            shards.set(resultSet.getInt(1));
+        }
+        return shards;
+    }
+
+    private synchronized void apply(BitSet current) {
+        BitSet previous = owned;
+        BitSet revoked = (BitSet) previous.clone();
+        revoked.andNot(current);
+        BitSet assigned = (BitSet) current.clone();
+        assigned.andNot(previous);
+        owned = (BitSet) current.clone();
+        if (!revoked.isEmpty()) {
+            logger.log(Level.INFO, "Экземпляр {0} отдал шарды {1}", new Object[]{nodeId, revoked});
+            listener.onRevoked(revoked.stream().toArray());
+        }
+        if (!assigned.isEmpty()) {
+            logger.log(Level.INFO, "Экземпляр {0} получил шарды {1}", new Object[]{nodeId, assigned});
+            listener.onAssigned(assigned.stream().toArray());
+        }
+    }
+
+    private void listenForChanges() {
+        while (running) {
+            try (Connection connection = DatabaseConnection.openDedicatedConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANGES_CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) heartbeatMs);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatchChange(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.log(Level.SEVERE, "Ошибка прослушивания изменений, повторное подключение", e);
+                try {
+                    Thread.sleep(heartbeatMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatchChange(String payload) {
+        try {
+            long tgId = Long.parseLong(payload);
+            if (ownsUser(tgId)) {
+                listener.onUserChanged(tgId);
+            }
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "Некорректное уведомление об изменении: {0}", payload);
+        }
+    }
+
+    private static String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "node-" + ProcessHandle.current().pid();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.stats;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Накопленная статистика пользователя по одной привычке.
+ * <p>
+ * Маски хранят последние 64 дня, бит {@code i} соответствует дню {@code lastDay - i}.
+ * Доля выполнения за окно считается по дням, в которые была хоть одна отметка.
+ *
+ * @param category       Категория привычки.
+ * @param lastDay        День последней отметки или {@code null}, если отметок в журнале еще нет.
+ * @param completedMask  Дни с отметкой "выполнено".
+ * @param seenMask       Дни с любой отметкой.
+ * @param totalCompleted Всего отметок "выполнено".
+ * @param totalMissed    Всего отметок "пропущено".
+ * @param currentStreak  Выполнения подряд с последнего пропуска.
+ * @param longestStreak  Лучшая серия выполнений.
+ */
+public record UserStats(String category, LocalDate lastDay, long completedMask, long seenMask,
+                        int totalCompleted, int totalMissed, int currentStreak, int longestStreak) {
+    /**
+     * Длина окна масок в днях.
+     */
+    public static final int WINDOW_DAYS = 64;
+
+    /**
+     * Возвращает долю дней с выполнением среди дней с отметками за последние {@code days} дней.
+     *
+     * @param days  Длина окна от 1 до {@link #WINDOW_DAYS}, включая сегодняшний день.
+     * @param today Текущий день.
+     * @return Доля от 0 до 1 или -1, если в окне нет отметок.
+     */
+    public double completionRate(int days, LocalDate today) {
+        long window = days >= WINDOW_DAYS ? -1L : (1L << days) - 1;
+        int seen = Long.bitCount(shiftTo(seenMask, today) & window);
+        if (seen == 0) {
+            return -1;
+        }
+        return (double) Long.bitCount(shiftTo(completedMask, today) & window) / seen;
+    }
+
+    private long shiftTo(long mask, LocalDate today) {
+        if (lastDay == null) {
+            return 0;
+        }
+        long shift = ChronoUnit.DAYS.between(lastDay, today);
+        if (shift >= WINDOW_DAYS) {
+            return 0;
+        }
+        return shift <= 0 ? mask : mask << shift;
+    }
+}
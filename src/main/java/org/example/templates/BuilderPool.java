@@ -0,0 +1,46 @@
+package org.example.templates;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Небольшой пул буферов для отрисовки шаблонов.
+ * <p>
+ * Буферы не привязаны к потокам, поэтому пул работает и с виртуальными потоками, которые создаются
+ * на каждое напоминание. Слоты занимаются атомарной заменой на {@code null}, без блокировок и без
+ * создания объектов. Если свободного буфера нет, создается новый.
+ */
+final class BuilderPool {
+    private static final int SLOTS = 64;
+    private static final int PROBES = 4;
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+    private static final AtomicReferenceArray<StringBuilder> pool = new AtomicReferenceArray<>(SLOTS);
+
+    private BuilderPool() {
+    }
+
+    static StringBuilder acquire(int capacity) {
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < PROBES; i++) {
+            StringBuilder builder = pool.getAndSet((start + i) & (SLOTS - 1), null);
+            if (builder != null) {
+                builder.ensureCapacity(capacity);
+                return builder;
+            }
+        }
+        return new StringBuilder(Math.max(capacity, 256));
+    }
+
+    static void release(StringBuilder builder) {
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            return;
+        }
+        builder.setLength(0);
+        int start = ThreadLocalRandom.current().nextInt();
+        for (int i = 0; i < PROBES; i++) {
+            if (pool.compareAndSet((start + i) & (SLOTS - 1), null, builder)) {
+                return;
+            }
+        }
+    }
+}
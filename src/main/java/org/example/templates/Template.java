@@ -0,0 +1,149 @@
+package org.example.templates;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шаблон сообщения, заранее разобранный на литеральные фрагменты и подстановки.
+ * <p>
+ * Подстановки записываются как {@code {имя}}; допустимые имена задаются при компиляции и определяют
+ * порядок аргументов {@link #render(String...)}. Фигурная скобка, за которой не следует известное имя,
+ * считается обычным текстом. Отрисовка идет в переиспользуемый буфер, так что создается только итоговая строка.
+ * Экземпляры неизменяемы и потокобезопасны.
+ */
+public final class Template {
+    private final String source;
+    private final String[] literals;
+    private final int[] slots;
+    private final int literalLength;
+
+    private Template(String source, String[] literals, int[] slots) {
+        this.source = source;
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Разбирает текст шаблона.
+     *
+     * @param text  Текст шаблона.
+     * @param names Имена подстановок в порядке аргументов.
+     * @return Скомпилированный шаблон.
+     */
+    public static Template compile(String text, String... names) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int slot = c == '{' ? placeholderAt(text, i, names) : -1;
+            if (slot < 0) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(slot);
+            i += names[slot].length() + 2;
+        }
+        literals.add(literal.toString());
+        return new Template(text, literals.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Возвращает число подстановок в шаблоне.
+     *
+     * @return Число подстановок.
+     */
+    public int placeholderCount() {
+        return slots.length;
+    }
+
+    /**
+     * Отрисовывает шаблон без подстановок.
+     *
+     * @return Готовый текст.
+     */
+    public String render() {
+        return slots.length == 0 ? literals[0] : render(new String[slots.length]);
+    }
+
+    /**
+     * Отрисовывает шаблон с одним аргументом.
+     *
+     * @param arg Значение первой подстановки.
+     * @return Готовый текст.
+     */
+    public String render(String arg) {
+        if (slots.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = BuilderPool.acquire(literalLength + slots.length * arg.length());
+        try {
+            out.append(literals[0]);
+            for (int i = 0; i < slots.length; i++) {
+                out.append(arg).append(literals[i + 1]);
+            }
+            return out.toString();
+        } finally {
+            BuilderPool.release(out);
+        }
+    }
+
+    /**
+     * Отрисовывает шаблон.
+     *
+     * @param args Значения подстановок в порядке имен, заданных при компиляции.
+     * @return Готовый текст.
+     */
+    public String render(String... args) {
+        if (slots.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = BuilderPool.acquire(literalLength + 32 * slots.length);
+        try {
+            return appendTo(out, args).toString();
+        } finally {
+            BuilderPool.release(out);
+        }
+    }
+
+    /**
+     * Дописывает отрисованный шаблон в буфер.
+     *
+     * @param out  Буфер.
+     * @param args Значения подстановок в порядке имен, заданных при компиляции.
+     * @return Тот же буфер.
+     */
+    public StringBuilder appendTo(StringBuilder out, String... args) {
+        out.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(args[slots[i]]).append(literals[i + 1]);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static int placeholderAt(String text, int start, String[] names) {
+        for (int slot = 0; slot < names.length; slot++) {
+            String name = names[slot];
+            int end = start + name.length() + 1;
+            if (end < text.length() && text.charAt(end) == '}' && text.startsWith(name, start + 1)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
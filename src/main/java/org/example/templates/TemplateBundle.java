@@ -0,0 +1,92 @@
+package org.example.templates;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Набор шаблонов, загружаемый из {@link ResourceBundle} в classpath.
+ * <p>
+ * Язык задается свойством {@code templates.locale}; для нового языка достаточно положить рядом файл
+ * {@code <базовое имя>_<язык>.properties}. Ключи, которых нет в файле языка, берутся из базового файла.
+ * Варианты одного сообщения хранятся под ключами {@code <префикс>.<группа>.<номер>}.
+ */
+public final class TemplateBundle {
+    private static final Logger logger = Logger.getLogger(TemplateBundle.class.getName());
+
+    private final ResourceBundle bundle;
+
+    private TemplateBundle(ResourceBundle bundle) {
+        this.bundle = bundle;
+    }
+
+    /**
+     * Загружает набор шаблонов.
+     *
+     * @param baseName Базовое имя набора, например {@code templates.messages}.
+     * @param locale   Язык.
+     * @return Набор шаблонов.
+     * @throws MissingResourceException Если базовый файл набора не найден.
+     */
+    public static TemplateBundle load(String baseName, Locale locale) {
+        ResourceBundle bundle = ResourceBundle.getBundle(baseName, locale,
+                ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES));
+        logger.log(Level.INFO, "Загружены шаблоны {0} для языка \"{1}\"", new Object[]{baseName, bundle.getLocale()});
+        return new TemplateBundle(bundle);
+    }
+
+    /**
+     * Компилирует шаблон по ключу.
+     *
+     * @param key   Ключ шаблона.
+     * @param names Имена подстановок.
+     * @return Шаблон.
+     * @throws MissingResourceException Если ключа нет в наборе.
+     */
+    public Template get(String key, String... names) {
+        return Template.compile(bundle.getString(key), names);
+    }
+
+    /**
+     * Компилирует все варианты шаблонов с ключами {@code <prefix>.<группа>.<номер>}.
+     *
+     * @param prefix Префикс ключей.
+     * @param names  Имена подстановок.
+     * @return Варианты шаблонов по группам, упорядоченные по номеру.
+     */
+    public Map<String, Template[]> variants(String prefix, String... names) {
+        String start = prefix + '.';
+        Map<String, TreeMap<Integer, Template>> groups = new HashMap<>();
+        for (String key : Collections.list(bundle.getKeys())) {
+            if (!key.startsWith(start)) {
+                continue;
+            }
+            String rest = key.substring(start.length());
+            int dot = rest.lastIndexOf('.');
+            if (dot <= 0) {
+                continue;
+            }
+            try {
+                int number = Integer.parseInt(rest.substring(dot + 1));
+                groups.computeIfAbsent(rest.substring(0, dot), group -> new TreeMap<>())
+                        .put(number, get(key, names));
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "Некорректный ключ шаблона: {0}", key);
+            }
+        }
+        Map<String, Template[]> result = new HashMap<>();
+        groups.forEach((group, templates) -> {
+            List<Template> ordered = new ArrayList<>(templates.values());
+            result.put(group, ordered.toArray(new Template[0]));
+        });
+        return Map.copyOf(result);
+    }
+}
@@ -1,43 +1,22 @@
 package org.example.templates.facts;
 
-import java.util.HashMap;
+import org.example.templates.Template;
+import org.example.templates.messages.MessagesTemplates;
+
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Класс Facts предоставляет случайные факты по различным категориям.
+ * Тексты фактов загружаются из того же набора шаблонов, что и напоминания.
  */
 public class Facts {
-    private static final Map<String, String[]> facts_text = new HashMap<>();
-    private static final Random random = new Random();
+    private static final Map<String, Template[]> facts_text = MessagesTemplates.BUNDLE.variants("fact");
+    private static final String NO_FACTS = MessagesTemplates.BUNDLE.get("fact.none").render();
 
     private Facts() {
     }
 
-    static {
-        facts_text.put("water", new String[]{
-                "💧Вода помогает регулировать температуру тела и поддерживать гидратацию кожи.\nТы же не хочешь быстрее постареть!",
-                "💧Недостаток воды может вызвать усталость и головные боли, поэтому важно пить достаточно воды каждый день.\n>2л.",
-                "💧Регулярное употребление воды помогает поддерживать здоровье почек и предотвращает развитие мочекаменной болезни."
-        });
-        facts_text.put("exercise", new String[]{
-                "💪Физическая активность укрепляет сердечно-сосудистую систему.",
-                "💪Физические упражнения способствуют выделению эндорфинов, которые улучшают настроение и снижают уровень стресса.",
-                "💪Занятия спортом улучшают качество сна, помогая быстрее заснуть и глубже спать.\n*Прошай бессоница*"
-        });
-        facts_text.put("sleep", new String[]{
-                "💤Качественный сон улучшает память и концентрацию, способствуя лучшему усвоению информации.",
-                "💤Сон помогает организму восстанавливаться и поддерживать иммунную систему.",
-                "💤Достаточное количество сна снижает риск хронических заболеваний."
-        });
-        facts_text.put("read", new String[]{
-                "📚Чтение развивает когнитивные способности, улучшая аналитическое мышление и концентрацию.\nВ эру клипового контента это бесценно.",
-                "📚Чтение разнообразных текстов улучшает способность к коммуникации и самовыражению.",
-                "📚Чтение помогает снизить уровень стресса и улучшить сон.",
-                "📚Регулярное чтение обогащает словарный запас и улучшает навыки письма.\nЧтобы не позориться в комментариях)"
-        });
-    }
-
     /**
      * Возвращает случайный факт по указанной категории.
      *
@@ -45,11 +24,11 @@ public class Facts {
      * @return Случайный факт из указанной категории.
      */
     public static String getRandomFact(String category) {
-        if (!facts_text.containsKey(category)) {
-            return "Нет фактов для этой категории.";
+        Template[] categoryFacts = facts_text.get(category);
+        if (categoryFacts == null) {
+            return NO_FACTS;
         }
-        String[] categoryFacts = facts_text.get(category);
-        int index = random.nextInt(categoryFacts.length);
-        return categoryFacts[index];
+        int index = ThreadLocalRandom.current().nextInt(categoryFacts.length);
+        return categoryFacts[index].render();
     }
 }
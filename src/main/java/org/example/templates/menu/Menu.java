@@ -2,48 +2,101 @@ package org.example.templates.menu;
 
 import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
 import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
+import org.example.callback.CallbackAction;
+import org.example.callback.CallbackCodec;
 
 /**
  * Класс Menu предоставляет методы для создания меню с кнопками для взаимодействия с пользователями.
+ * <p>
+ * Все клавиатуры создаются один раз и разделяются между сообщениями и потоками,
+ * поэтому возвращаемые объекты нельзя изменять.
  */
 public class Menu {
+    private static final InlineKeyboardMarkup CATEGORY_MENU = new InlineKeyboardMarkup(
+            new InlineKeyboardButton[]{
+                    new InlineKeyboardButton("Вода💧").callbackData(CallbackCodec.encode(CallbackAction.SELECT_CATEGORY, "water")),
+                    new InlineKeyboardButton("Спорт💪").callbackData(CallbackCodec.encode(CallbackAction.SELECT_CATEGORY, "exercise"))
+            },
+            new InlineKeyboardButton[]{
+                    new InlineKeyboardButton("Сон💤").callbackData(CallbackCodec.encode(CallbackAction.SELECT_CATEGORY, "sleep")),
+                    new InlineKeyboardButton("Чтение📚").callbackData(CallbackCodec.encode(CallbackAction.SELECT_CATEGORY, "read"))
+            }
+    );
+
+    private static final InlineKeyboardMarkup FACTS_MENU = new InlineKeyboardMarkup(
+            new InlineKeyboardButton[]{
+                    new InlineKeyboardButton("Вода💦").callbackData(CallbackCodec.encode(CallbackAction.FACT, "water")),
+                    new InlineKeyboardButton("Спорт🏆 ").callbackData(CallbackCodec.encode(CallbackAction.FACT, "exercise"))
+            },
+            new InlineKeyboardButton[]{
+                    new InlineKeyboardButton("Сон😴").callbackData(CallbackCodec.encode(CallbackAction.FACT, "sleep")),
+                    new InlineKeyboardButton("Чтение📖").callbackData(CallbackCodec.encode(CallbackAction.FACT, "read"))
+            }
+    );
+
+    private static final InlineKeyboardMarkup[] REMINDER_KEYBOARDS = new InlineKeyboardMarkup[CallbackCodec.categoryCount()];
+    private static final InlineKeyboardMarkup[] EXISTING_REMINDER_KEYBOARDS = new InlineKeyboardMarkup[CallbackCodec.categoryCount()];
+
+    static {
+        for (int id = 0; id < CallbackCodec.categoryCount(); id++) {
+            String category = CallbackCodec.categoryKey(id);
+            REMINDER_KEYBOARDS[id] = new InlineKeyboardMarkup(
+                    new InlineKeyboardButton("✅").callbackData(CallbackCodec.encode(CallbackAction.COMPLETE, category)),
+                    new InlineKeyboardButton("❌").callbackData(CallbackCodec.encode(CallbackAction.MISS, category))
+            );
+            EXISTING_REMINDER_KEYBOARDS[id] = new InlineKeyboardMarkup(
+                    new InlineKeyboardButton("Оставить").callbackData(CallbackCodec.encode(CallbackAction.KEEP)),
+                    new InlineKeyboardButton("Удалить").callbackData(CallbackCodec.encode(CallbackAction.DELETE, category))
+            );
+        }
+    }
 
     private Menu(){
     }
 
     /**
-     * Создает меню для выбора категории привычек.
+     * Возвращает меню для выбора категории привычек.
      *
      * @return InlineKeyboardMarkup с кнопками для выбора категории привычек.
      */
     public static InlineKeyboardMarkup getCategoryMenu() {
-        return new InlineKeyboardMarkup(
-                new InlineKeyboardButton[]{
-                        new InlineKeyboardButton("Вода💧").callbackData("water"),
-                        new InlineKeyboardButton("Спорт💪").callbackData("exercise")
-                },
-                new InlineKeyboardButton[]{
-                        new InlineKeyboardButton("Сон💤").callbackData("sleep"),
-                        new InlineKeyboardButton("Чтение📚").callbackData("read")
-                }
-        );
+        return CATEGORY_MENU;
     }
 
     /**
-     * Создает меню для выбора категории фактов.
+     * Возвращает меню для выбора категории фактов.
      *
      * @return InlineKeyboardMarkup с кнопками для выбора категории фактов.
      */
     public static InlineKeyboardMarkup getFactsMenu() {
-        return new InlineKeyboardMarkup(
-                new InlineKeyboardButton[]{
-                        new InlineKeyboardButton("Вода\uD83D\uDCA6").callbackData("fact_water"),
-                        new InlineKeyboardButton("Спорт\uD83C\uDFC6 ").callbackData("fact_exercise")
-                },
-                new InlineKeyboardButton[]{
-                        new InlineKeyboardButton("Сон\uD83D\uDE34").callbackData("fact_sleep"),
-                        new InlineKeyboardButton("Чтение\uD83D\uDCD6").callbackData("fact_read")
-                }
-        );
+        return FACTS_MENU;
+    }
+
+    /**
+     * Возвращает кнопки "выполнено"/"пропущено" для напоминания.
+     *
+     * @param category Категория напоминания.
+     * @return InlineKeyboardMarkup с кнопками отметки привычки.
+     */
+    public static InlineKeyboardMarkup getReminderKeyboard(String category) {
+        return REMINDER_KEYBOARDS[categoryIndex(category)];
+    }
+
+    /**
+     * Возвращает кнопки "оставить"/"удалить" для уже установленного напоминания.
+     *
+     * @param category Категория напоминания.
+     * @return InlineKeyboardMarkup с кнопками управления напоминанием.
+     */
+    public static InlineKeyboardMarkup getExistingReminderKeyboard(String category) {
+        return EXISTING_REMINDER_KEYBOARDS[categoryIndex(category)];
+    }
+
+    private static int categoryIndex(String category) {
+        int id = CallbackCodec.categoryId(category);
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown category: " + category);
+        }
+        return id;
     }
 }
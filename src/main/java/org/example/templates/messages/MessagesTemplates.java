@@ -1,44 +1,32 @@
 package org.example.templates.messages;
 
-import java.util.List;
+import org.example.config.ConfigLoader;
+import org.example.templates.Template;
+import org.example.templates.TemplateBundle;
+
+import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Класс MessagesTemplates предоставляет шаблоны сообщений для различных категорий напоминаний.
+ * <p>
+ * Шаблоны загружаются из {@code templates/messages.properties} (язык задается свойством
+ * {@code templates.locale}) и компилируются один раз при загрузке класса.
  */
 public class MessagesTemplates {
+    /**
+     * Набор шаблонов на языке, заданном в настройках.
+     */
+    public static final TemplateBundle BUNDLE = TemplateBundle.load("templates.messages",
+            Locale.forLanguageTag(ConfigLoader.getProperty("templates.locale", "ru")));
+
+    private static final Map<String, Template[]> TEMPLATES = BUNDLE.variants("reminder", "name");
+    private static final Template FALLBACK = BUNDLE.get("reminder.fallback", "name");
 
     private MessagesTemplates(){
     }
 
-    // Шаблоны сообщений для различных категорий
-    private static final Map<String, List<String>> TEMPLATES = Map.of(
-            "water", List.of(
-                    "%s, выпей стакан воды и твоя мама будет жить вечно\uD83D\uDCA6",
-                    "%s, не забудь выпить воды для здоровья\uD83D\uDCA6",
-                    "%s, пора пить воду! Гидратация — это важно\uD83D\uDCA6"
-            ),
-            "exercise", List.of(
-                    "%s, время сделать зарядку!\uD83D\uDCAA",
-                    "%s, пора размяться и сделать несколько упражнений!\uD83D\uDCAA",
-                    "%s, не забудь про свою тренировку сегодня!\uD83D\uDCAA"
-            ),
-            "sleep", List.of(
-                    "%s, пора готовиться ко сну\uD83D\uDCA4",
-                    "%s, не забудь лечь спать сегодня вовремя\uD83D\uDCA4",
-                    "%s, время для сна! Отдых важен\uD83D\uDCA4"
-            ),
-            "read", List.of(
-                    "%s, настало время для твоей любимой книги\uD83D\uDCDA",
-                    "%s, пора почитать что-нибудь интересное\uD83D\uDCDA",
-                    "%s, время для чтения! Найди минутку для книги\uD83D\uDCDA"
-            )
-    );
-
-    // Генератор случайных чисел
-    private static final Random RANDOM = new Random();
-
     /**
      * Возвращает случайное сообщение для заданной категории и имени пользователя.
      *
@@ -47,11 +35,10 @@ public class MessagesTemplates {
      * @return Случайное сообщение для указанной категории, содержащее имя пользователя.
      */
     public static String getRandomMessage(String category, String userName) {
-        List<String> messages = TEMPLATES.get(category);
-        if (messages != null && !messages.isEmpty()) {
-            String template = messages.get(RANDOM.nextInt(messages.size()));
-            return String.format(template, userName);
+        Template[] messages = TEMPLATES.get(category);
+        if (messages != null && messages.length > 0) {
+            return messages[ThreadLocalRandom.current().nextInt(messages.length)].render(userName);
         }
-        return userName + ", у вас есть напоминание.";
+        return FALLBACK.render(userName);
     }
 }
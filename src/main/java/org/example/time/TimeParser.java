@@ -0,0 +1,103 @@
+package org.example.time;
+
+import java.sql.Time;
+import java.time.LocalTime;
+
+/**
+ * Разбор и форматирование времени суток в формате {@code HH:MM} без создания объектов.
+ * <p>
+ * Время представляется минутой суток от 0 до 1439. Строки {@code HH:MM} для всех минут
+ * подготавливаются один раз при загрузке класса.
+ */
+public final class TimeParser {
+    /**
+     * Результат разбора строки, не являющейся временем.
+     */
+    public static final int INVALID = -1;
+
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final String[] FORMATTED = new String[MINUTES_PER_DAY];
+
+    static {
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            int hour = minute / 60;
+            int minuteOfHour = minute % 60;
+            FORMATTED[minute] = String.valueOf(new char[]{
+                    (char) ('0' + hour / 10), (char) ('0' + hour % 10), ':',
+                    (char) ('0' + minuteOfHour / 10), (char) ('0' + minuteOfHour % 10)});
+        }
+    }
+
+    private TimeParser() {
+    }
+
+    /**
+     * Разбирает время в формате {@code HH:MM} (часы 00-23, минуты 00-59).
+     *
+     * @param text Текст сообщения.
+     * @return Минута суток или {@link #INVALID}.
+     */
+    public static int parseMinuteOfDay(CharSequence text) {
+        if (text == null || text.length() != 5 || text.charAt(2) != ':') {
+            return INVALID;
+        }
+        int h1 = digit(text.charAt(0));
+        int h2 = digit(text.charAt(1));
+        int m1 = digit(text.charAt(3));
+        int m2 = digit(text.charAt(4));
+        if ((h1 | h2 | m1 | m2) < 0) {
+            return INVALID;
+        }
+        int hour = h1 * 10 + h2;
+        int minute = m1 * 10 + m2;
+        if (hour > 23 || minute > 59) {
+            return INVALID;
+        }
+        return hour * 60 + minute;
+    }
+
+    /**
+     * Возвращает время в формате {@code HH:MM}.
+     *
+     * @param minuteOfDay Минута суток.
+     * @return Отформатированное время.
+     */
+    public static String format(int minuteOfDay) {
+        return FORMATTED[minuteOfDay];
+    }
+
+    /**
+     * Возвращает время в формате {@code HH:MM}.
+     *
+     * @param time Время.
+     * @return Отформатированное время.
+     */
+    public static String format(Time time) {
+        return FORMATTED[minuteOfDay(time)];
+    }
+
+    /**
+     * Возвращает минуту суток для времени из базы данных.
+     *
+     * @param time Время.
+     * @return Минута суток.
+     */
+    public static int minuteOfDay(Time time) {
+        LocalTime localTime = time.toLocalTime();
+        return localTime.getHour() * 60 + localTime.getMinute();
+    }
+
+    /**
+     * Преобразует минуту суток во время для записи в базу данных.
+     *
+     * @param minuteOfDay Минута суток.
+     * @return Время с нулевыми секундами.
+     */
+    public static Time toTime(int minuteOfDay) {
+        return Time.valueOf(LocalTime.of(minuteOfDay / 60, minuteOfDay % 60));
+    }
+
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : INVALID;
+    }
+}
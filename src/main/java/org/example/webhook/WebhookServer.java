@@ -0,0 +1,134 @@
+package org.example.webhook;
+
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.utility.BotUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.dispatcher.UpdateDispatcher;
+import org.example.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP-сервер для приема обновлений Telegram в режиме webhook.
+ * <p>
+ * Каждое обновление разбирается прямо из тела запроса и передается в {@link UpdateDispatcher},
+ * после чего сервер сразу отвечает 200 - обработка идет асинхронно в том же конвейере, что и при long polling.
+ * Запросы без правильного заголовка {@code X-Telegram-Bot-Api-Secret-Token} отклоняются с кодом 401,
+ * а запросы с телом больше {@code maxBodyBytes} - с кодом 413 до разбора.
+ * Если диспетчер перегружен, сервер отвечает 503, и Telegram повторит доставку позже.
+ * <p>
+ * Для локальной проверки достаточно отправить сохраненное обновление:
+ * {@code curl -X POST -H 'X-Telegram-Bot-Api-Secret-Token: <секрет>' --data @update.json http://localhost:8080/telegram/webhook}
+ */
+public class WebhookServer implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(WebhookServer.class.getName());
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final UpdateDispatcher dispatcher;
+    private final byte[] secretToken;
+    private final int maxBodyBytes;
+
+    /**
+     * Запускает сервер.
+     *
+     * @param port        Порт.
+     * @param path        Путь, на который Telegram присылает обновления.
+     * @param secretToken  Секрет, переданный в setWebhook.
+     * @param maxBodyBytes Максимальный размер тела запроса в байтах.
+     * @param dispatcher   Диспетчер обновлений.
+     * @throws IOException              Если не удалось открыть порт.
+     * @throws IllegalArgumentException Если секрет не задан.
+     */
+    public WebhookServer(int port, String path, String secretToken, int maxBodyBytes, UpdateDispatcher dispatcher)
+            throws IOException {
+        if (secretToken == null || secretToken.isEmpty()) {
+            throw new IllegalArgumentException("webhook.secretToken must be set in webhook mode");
+        }
+        this.dispatcher = dispatcher;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+        this.maxBodyBytes = maxBodyBytes;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("webhook-", 0).factory());
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext(path, this::handle);
+        server.start();
+        logger.log(Level.INFO, "Webhook слушает порт {0}, путь {1}", new Object[]{String.valueOf(port), path});
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status = accept(exchange);
+            Metrics.WEBHOOK_REQUESTS.labels(Metrics.responseCode(status)).inc();
+            exchange.sendResponseHeaders(status, -1);
+        }
+    }
+
+    private int accept(HttpExchange exchange) {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return 405;
+        }
+        if (!isSecretValid(exchange.getRequestHeaders().getFirst(SECRET_HEADER))) {
+            logger.log(Level.WARNING, "Webhook-запрос с неверным секретом от {0}", exchange.getRemoteAddress());
+            return 401;
+        }
+        if (declaredLength(exchange) > maxBodyBytes) {
+            return 413;
+        }
+        Update update;
+        try (InputStream in = exchange.getRequestBody()) {
+            // тело без Content-Length читается не дальше лимита
+            byte[] body = in.readNBytes(maxBodyBytes + 1);
+            if (body.length > maxBodyBytes) {
+                return 413;
+            }
+            update = BotUtils.parseUpdate(new String(body, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Не удалось разобрать webhook-запрос", e);
+            return 400;
+        }
+        if (update == null) {
+            return 400;
+        }
+        if (!dispatcher.submit(update)) {
+            logger.log(Level.WARNING, "Диспетчер перегружен, updateId={0} будет доставлен повторно", update.updateId());
+            return 503;
+        }
+        return 200;
+    }
+
+    private static long declaredLength(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean isSecretValid(String header) {
+        return header != null && MessageDigest.isEqual(secretToken, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Останавливает прием запросов.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+}
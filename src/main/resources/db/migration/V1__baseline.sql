@@ -0,0 +1,13 @@
+-- Исходная схема бота. Для существующих баз выполняется без изменений благодаря IF NOT EXISTS.
+CREATE TABLE IF NOT EXISTS Users (
+    id        SERIAL PRIMARY KEY,
+    tg_id     BIGINT NOT NULL,
+    user_name TEXT
+);
+
+CREATE TABLE IF NOT EXISTS activities (
+    user_id       INT  NOT NULL REFERENCES Users (id) ON DELETE CASCADE,
+    category      TEXT NOT NULL,
+    activity_time TIME NOT NULL,
+    streak_num    INT  NOT NULL DEFAULT 0
+);
@@ -0,0 +1,54 @@
+-- Телеграм ID не помещается в INT.
+ALTER TABLE Users ALTER COLUMN tg_id TYPE BIGINT;
+
+-- Без ключа по tg_id пользователь мог быть добавлен несколько раз. Остается строка с наибольшим id
+-- (добавленная последней), действия остальных строк переносятся на нее.
+CREATE TEMP TABLE user_merge AS
+SELECT id AS old_id, max(id) OVER (PARTITION BY tg_id) AS new_id
+FROM Users;
+DELETE FROM user_merge WHERE old_id = new_id;
+
+-- Без ключа (user_id, category) повторный ввод времени мог создать дубликаты, в том числе после объединения
+-- пользователей. Остается действие самой новой строки пользователя, затем действие с наибольшей серией.
+DELETE FROM activities a
+USING (
+    SELECT a.ctid AS row_id,
+           row_number() OVER (PARTITION BY coalesce(m.new_id, a.user_id), a.category
+                              ORDER BY a.user_id DESC, a.streak_num DESC, a.ctid DESC) AS rank
+    FROM activities a
+    LEFT JOIN user_merge m ON m.old_id = a.user_id
+) ranked
+WHERE a.ctid = ranked.row_id AND ranked.rank > 1;
+
+UPDATE activities a SET user_id = m.new_id FROM user_merge m WHERE a.user_id = m.old_id;
+DELETE FROM Users u USING user_merge m WHERE u.id = m.old_id;
+DROP TABLE user_merge;
+
+-- Уникальный ключ по tg_id нужен для ON CONFLICT (tg_id) и поиска пользователя одним обращением к индексу.
+-- В старых базах он мог быть создан вручную под другим именем, поэтому ищется по составу колонок.
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_index i
+        JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+        WHERE i.indrelid = 'users'::regclass AND i.indisunique AND i.indnkeyatts = 1 AND a.attname = 'tg_id'
+    ) THEN
+        ALTER TABLE Users ADD CONSTRAINT users_tg_id_key UNIQUE (tg_id);
+    END IF;
+END
+$$;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_index i
+        WHERE i.indrelid = 'activities'::regclass AND i.indisunique AND i.indnkeyatts = 2
+          AND i.indkey[0] = (SELECT attnum FROM pg_attribute WHERE attrelid = 'activities'::regclass AND attname = 'user_id')
+          AND i.indkey[1] = (SELECT attnum FROM pg_attribute WHERE attrelid = 'activities'::regclass AND attname = 'category')
+    ) THEN
+        ALTER TABLE activities ADD CONSTRAINT activities_user_id_category_key UNIQUE (user_id, category);
+    END IF;
+END
+$$;
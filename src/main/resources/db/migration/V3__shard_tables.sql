@@ -0,0 +1,14 @@
+-- Таблицы аренды шардов напоминаний, раньше создавались в ShardManager при запуске.
+CREATE TABLE IF NOT EXISTS reminder_shard_leases (
+    shard_id   INT PRIMARY KEY,
+    owner      TEXT,
+    expires_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS reminder_shard_nodes (
+    node_id      TEXT PRIMARY KEY,
+    heartbeat_at TIMESTAMPTZ NOT NULL
+);
+
+-- Перераспределение шардов ищет просроченные аренды и аренды экземпляра.
+CREATE INDEX IF NOT EXISTS reminder_shard_leases_owner_idx ON reminder_shard_leases (owner);
@@ -0,0 +1,49 @@
+-- Журнал отметок "выполнено" и "пропущено". Строки только добавляются; таблица разбита на месячные секции
+-- по дню отметки, поэтому старую историю можно отключать или удалять целыми секциями.
+-- За один день по привычке учитывается только первая отметка.
+CREATE TABLE IF NOT EXISTS completion_events (
+    user_id     INT         NOT NULL,
+    category    TEXT        NOT NULL,
+    day         DATE        NOT NULL,
+    completed   BOOLEAN     NOT NULL,
+    occurred_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (user_id, category, day)
+) PARTITION BY RANGE (day);
+
+-- Секции по умолчанию нет: строки месяца, попавшие в нее, не дали бы создать секцию этого месяца.
+-- Секции текущего и следующего месяца создаются заранее при запуске и в каждом прогоне напоминаний.
+CREATE OR REPLACE FUNCTION completion_events_ensure_partition(day DATE) RETURNS VOID AS $$
+DECLARE
+    month_start DATE := date_trunc('month', day)::date;
+    partition_name TEXT := 'completion_events_' || to_char(month_start, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF completion_events FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month_start, (month_start + interval '1 month')::date);
+    END IF;
+END
+$$ LANGUAGE plpgsql;
+
+SELECT completion_events_ensure_partition(current_date);
+SELECT completion_events_ensure_partition((current_date + interval '1 month')::date);
+
+-- Накопленная статистика по привычке, обновляется вместе с каждым событием.
+-- Бит i в масках соответствует дню last_day - i: completed_mask - была отметка "выполнено",
+-- seen_mask - была любая отметка.
+CREATE TABLE IF NOT EXISTS user_stats (
+    user_id         INT     NOT NULL REFERENCES Users (id) ON DELETE CASCADE,
+    category        TEXT    NOT NULL,
+    last_day        DATE,
+    completed_mask  BIGINT  NOT NULL DEFAULT 0,
+    seen_mask       BIGINT  NOT NULL DEFAULT 0,
+    total_completed INT     NOT NULL DEFAULT 0,
+    total_missed    INT     NOT NULL DEFAULT 0,
+    current_streak  INT     NOT NULL DEFAULT 0,
+    longest_streak  INT     NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, category)
+);
+
+-- История до появления журнала неизвестна, поэтому текущий streak считается и лучшим, и нижней оценкой числа выполнений.
+INSERT INTO user_stats (user_id, category, total_completed, current_streak, longest_streak)
+SELECT user_id, category, streak_num, streak_num, streak_num FROM activities
+ON CONFLICT (user_id, category) DO NOTHING;
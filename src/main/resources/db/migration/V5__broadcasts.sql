@@ -0,0 +1,18 @@
+-- Рассылки администратора. last_user_id - контрольная точка: все получатели с Users.id <= last_user_id обработаны.
+-- Экземпляр, ведущий рассылку, продлевает claimed_until; рассылку с истекшей арендой продолжает другой экземпляр.
+CREATE TABLE IF NOT EXISTS broadcasts (
+    id            BIGSERIAL PRIMARY KEY,
+    admin_chat_id BIGINT      NOT NULL,
+    message_text  TEXT        NOT NULL,
+    status        TEXT        NOT NULL DEFAULT 'running',
+    last_user_id  INT         NOT NULL DEFAULT 0,
+    total         INT         NOT NULL DEFAULT 0,
+    sent          INT         NOT NULL DEFAULT 0,
+    failed        INT         NOT NULL DEFAULT 0,
+    claimed_by    TEXT,
+    claimed_until TIMESTAMPTZ NOT NULL DEFAULT now(),
+    created_at    TIMESTAMPTZ NOT NULL DEFAULT now(),
+    finished_at   TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS broadcasts_running_idx ON broadcasts (claimed_until) WHERE status = 'running';
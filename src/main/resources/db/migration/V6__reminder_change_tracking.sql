@@ -0,0 +1,47 @@
+-- Отслеживание изменений для теплого перезапуска из снимка колеса напоминаний.
+-- change_xid - транзакция последнего изменения строки. В отличие от значения последовательности или времени,
+-- номер транзакции можно сравнить с горизонтом снимка pg_snapshot_xmin: все транзакции ниже горизонта
+-- завершены, поэтому изменения, не попавшие в снимок, гарантированно имеют change_xid не ниже горизонта.
+ALTER TABLE activities ADD COLUMN IF NOT EXISTS change_xid xid8;
+ALTER TABLE Users ADD COLUMN IF NOT EXISTS change_xid xid8;
+
+CREATE OR REPLACE FUNCTION track_change_xid() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.change_xid := pg_current_xact_id();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- streak_num меняется при каждой отметке и на расписание не влияет, поэтому отслеживаются только нужные колонки.
+DROP TRIGGER IF EXISTS activities_change_xid ON activities;
+CREATE TRIGGER activities_change_xid BEFORE INSERT OR UPDATE OF activity_time ON activities
+    FOR EACH ROW EXECUTE FUNCTION track_change_xid();
+
+DROP TRIGGER IF EXISTS users_change_xid ON Users;
+CREATE TRIGGER users_change_xid BEFORE INSERT OR UPDATE OF user_name ON Users
+    FOR EACH ROW EXECUTE FUNCTION track_change_xid();
+
+-- Удаленные напоминания. Старые записи удаляет экземпляр, записывающий снимок.
+CREATE TABLE IF NOT EXISTS activity_tombstones (
+    tg_id      BIGINT      NOT NULL,
+    category   TEXT        NOT NULL,
+    change_xid xid8        NOT NULL DEFAULT pg_current_xact_id(),
+    deleted_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE OR REPLACE FUNCTION record_activity_tombstone() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO activity_tombstones (tg_id, category)
+    SELECT tg_id, OLD.category FROM Users WHERE id = OLD.user_id;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS activities_tombstone ON activities;
+CREATE TRIGGER activities_tombstone AFTER DELETE ON activities
+    FOR EACH ROW EXECUTE FUNCTION record_activity_tombstone();
+
+CREATE INDEX IF NOT EXISTS activities_change_xid_idx ON activities (change_xid);
+CREATE INDEX IF NOT EXISTS users_change_xid_idx ON Users (change_xid);
+CREATE INDEX IF NOT EXISTS activity_tombstones_change_xid_idx ON activity_tombstones (change_xid);
+CREATE INDEX IF NOT EXISTS activity_tombstones_deleted_at_idx ON activity_tombstones (deleted_at);
@@ -0,0 +1,6 @@
+-- Служебное состояние бота, переживающее перезапуск. polling.offset - последний полностью обработанный update_id.
+CREATE TABLE IF NOT EXISTS bot_state (
+    key        TEXT PRIMARY KEY,
+    value      BIGINT      NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);